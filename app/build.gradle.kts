@@ -35,15 +35,24 @@ dependencies {
     // jsoup HTML parser library @ https://jsoup.org/
     implementation(libs.jsoup)
 
+    // OkHttp HTTP client library @ https://square.github.io/okhttp/
+    implementation(libs.okhttp)
+
     implementation(libs.media3.common)
     implementation(libs.media3.exoplayer)
     implementation(libs.media3.exoplayer.hls)
+    implementation(libs.media3.datasource.okhttp)
 
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+
+    // JMH micro benchmarks, under the unit tests @ https://github.com/openjdk/jmh
+    testImplementation(libs.jmh.core)
+    testAnnotationProcessor(libs.jmh.generator.annprocess)
+
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
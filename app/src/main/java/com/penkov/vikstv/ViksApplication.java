@@ -0,0 +1,58 @@
+package com.penkov.vikstv;
+
+import android.app.Application;
+
+import com.penkov.vikstv.ui.PlayerManager;
+import com.penkov.vikstv.web.Cache.BandwidthStore;
+import com.penkov.vikstv.web.Cache.ChannelIconCache;
+import com.penkov.vikstv.web.Cache.MediaCache;
+import com.penkov.vikstv.web.base.BackgroundScraper;
+import com.penkov.vikstv.web.base.PooledTransport;
+
+import java.io.File;
+
+public class ViksApplication extends Application
+{
+    // The scrapers HTTP cache, inside the application cache directory.
+    private static final String HTTP_CACHE_DIRECTORY = "http";
+    private static final long HTTP_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+
+
+    /**
+     * Called when the application is starting, before any activity.
+     */
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+
+        // All the scrapers share the pooled and cached transport.
+        PooledTransport transport = new PooledTransport(
+                new File(getCacheDir(), HTTP_CACHE_DIRECTORY),
+                HTTP_CACHE_MAX_BYTES);
+        BackgroundScraper.setTransport(transport);
+
+        // Channels icons are kept in memory and on the disk.
+        ChannelIconCache.initialize(this);
+
+        // Players start from the bandwidth measured on the network.
+        BandwidthStore.initialize(this);
+
+        // Players share the scrapers connections, and keep recent segments on the disk.
+        MediaCache.initialize(this, transport.getClient());
+    }
+
+
+    /**
+     * Called when the system asks to trim memory, the idle player goes first.
+     *
+     * @param level the memory trim level.
+     */
+    @Override
+    public void onTrimMemory(int level)
+    {
+        super.onTrimMemory(level);
+
+        PlayerManager.getInstance().onTrimMemory(level);
+    }
+}
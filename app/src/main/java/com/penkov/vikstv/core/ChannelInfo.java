@@ -65,6 +65,39 @@ public class ChannelInfo implements Parcelable
     }
 
 
+    /**
+     * Check if other object is the same channel, with the same information.
+     *
+     * @param other the object to compare with.
+     * @return true if the object is equal channel info, false otherwise.
+     */
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+            return true;
+
+        if (!(other instanceof ChannelInfo))
+            return false;
+
+        ChannelInfo channel = (ChannelInfo) other;
+        return mChannelName.equals(channel.mChannelName) &&
+                mChannelReference.equals(channel.mChannelReference) &&
+                mChannelIconReference.equals(channel.mChannelIconReference);
+    }
+
+
+    /**
+     * Hash code consistent with {@code equals()}.
+     *
+     * @return the hash code of the channel info.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(mChannelName, mChannelReference, mChannelIconReference);
+    }
+
+
     /* ****************************** Parcelable ****************************** */
 
     /**
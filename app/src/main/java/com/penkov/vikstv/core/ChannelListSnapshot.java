@@ -0,0 +1,158 @@
+package com.penkov.vikstv.core;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+
+/**
+ * Last successfully loaded channel list, stored on the device.
+ * Lets the application show the channels right away, while the list is refreshed.
+ */
+public final class ChannelListSnapshot
+{
+    // TAG to use with logcat.
+    public static final String TAG = ChannelListSnapshot.class.getSimpleName();
+
+    // The snapshot file, inside the application files directory.
+    private static final String FILE_NAME = "channel_list.snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Version of the file format, files of other version are ignored.
+    private static final int FORMAT_VERSION = 1;
+
+    // The header (version and count), and the smallest channel - three empty strings.
+    private static final int HEADER_BYTES = 8;
+    private static final int MIN_CHANNEL_BYTES = 6;
+
+    // Guards the file between concurrent loads and saves.
+    private static final Object sFileLock = new Object();
+
+
+    private ChannelListSnapshot() { }
+
+
+    /**
+     * Load the last stored channel list.
+     * Makes file operations, avoid calling it from the UI thread.
+     *
+     * @param context the context of the application.
+     * @return the stored channels, or null if no (valid) snapshot is stored.
+     */
+    public static @Nullable ChannelInfo[] load(@NonNull Context context)
+    {
+        synchronized (sFileLock)
+        {
+            File file = getFile(context);
+            if (!file.exists())
+                return null;
+
+            try (DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file))))
+            {
+                if (input.readInt() != FORMAT_VERSION) {
+                    Log.i(TAG, "Snapshot of other version is ignored.");
+                    return null;
+                }
+
+                // A corrupted count must not allocate more channels than the file holds.
+                int count = input.readInt();
+                if (count < 0 || count > (file.length() - HEADER_BYTES) / MIN_CHANNEL_BYTES) {
+                    Log.w(TAG, "Corrupted snapshot of " + count + " channels is deleted.");
+                    deleteFile(file);
+                    return null;
+                }
+
+                ChannelInfo[] channels = new ChannelInfo[count];
+
+                for (int i = 0; i < channels.length; i++)
+                    channels[i] = new ChannelInfo(
+                            input.readUTF(), input.readUTF(), input.readUTF());
+
+                return channels.length > 0 ? channels : null;
+            }
+            catch (EOFException | UTFDataFormatException e) {
+                Log.w(TAG, "Truncated channel list snapshot is deleted.", e);
+                deleteFile(file);
+                return null;
+            }
+            catch (IOException e) {
+                Log.w(TAG, "Couldn't load the channel list snapshot.", e);
+                return null;
+            }
+        }
+    }
+
+
+    /**
+     * Store the channel list, replacing the previous snapshot.
+     * Makes file operations, avoid calling it from the UI thread.
+     *
+     * @param context  the context of the application.
+     * @param channels the channel list to store.
+     */
+    public static void save(@NonNull Context context, @NonNull ChannelInfo[] channels)
+    {
+        synchronized (sFileLock)
+        {
+            File file = getFile(context);
+            File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+
+            // Write to temporary file, so a failure won't corrupt the previous snapshot.
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile))))
+            {
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(channels.length);
+
+                for (ChannelInfo channel : channels) {
+                    output.writeUTF(channel.getChannelName());
+                    output.writeUTF(channel.getChannelReference());
+                    output.writeUTF(channel.getChannelIconReference());
+                }
+            }
+            catch (IOException e) {
+                Log.w(TAG, "Couldn't save the channel list snapshot.", e);
+                return;
+            }
+
+            if (!tempFile.renameTo(file))
+                Log.w(TAG, "Couldn't replace the channel list snapshot.");
+        }
+    }
+
+
+    /**
+     * Delete a snapshot that can't be read, so it isn't read again on every launch.
+     *
+     * @param file the snapshot file.
+     */
+    private static void deleteFile(@NonNull File file)
+    {
+        if (!file.delete())
+            Log.w(TAG, "Couldn't delete the channel list snapshot.");
+    }
+
+
+    /**
+     * Get the snapshot file.
+     *
+     * @param context the context of the application.
+     * @return the snapshot file.
+     */
+    private static @NonNull File getFile(@NonNull Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+}
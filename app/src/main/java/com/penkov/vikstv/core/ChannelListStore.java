@@ -0,0 +1,64 @@
+package com.penkov.vikstv.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In memory store of the channel list shown, shared by all the activities.
+ * <p>
+ * The activities pass a position in the list instead of the list itself,
+ * so the list is not copied into every intent and saved state.
+ * The store is empty after the process is restarted, until the list is shown again.
+ */
+public final class ChannelListStore
+{
+    // The shared instance.
+    private static volatile ChannelListStore sInstance = null;
+
+    // The channels shown, by the list order.
+    private volatile List<ChannelInfo> mChannels = Collections.emptyList();
+
+
+    private ChannelListStore() { }
+
+
+    /**
+     * Get the shared store.
+     *
+     * @return the store.
+     */
+    public static @NonNull ChannelListStore getInstance()
+    {
+        if (sInstance == null) {
+            synchronized (ChannelListStore.class) {
+                if (sInstance == null)
+                    sInstance = new ChannelListStore();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Set the channels shown, replacing the previous list.
+     *
+     * @param channels the channels, by the list order.
+     */
+    public void set(@NonNull List<ChannelInfo> channels) {
+        this.mChannels = Collections.unmodifiableList(new ArrayList<>(channels));
+    }
+
+
+    /**
+     * Get the channels shown.
+     *
+     * @return the channels by the list order, empty if none were shown yet.
+     */
+    public @NonNull List<ChannelInfo> get() {
+        return this.mChannels;
+    }
+}
@@ -1,9 +1,16 @@
 package com.penkov.vikstv.core;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 public class ChannelProgram
 {
+    // Returned by parseTime() on text that is not a time.
+    public static final int INVALID_TIME = -1;
+
+    // Length of the shown time format. ("HH:MM")
+    private static final int TIME_LENGTH = 5;
+
     // The channel program name. Note: it can be non-english.
     private final @NonNull String mProgramName;
 
@@ -25,85 +32,188 @@ public class ChannelProgram
     public ChannelProgram(@NonNull String programName, @NonNull String programTime)
             throws ProgramTimeException
     {
-        // Set texts
-        this.mProgramName = programName;
-        this.mProgramTime = programTime;
+        final int compactTime = parseTime(programTime);
 
         // Check if time is in the right format.
-        if (!isTimeFormatValid(programTime))
+        if (compactTime == INVALID_TIME)
             throw new ProgramTimeException("Time is not in right format.");
 
+        // Set texts
+        this.mProgramName = programName;
+        this.mProgramTime = normalizeTime(programTime, compactTime);
+
         // Set numbers
-        this.mProgramTimeHour = getTimeHours(programTime);
-        this.mProgramTimeMinute = getTimeSeconds(programTime);
+        this.mProgramTimeHour = compactTime / 60;
+        this.mProgramTimeMinute = compactTime % 60;
     }
 
 
     /**
-     * Check if string is in format of a time string. ("HH:MM")
+     * Create class representing program information, from valid parsed time.
      *
-     * @param programTime the string in question.
-     * @return true if the string is valid time, false otherwise.
+     * @param programName the program name.
+     * @param programTime the program time text.
+     * @param compactTime the parsed time, minutes since midnight.
      */
-    private boolean isTimeFormatValid (@NonNull String programTime)
+    private ChannelProgram(@NonNull String programName, @NonNull String programTime, int compactTime)
     {
-        // Check string in possible length
-        if (programTime.length() != 5)
-            return false;
-
-        // Check middle character is semicolon
-        if (programTime.charAt(2) != ':')
-            return false;
+        this.mProgramName = programName;
+        this.mProgramTime = normalizeTime(programTime, compactTime);
+        this.mProgramTimeHour = compactTime / 60;
+        this.mProgramTimeMinute = compactTime % 60;
+    }
 
-        // Check first two characters are digits
-        if (!Character.isDigit(programTime.charAt(0)) ||
-            !Character.isDigit(programTime.charAt(1)))
-            return false;
 
-        // Check last two characters are digits
-        if (!Character.isDigit(programTime.charAt(3)) ||
-            !Character.isDigit(programTime.charAt(4)))
-            return false;
+    /**
+     * Create class representing program information, without throwing on invalid time.
+     *
+     * @param programName the program name.
+     * @param programTime the program time.
+     * @return the program, or null if the program time is not in the right format.
+     */
+    public static @Nullable ChannelProgram tryCreate(@NonNull String programName,
+                                                     @NonNull String programTime)
+    {
+        final int compactTime = parseTime(programTime);
 
-        return true;
+        return compactTime != INVALID_TIME
+                ? new ChannelProgram(programName, programTime, compactTime)
+                : null;
     }
 
 
     /**
-     * Given program time in text format, return the hours number.
+     * Parse program time, reading the digits straight from the characters.
+     * The accepted formats are "HH:MM", "H:MM", "HH.MM" and "HH:MM:SS"
+     * (the seconds are ignored), with surrounding whitespaces.
      *
-     * @param programTime string representing the program time.
-     * @return integer presenting the hour of the program.
-     * @throws ProgramTimeException in case the string is not representing program time.
+     * @param programTime the time text.
+     * @return minutes since midnight, or {@code INVALID_TIME} if the text is not a time.
      */
-    private int getTimeHours (@NonNull String programTime)
-            throws ProgramTimeException
+    public static int parseTime(@NonNull CharSequence programTime)
     {
-        try {
-            return Integer.parseInt(programTime.substring(0, 2));
-        }
-        catch (NumberFormatException | IndexOutOfBoundsException e) {
-            throw new ProgramTimeException("Program time is invalid", e);
+        int start = 0;
+        int end = programTime.length();
+
+        // Trim whitespaces (including non breaking ones).
+        while (start < end && isSpace(programTime.charAt(start)))
+            start++;
+        while (end > start && isSpace(programTime.charAt(end - 1)))
+            end--;
+
+        // Hours, one or two digits.
+        int position = start;
+        int hours = 0;
+
+        while (position < end && position - start < 2 && isDigit(programTime.charAt(position)))
+            hours = hours * 10 + (programTime.charAt(position++) - '0');
+
+        if (position == start || position == end)
+            return INVALID_TIME;
+
+        // Separator, the seconds (if any) use the same one.
+        final char separator = programTime.charAt(position++);
+        if (separator != ':' && separator != '.')
+            return INVALID_TIME;
+
+        int minutes = readTwoDigits(programTime, position, end);
+        position += 2;
+
+        if (position < end)
+        {
+            if (programTime.charAt(position) != separator
+                    || readTwoDigits(programTime, position + 1, end) >= 60
+                    || position + 3 != end)
+                return INVALID_TIME;
         }
+
+        if (hours >= 24 || minutes < 0 || minutes >= 60)
+            return INVALID_TIME;
+
+        return hours * 60 + minutes;
     }
 
 
     /**
-     * Given program time in text format, return the minutes number.
+     * Get the time text in the shown format. ("HH:MM")
      *
-     * @param programTime string representing the program time.
-     * @return integer presenting the minutes of the program.
-     * @throws ProgramTimeException in case the string is not representing program time.
+     * @param programTime the time text.
+     * @param compactTime the parsed time, minutes since midnight.
+     * @return the time text, unchanged if already in the shown format.
      */
-    private int getTimeSeconds (@NonNull String programTime)
-            throws ProgramTimeException
+    public static @NonNull String normalizeTime(@NonNull String programTime, int compactTime)
     {
-        try {
-            return Integer.parseInt(programTime.substring(3, 5));
-        }
-        catch (NumberFormatException | IndexOutOfBoundsException e) {
-            throw new ProgramTimeException("Program time is invalid", e);
-        }
+        if (isShownFormat(programTime))
+            return programTime;
+
+        final int hours = compactTime / 60;
+        final int minutes = compactTime % 60;
+
+        return new String(new char[] {
+                (char) ('0' + hours / 10), (char) ('0' + hours % 10), ':',
+                (char) ('0' + minutes / 10), (char) ('0' + minutes % 10) });
+    }
+
+
+    /**
+     * Check if a time text is exactly in the shown format. ("HH:MM")
+     *
+     * @param programTime the time text.
+     * @return true if in the shown format, false otherwise.
+     */
+    private static boolean isShownFormat(@NonNull String programTime)
+    {
+        return programTime.length() == TIME_LENGTH
+                && isDigit(programTime.charAt(0))
+                && isDigit(programTime.charAt(1))
+                && programTime.charAt(2) == ':'
+                && isDigit(programTime.charAt(3))
+                && isDigit(programTime.charAt(4));
+    }
+
+
+    /**
+     * Read a two digits number.
+     *
+     * @param text     the text.
+     * @param position the first digit position.
+     * @param end      the text end.
+     * @return the number, or -1 if not two digits.
+     */
+    private static int readTwoDigits(@NonNull CharSequence text, int position, int end)
+    {
+        if (position + 2 > end)
+            return -1;
+
+        char tens = text.charAt(position);
+        char units = text.charAt(position + 1);
+
+        if (!isDigit(tens) || !isDigit(units))
+            return -1;
+
+        return (tens - '0') * 10 + (units - '0');
+    }
+
+
+    /**
+     * Check if a character is ASCII digit.
+     *
+     * @param c the character.
+     * @return true if digit, false otherwise.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+
+    /**
+     * Check if a character is a space, including non breaking space.
+     *
+     * @param c the character.
+     * @return true if space, false otherwise.
+     */
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == '\u00A0';
     }
 
 
@@ -0,0 +1,277 @@
+package com.penkov.vikstv.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Index of the show on air and the next show, of all the channels with indexed programs.
+ * <p>
+ * The index is computed from the {@code ProgramIndex} schedules - a channel is updated
+ * when its schedule is stored, and all the channels are updated by {@code refresh()},
+ * called once a minute by a single shared tick. Getting a channel is a map lookup,
+ * so it can be done on every bind.
+ */
+public final class NowNextIndex
+        implements ProgramIndex.Listener
+{
+    // TAG to use with logcat.
+    public static final String TAG = NowNextIndex.class.getSimpleName();
+
+    // The shared instance.
+    private static volatile NowNextIndex sInstance = null;
+
+    // The shows, by the channel page reference.
+    private final Map<String, NowNext> mEntries = new ConcurrentHashMap<>();
+
+    // Listeners to changed shows.
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * The show on air and the next show of a channel.
+     */
+    public static final class NowNext
+    {
+        private final String mNow;
+        private final String mNext;
+
+        private NowNext(@NonNull String now, @Nullable String next)
+        {
+            this.mNow = now;
+            this.mNext = next;
+        }
+
+        /**
+         * Get the name of the show on air.
+         *
+         * @return the show name.
+         */
+        public @NonNull String getNow() {
+            return this.mNow;
+        }
+
+        /**
+         * Get the name of the next show.
+         *
+         * @return the show name, or null if the schedule has no next show.
+         */
+        public @Nullable String getNext() {
+            return this.mNext;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof NowNext)) return false;
+
+            NowNext nowNext = (NowNext) o;
+            return this.mNow.equals(nowNext.mNow) && Objects.equals(this.mNext, nowNext.mNext);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.mNow, this.mNext);
+        }
+    }
+
+
+    /**
+     * Listener to changes of the shows.
+     */
+    public interface Listener
+    {
+        /**
+         * Called when the shows of channels changed, on the thread that changed them.
+         *
+         * @param channelReferences the page references of the changed channels.
+         */
+        void onNowNextChanged(@NonNull List<String> channelReferences);
+    }
+
+
+    private NowNextIndex() {
+        ProgramIndex.getInstance().addListener(this);
+    }
+
+
+    /**
+     * Get the shared index.
+     *
+     * @return the index.
+     */
+    public static @NonNull NowNextIndex getInstance()
+    {
+        if (sInstance == null) {
+            synchronized (NowNextIndex.class) {
+                if (sInstance == null)
+                    sInstance = new NowNextIndex();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Get the shows of a channel.
+     *
+     * @param channelReference the channel page reference.
+     * @return the shows, or null if the channel programs are not indexed.
+     */
+    public @Nullable NowNext get(@NonNull String channelReference) {
+        return this.mEntries.get(channelReference);
+    }
+
+
+    /**
+     * Recompute the shows of all the channels, for the current time.
+     * The listeners are called once, with the channels that changed.
+     */
+    public void refresh()
+    {
+        List<String> changed = new ArrayList<>();
+
+        synchronized (this)
+        {
+            final Map<String, ProgramSchedule> schedules = ProgramIndex.getInstance().snapshot();
+            final int minuteOfDay = currentMinuteOfDay();
+
+            // Channels with ended schedules.
+            Iterator<String> iterator = this.mEntries.keySet().iterator();
+            while (iterator.hasNext())
+            {
+                String reference = iterator.next();
+
+                if (!schedules.containsKey(reference)) {
+                    iterator.remove();
+                    changed.add(reference);
+                }
+            }
+
+            for (Map.Entry<String, ProgramSchedule> entry : schedules.entrySet())
+            {
+                if (update(entry.getKey(), entry.getValue(), minuteOfDay))
+                    changed.add(entry.getKey());
+            }
+        }
+
+        notifyChanged(changed);
+    }
+
+
+    /**
+     * Called when a schedule is stored, the channel shows are recomputed.
+     *
+     * @param channelReference the channel page reference.
+     */
+    @Override
+    public void onProgramsIndexed(@NonNull String channelReference)
+    {
+        boolean changed;
+
+        synchronized (this) {
+            changed = update(channelReference,
+                    ProgramIndex.getInstance().get(channelReference), currentMinuteOfDay());
+        }
+
+        if (changed) {
+            List<String> references = new ArrayList<>(1);
+            references.add(channelReference);
+            notifyChanged(references);
+        }
+    }
+
+
+    /**
+     * Add listener to changed shows.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(@NonNull Listener listener) {
+        this.mListeners.add(listener);
+    }
+
+
+    /**
+     * Remove listener to changed shows.
+     *
+     * @param listener the listener.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        this.mListeners.remove(listener);
+    }
+
+
+    /**
+     * Recompute the shows of a channel.
+     * Unchanged shows keep their object, so they are not rebound.
+     *
+     * @param channelReference the channel page reference.
+     * @param schedule         the channel schedule, or null if not indexed.
+     * @param minuteOfDay      the current time, minutes since midnight.
+     * @return true if the shows changed, false otherwise.
+     */
+    private boolean update(@NonNull String channelReference,
+                           @Nullable ProgramSchedule schedule,
+                           int minuteOfDay)
+    {
+        NowNext nowNext = null;
+
+        if (schedule != null)
+        {
+            int current = schedule.currentIndex(minuteOfDay);
+
+            if (current >= 0) {
+                int next = current + 1 < schedule.size() ? current + 1 : -1;
+                nowNext = new NowNext(schedule.getName(current), next >= 0 ? schedule.getName(next) : null);
+            }
+        }
+
+        NowNext oldNowNext = nowNext != null
+                ? this.mEntries.get(channelReference)
+                : this.mEntries.remove(channelReference);
+
+        if (Objects.equals(oldNowNext, nowNext))
+            return false;
+
+        if (nowNext != null)
+            this.mEntries.put(channelReference, nowNext);
+
+        return true;
+    }
+
+
+    /**
+     * Call the listeners, if any channel changed.
+     *
+     * @param channelReferences the changed channels.
+     */
+    private void notifyChanged(@NonNull List<String> channelReferences)
+    {
+        if (channelReferences.isEmpty())
+            return;
+
+        for (Listener listener : this.mListeners)
+            listener.onNowNextChanged(channelReferences);
+    }
+
+
+    /**
+     * Get the current time of day, in the device time zone.
+     *
+     * @return minutes since midnight.
+     */
+    private static int currentMinuteOfDay() {
+        return ProgramSchedule.minuteOfDay(System.currentTimeMillis(), TimeZone.getDefault());
+    }
+}
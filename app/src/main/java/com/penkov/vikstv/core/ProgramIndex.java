@@ -0,0 +1,226 @@
+package com.penkov.vikstv.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In memory index of the channels programs, shared by all the activities.
+ * <p>
+ * A schedule is kept until its last show ends (the end of the last show's day),
+ * after that the schedule can't tell what is on, and it is dropped.
+ */
+public final class ProgramIndex
+{
+    // TAG to use with logcat.
+    public static final String TAG = ProgramIndex.class.getSimpleName();
+
+    // A minute in milliseconds.
+    private static final long MINUTE_MS = 60_000L;
+
+    // Minimal time to keep a schedule, so ended schedules are not fetched over and over.
+    private static final long MIN_VALIDITY_MS = 15 * MINUTE_MS;
+
+    // The shared instance.
+    private static volatile ProgramIndex sInstance = null;
+
+    // The schedules, by the channel page reference.
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    // Listeners to indexed schedules.
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * Listener to schedules stored in the index.
+     */
+    public interface Listener
+    {
+        /**
+         * Called when a schedule is stored, on the thread that stored it.
+         *
+         * @param channelReference the channel page reference.
+         */
+        void onProgramsIndexed(@NonNull String channelReference);
+    }
+
+
+    /**
+     * Indexed schedule, with its expiration time.
+     */
+    private static final class Entry
+    {
+        private final ProgramSchedule mSchedule;
+        private final long mExpirationTime;
+
+        private Entry(@NonNull ProgramSchedule schedule, long expirationTime)
+        {
+            this.mSchedule = schedule;
+            this.mExpirationTime = expirationTime;
+        }
+    }
+
+
+    private ProgramIndex() { }
+
+
+    /**
+     * Get the shared index.
+     *
+     * @return the index.
+     */
+    public static @NonNull ProgramIndex getInstance()
+    {
+        if (sInstance == null) {
+            synchronized (ProgramIndex.class) {
+                if (sInstance == null)
+                    sInstance = new ProgramIndex();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Store the schedule of a channel, replacing the previous one.
+     *
+     * @param channelReference the channel page reference.
+     * @param schedule         the channel schedule, loaded now.
+     */
+    public void put(@NonNull String channelReference, @NonNull ProgramSchedule schedule)
+    {
+        long now = System.currentTimeMillis();
+        long validity = MIN_VALIDITY_MS;
+
+        if (schedule.size() > 0)
+        {
+            int minuteOfDay = ProgramSchedule.minuteOfDay(now, TimeZone.getDefault());
+            int minutesLeft = schedule.getEndMinute() - schedule.toScheduleMinute(minuteOfDay);
+
+            // Expire at the start of the minute the schedule ends.
+            validity = Math.max(validity, minutesLeft * MINUTE_MS - now % MINUTE_MS);
+        }
+
+        synchronized (this.mEntries) {
+            this.mEntries.put(channelReference, new Entry(schedule, now + validity));
+        }
+
+        for (Listener listener : this.mListeners)
+            listener.onProgramsIndexed(channelReference);
+    }
+
+
+    /**
+     * Get the schedule of a channel.
+     *
+     * @param channelReference the channel page reference.
+     * @return the channel schedule, or null if not indexed or ended.
+     */
+    public @Nullable ProgramSchedule get(@NonNull String channelReference)
+    {
+        synchronized (this.mEntries)
+        {
+            Entry entry = this.mEntries.get(channelReference);
+            if (entry == null)
+                return null;
+
+            if (entry.mExpirationTime <= System.currentTimeMillis()) {
+                this.mEntries.remove(channelReference);
+                return null;
+            }
+
+            return entry.mSchedule;
+        }
+    }
+
+
+    /**
+     * Get all the schedules that didn't end, the ended ones are dropped.
+     *
+     * @return copy of the schedules, by the channel page reference.
+     */
+    public @NonNull Map<String, ProgramSchedule> snapshot()
+    {
+        final long now = System.currentTimeMillis();
+
+        synchronized (this.mEntries)
+        {
+            Map<String, ProgramSchedule> schedules = new HashMap<>(this.mEntries.size());
+            Iterator<Map.Entry<String, Entry>> iterator = this.mEntries.entrySet().iterator();
+
+            while (iterator.hasNext())
+            {
+                Map.Entry<String, Entry> entry = iterator.next();
+
+                if (entry.getValue().mExpirationTime <= now)
+                    iterator.remove();
+                else
+                    schedules.put(entry.getKey(), entry.getValue().mSchedule);
+            }
+
+            return schedules;
+        }
+    }
+
+
+    /**
+     * Add listener to stored schedules.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(@NonNull Listener listener) {
+        this.mListeners.add(listener);
+    }
+
+
+    /**
+     * Remove listener to stored schedules.
+     *
+     * @param listener the listener.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        this.mListeners.remove(listener);
+    }
+
+
+    /**
+     * Check if the channel has a schedule that didn't end.
+     *
+     * @param channelReference the channel page reference.
+     * @return true if indexed, false otherwise.
+     */
+    public boolean contains(@NonNull String channelReference) {
+        return get(channelReference) != null;
+    }
+
+
+    /**
+     * Get the number of indexed schedules, including ended ones not yet dropped.
+     *
+     * @return the schedules count.
+     */
+    public int size()
+    {
+        synchronized (this.mEntries) {
+            return this.mEntries.size();
+        }
+    }
+
+
+    /**
+     * Drop all the schedules.
+     */
+    public void clear()
+    {
+        synchronized (this.mEntries) {
+            this.mEntries.clear();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.penkov.vikstv.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * The programs of a channel, by their order.
+ * <p>
+ * The programs are stored in parallel arrays, and the start times are kept as
+ * minutes from the midnight the schedule starts at - a program that starts
+ * before the previous one is of the next day, so the times only grow, even
+ * for schedules of several days. The program on air at a given time is found
+ * by binary search, without allocations.
+ */
+public final class ProgramSchedule
+{
+    // Minutes in a day.
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    // Schedule without programs.
+    private static final ProgramSchedule EMPTY = new ProgramSchedule(new int[0], new String[0], new String[0]);
+
+    // The programs start time, minutes from the first day midnight.
+    private final int[] mStartMinutes;
+
+    // The programs name and time (as shown).
+    private final String[] mNames;
+    private final String[] mTimes;
+
+
+    /**
+     * Builder of a schedule, the programs are added by their order.
+     */
+    public static final class Builder
+    {
+        private int[] mStartMinutes = new int[16];
+        private String[] mNames = new String[16];
+        private String[] mTimes = new String[16];
+        private int mSize = 0;
+
+        // The days passed since the first program.
+        private int mDay = 0;
+
+
+        /**
+         * Add the next program.
+         *
+         * @param program the program, it is of the next day if it starts before the previous one.
+         * @return this builder.
+         */
+        public @NonNull Builder add(@NonNull ChannelProgram program)
+        {
+            append(program.getName(), program.getTime(), program.getCompactTime());
+            return this;
+        }
+
+
+        /**
+         * Add the next program, from its scraped texts - without creating a program object.
+         *
+         * @param name the program name.
+         * @param time the program time, in a format accepted by {@code ChannelProgram.parseTime()}.
+         * @return true if added, false if the time is not valid.
+         */
+        public boolean add(@NonNull String name, @NonNull String time)
+        {
+            final int compactTime = ChannelProgram.parseTime(time);
+            if (compactTime == ChannelProgram.INVALID_TIME)
+                return false;
+
+            append(name, ChannelProgram.normalizeTime(time, compactTime), compactTime);
+            return true;
+        }
+
+
+        /**
+         * Add the next program.
+         *
+         * @param name        the program name.
+         * @param time        the program time, as shown.
+         * @param compactTime the program time, minutes since midnight.
+         */
+        private void append(@NonNull String name, @NonNull String time, int compactTime)
+        {
+            if (this.mSize == this.mStartMinutes.length) {
+                int capacity = this.mSize * 2;
+                this.mStartMinutes = Arrays.copyOf(this.mStartMinutes, capacity);
+                this.mNames = Arrays.copyOf(this.mNames, capacity);
+                this.mTimes = Arrays.copyOf(this.mTimes, capacity);
+            }
+
+            int minute = compactTime + this.mDay * MINUTES_PER_DAY;
+
+            // Day rollover.
+            if (this.mSize > 0 && minute < this.mStartMinutes[this.mSize - 1]) {
+                this.mDay++;
+                minute += MINUTES_PER_DAY;
+            }
+
+            this.mStartMinutes[this.mSize] = minute;
+            this.mNames[this.mSize] = name;
+            this.mTimes[this.mSize] = time;
+            this.mSize++;
+        }
+
+
+        /**
+         * Build the schedule of the added programs.
+         *
+         * @return the schedule.
+         */
+        public @NonNull ProgramSchedule build()
+        {
+            if (this.mSize == 0)
+                return EMPTY;
+
+            return new ProgramSchedule(
+                    Arrays.copyOf(this.mStartMinutes, this.mSize),
+                    Arrays.copyOf(this.mNames, this.mSize),
+                    Arrays.copyOf(this.mTimes, this.mSize));
+        }
+    }
+
+
+    private ProgramSchedule(@NonNull int[] startMinutes,
+                            @NonNull String[] names,
+                            @NonNull String[] times)
+    {
+        this.mStartMinutes = startMinutes;
+        this.mNames = names;
+        this.mTimes = times;
+    }
+
+
+    /**
+     * Get a schedule without programs.
+     *
+     * @return the empty schedule.
+     */
+    public static @NonNull ProgramSchedule empty() {
+        return EMPTY;
+    }
+
+
+    /**
+     * Get the number of programs.
+     *
+     * @return the programs count.
+     */
+    public int size() {
+        return this.mStartMinutes.length;
+    }
+
+
+    /**
+     * Get the program name.
+     *
+     * @param index the program index.
+     * @return the program name.
+     */
+    public @NonNull String getName(int index) {
+        return this.mNames[index];
+    }
+
+
+    /**
+     * Get the program time, as shown. ("HH:MM")
+     *
+     * @param index the program index.
+     * @return the program time.
+     */
+    public @NonNull String getTime(int index) {
+        return this.mTimes[index];
+    }
+
+
+    /**
+     * Get the program start time.
+     *
+     * @param index the program index.
+     * @return minutes from the midnight of the schedule first day.
+     */
+    public int getStartMinute(int index) {
+        return this.mStartMinutes[index];
+    }
+
+
+    /**
+     * Get the end of the schedule - the last program is taken to end with its day.
+     *
+     * @return minutes from the midnight of the schedule first day, 0 if the schedule is empty.
+     */
+    public int getEndMinute()
+    {
+        if (this.mStartMinutes.length == 0)
+            return 0;
+
+        int lastStart = this.mStartMinutes[this.mStartMinutes.length - 1];
+        return (lastStart / MINUTES_PER_DAY + 1) * MINUTES_PER_DAY;
+    }
+
+
+    /**
+     * Find the program on air at a time.
+     *
+     * @param minute minutes from the midnight of the schedule first day.
+     * @return the program index, or -1 if the time is before the first program.
+     */
+    public int indexAt(int minute)
+    {
+        // The last program that starts at the time or before.
+        int low = 0;
+        int high = this.mStartMinutes.length - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+
+            if (this.mStartMinutes[middle] <= minute)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+
+        return high;
+    }
+
+
+    /**
+     * Find the program on air now.
+     * A time of day before the first program is taken as of the next day.
+     *
+     * @param minuteOfDay the current time, minutes since midnight.
+     * @return the program index, or -1 if the schedule is empty.
+     */
+    public int currentIndex(int minuteOfDay) {
+        return indexAt(toScheduleMinute(minuteOfDay));
+    }
+
+
+    /**
+     * Find the next program to air.
+     *
+     * @param minuteOfDay the current time, minutes since midnight.
+     * @return the program index, or -1 if no program is next.
+     */
+    public int nextIndex(int minuteOfDay)
+    {
+        int next = currentIndex(minuteOfDay) + 1;
+        return next < this.mStartMinutes.length ? next : -1;
+    }
+
+
+    /**
+     * Convert time of day to the schedule time.
+     * A time before the first program is taken as of the next day.
+     *
+     * @param minuteOfDay the time, minutes since midnight.
+     * @return minutes from the midnight of the schedule first day.
+     */
+    public int toScheduleMinute(int minuteOfDay)
+    {
+        if (this.mStartMinutes.length > 0 && minuteOfDay < this.mStartMinutes[0])
+            return minuteOfDay + MINUTES_PER_DAY;
+
+        return minuteOfDay;
+    }
+
+
+    /**
+     * Get the time of day, without allocating a calendar.
+     *
+     * @param timeMillis the time, as given by {@code System.currentTimeMillis()}.
+     * @param timeZone   the time zone of the schedule.
+     * @return minutes since midnight.
+     */
+    public static int minuteOfDay(long timeMillis, @NonNull TimeZone timeZone)
+    {
+        long localMillis = timeMillis + timeZone.getOffset(timeMillis);
+        long minute = Math.floorMod(Math.floorDiv(localMillis, 60_000L), (long) MINUTES_PER_DAY);
+
+        return (int) minute;
+    }
+}
@@ -1,6 +1,8 @@
 package com.penkov.vikstv.ui;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -10,6 +12,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.LinearSmoothScroller;
@@ -17,15 +20,34 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.penkov.vikstv.R;
 import com.penkov.vikstv.core.ChannelInfo;
+import com.penkov.vikstv.core.NowNextIndex;
+import com.penkov.vikstv.web.Cache.StreamUrlCache;
+import com.penkov.vikstv.web.base.ScraperPriority;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class ChannelItemAdapter
         extends RecyclerView.Adapter<ChannelItemViewHolder>
+        implements MinuteTicker.Listener, NowNextIndex.Listener
 {
+    // Payload of a bind that updates only the shows on air.
+    private static final Object PAYLOAD_NOW_NEXT = new Object();
+
     // Channel list
     private final ArrayList<ChannelInfo> mChannels;
 
+    // Channel positions, by the channel page reference
+    private final Map<String, Integer> mPositions = new HashMap<>();
+
+    // Posts the shows changes on the UI thread
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Whether the shows on air are updated
+    private boolean mNowNextStarted = false;
+
     // Item focused
     private static final int NO_FOCUS = -1;
     private int positionFocused = NO_FOCUS;
@@ -40,8 +62,10 @@ public class ChannelItemAdapter
      *
      * @param channels list of channels to display.
      */
-    public ChannelItemAdapter(@NonNull ArrayList<ChannelInfo> channels) {
+    public ChannelItemAdapter(@NonNull ArrayList<ChannelInfo> channels)
+    {
         this.mChannels = channels;
+        updatePositions();
     }
 
 
@@ -83,6 +107,182 @@ public class ChannelItemAdapter
     }
 
 
+    /**
+     * Called by RecyclerView to display the data at the specified position,
+     * only the shows on air are updated if that's all that changed.
+     *
+     * @param holder   The ViewHolder which should be updated.
+     * @param position The position of the item within the adapter's data set.
+     * @param payloads The changes of the item, empty for full update.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ChannelItemViewHolder holder,
+                                 int position,
+                                 @NonNull List<Object> payloads)
+    {
+        boolean nowNextOnly = !payloads.isEmpty();
+
+        for (Object payload : payloads)
+            nowNextOnly &= payload == PAYLOAD_NOW_NEXT;
+
+        if (nowNextOnly)
+            holder.updateNowNext();
+        else
+            onBindViewHolder(holder, position);
+    }
+
+
+    /**
+     * Called when a card is shown, its icon becomes urgent.
+     *
+     * @param holder the shown card.
+     */
+    @Override
+    public void onViewAttachedToWindow(@NonNull ChannelItemViewHolder holder)
+    {
+        super.onViewAttachedToWindow(holder);
+        holder.setIconPriority(ScraperPriority.VISIBLE);
+    }
+
+
+    /**
+     * Called when a card is scrolled away, its icon can wait.
+     *
+     * @param holder the hidden card.
+     */
+    @Override
+    public void onViewDetachedFromWindow(@NonNull ChannelItemViewHolder holder)
+    {
+        super.onViewDetachedFromWindow(holder);
+        holder.setIconPriority(ScraperPriority.PREFETCH);
+    }
+
+
+    /**
+     * Replace the channels list, updating only the channels that changed.
+     * If the list didn't change, nothing is done.
+     *
+     * @param channels the new list of channels to display.
+     */
+    public void setChannels(@NonNull ArrayList<ChannelInfo> channels)
+    {
+        // Nothing to update
+        if (this.mChannels.equals(channels))
+            return;
+
+        final ArrayList<ChannelInfo> oldChannels = new ArrayList<>(this.mChannels);
+
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback()
+        {
+            @Override
+            public int getOldListSize() {
+                return oldChannels.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return channels.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return oldChannels.get(oldPosition).getChannelReference().equals(
+                        channels.get(newPosition).getChannelReference());
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return oldChannels.get(oldPosition).equals(channels.get(newPosition));
+            }
+        });
+
+        this.mChannels.clear();
+        this.mChannels.addAll(channels);
+        updatePositions();
+        diff.dispatchUpdatesTo(this);
+    }
+
+
+    /**
+     * Start updating the shows on air, on every minute and on every indexed schedule.
+     * The shows may have changed while stopped, so all the cards are updated.
+     */
+    public void startNowNext()
+    {
+        if (this.mNowNextStarted)
+            return;
+
+        this.mNowNextStarted = true;
+
+        NowNextIndex.getInstance().addListener(this);
+        MinuteTicker.getInstance().register(this);
+
+        // Shows changed while stopped are not notified.
+        NowNextIndex.getInstance().refresh();
+        notifyItemRangeChanged(0, this.mChannels.size(), PAYLOAD_NOW_NEXT);
+    }
+
+
+    /**
+     * Stop updating the shows on air, when the cards are not shown.
+     */
+    public void stopNowNext()
+    {
+        if (!this.mNowNextStarted)
+            return;
+
+        this.mNowNextStarted = false;
+
+        NowNextIndex.getInstance().removeListener(this);
+        MinuteTicker.getInstance().unregister(this);
+        this.mHandler.removeCallbacksAndMessages(null);
+    }
+
+
+    /**
+     * Called on every minute, the shows on air of all the channels are recomputed.
+     */
+    @Override
+    public void onMinuteTick() {
+        NowNextIndex.getInstance().refresh();
+    }
+
+
+    /**
+     * Called when shows on air changed, possibly on a background thread.
+     *
+     * @param channelReferences the page references of the changed channels.
+     */
+    @Override
+    public void onNowNextChanged(@NonNull List<String> channelReferences)
+    {
+        this.mHandler.post(() -> {
+            if (!this.mNowNextStarted)
+                return;
+
+            for (String reference : channelReferences)
+            {
+                Integer position = this.mPositions.get(reference);
+
+                if (position != null)
+                    notifyItemChanged(position, PAYLOAD_NOW_NEXT);
+            }
+        });
+    }
+
+
+    /**
+     * Map the channels to their positions.
+     */
+    private void updatePositions()
+    {
+        this.mPositions.clear();
+
+        for (int i = 0; i < this.mChannels.size(); i++)
+            this.mPositions.put(this.mChannels.get(i).getChannelReference(), i);
+    }
+
+
     /**
      * Returns the total number of items in the data set held by the adapter.
      *
@@ -127,6 +327,12 @@ public class ChannelItemAdapter
         if (this.mRecyclerView == null)
             return;
 
+        // The user may open the focused channel, resolve its video ahead
+        if (haveFocus && position >= 0 && position < this.mChannels.size())
+            StreamUrlCache.getInstance().preResolve(
+                    this.mRecyclerView.getContext(),
+                    this.mChannels.get(position).getChannelReference());
+
         // Smooth scroll if no scroll registered
         if (this.mRecyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE)
             this.mRecyclerView.smoothScrollToPosition(this.positionFocused);
@@ -5,6 +5,7 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -14,8 +15,10 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.penkov.vikstv.R;
 import com.penkov.vikstv.core.ChannelInfo;
+import com.penkov.vikstv.core.NowNextIndex;
+import com.penkov.vikstv.web.Cache.ChannelIconCache;
 import com.penkov.vikstv.web.Listener.ListenerChannelIcon;
-import com.penkov.vikstv.web.Scraper.ScraperChannelIcon;
+import com.penkov.vikstv.web.base.ScraperPriority;
 
 public class ChannelItemViewHolder
         extends RecyclerView.ViewHolder
@@ -32,8 +35,17 @@ public class ChannelItemViewHolder
     // card items
     private final ImageView mChannelIconImageView;
     private final TextView mChannelNameTextView;
+    private final TextView mNowNextTextView;
+
+    // The shown shows on air, to skip unchanged updates.
+    private NowNextIndex.NowNext mNowNext = null;
+
+    // The shown icon, holding a reference from the icon cache.
     private Bitmap mChannelIcon = null;
 
+    // The icon load in progress, cancelled when the card is rebound.
+    private ChannelIconCache.Request mIconRequest = null;
+
     // Default parameters
     private static final int DEFAULT_TEXT = R.string.null_channel_name;
     private static final int DEFAULT_IMAGE = R.mipmap.ic_launcher;
@@ -57,6 +69,7 @@ public class ChannelItemViewHolder
         // Set local items
         this.mChannelIconImageView = itemView.findViewById(R.id.imageViewChannelIcon);
         this.mChannelNameTextView = itemView.findViewById(R.id.textViewChannelName);
+        this.mNowNextTextView = itemView.findViewById(R.id.textViewChannelNowNext);
     }
 
 
@@ -70,19 +83,67 @@ public class ChannelItemViewHolder
         // Store this channel info.
         this.mChannelInfo = channelInfo;
 
-        if (mChannelIcon != null) {
-            mChannelIcon.recycle();
-            mChannelIcon = null;
+        // The previous icon is not needed anymore, don't waste bandwidth on it.
+        if (mIconRequest != null) {
+            mIconRequest.cancel();
+            mIconRequest = null;
         }
 
         // Set the channel default parameters
         mChannelNameTextView.setText(DEFAULT_TEXT);
         mChannelIconImageView.setImageResource(DEFAULT_IMAGE);
 
+        // The icon may be shared with other cards, so it is not recycled,
+        // only released (once not shown) - it is reused when no longer referenced.
+        ChannelIconCache.getInstance().release(mChannelIcon);
+        mChannelIcon = null;
+
         if (channelInfo != null) {
             loadImage(channelInfo);
             mChannelNameTextView.setText(channelInfo.getChannelName());
         }
+
+        mNowNext = null;
+        mNowNextTextView.setText(null);
+        updateNowNext();
+    }
+
+
+    /**
+     * Update the shows on air of the channel, from the shared index.
+     */
+    public void updateNowNext()
+    {
+        NowNextIndex.NowNext nowNext = mChannelInfo != null
+                ? NowNextIndex.getInstance().get(mChannelInfo.getChannelReference())
+                : null;
+
+        // The index keeps unchanged shows.
+        if (nowNext == mNowNext)
+            return;
+
+        mNowNext = nowNext;
+
+        if (nowNext == null)
+            mNowNextTextView.setText(null);
+        else if (nowNext.getNext() == null)
+            mNowNextTextView.setText(itemView.getContext().getString(
+                    R.string.now_on_air, nowNext.getNow()));
+        else
+            mNowNextTextView.setText(itemView.getContext().getString(
+                    R.string.now_next_on_air, nowNext.getNow(), nowNext.getNext()));
+    }
+
+
+    /**
+     * Set the priority of the icon load, if the icon is still loading.
+     *
+     * @param priority {@code VISIBLE} when the card is shown, {@code PREFETCH} otherwise.
+     */
+    public void setIconPriority(@NonNull ScraperPriority priority)
+    {
+        if (mIconRequest != null)
+            mIconRequest.setPriority(priority);
     }
 
 
@@ -120,6 +181,10 @@ public class ChannelItemViewHolder
                 ).putExtra(
                         VideoActivity.CHANNEL,
                         mChannelInfo
+                ).putExtra(
+                        // The list itself is read from the shared store
+                        VideoActivity.POSITION,
+                        getAdapterPosition()
                 )
         );
     }
@@ -127,61 +192,87 @@ public class ChannelItemViewHolder
 
     /**
      * Load icon for the channel card.
+     * Icon in the memory cache is set immediately, otherwise it is set when loaded.
      *
      */
     private void loadImage(@NonNull ChannelInfo channelInfo)
     {
-        // Scrap the channel icon
-        new ScraperChannelIcon(
-                channelInfo.getChannelIconReference(),
+        ChannelIconCache iconCache = ChannelIconCache.getInstance();
+        String iconReference = channelInfo.getChannelIconReference();
+
+        // Decode the icon at the size it is shown.
+        ViewGroup.LayoutParams iconSize = mChannelIconImageView.getLayoutParams();
+        int width = Math.max(0, iconSize.width);
+        int height = Math.max(0, iconSize.height);
+
+        // Paint cached icon with this bind.
+        Bitmap cachedIcon = iconCache.acquireCached(iconReference, width, height);
+        if (cachedIcon != null) {
+            updateIcon(cachedIcon);
+            return;
+        }
+
+        // Cards bound ahead of scrolling are not shown yet.
+        ScraperPriority priority = itemView.isAttachedToWindow()
+                ? ScraperPriority.VISIBLE
+                : ScraperPriority.PREFETCH;
+
+        // Load the channel icon from the disk or the server
+        mIconRequest = iconCache.load(
+                iconReference, width, height, priority,
                 new ListenerChannelIcon()
                 {
                     @Override
                     public void onResult(@NonNull Bitmap icon)
                     {
-                        if (mChannelInfo == channelInfo)
-                            updateIcon(icon);
-                        else
-                            icon.recycle();
+                        // Views are updated on the UI thread only.
+                        itemView.post(() -> {
+                            if (mChannelInfo == channelInfo)
+                                updateIcon(icon);
+                            else
+                                iconCache.release(icon);
+                        });
                     }
 
                     @Override
                     public void onError(@NonNull Exception exception)
                     {
-                        iconLoadingError(exception);
+                        iconLoadingError(channelInfo, exception);
                     }
                 }
-        ).load();
+        );
     }
 
 
     /**
      * Update the channel icon, and manage resources.
      *
-     * @param icon bitmap to set for the channel card.
+     * @param icon bitmap to set for the channel card, acquired from the icon cache.
      */
     private void updateIcon(@NonNull Bitmap icon)
     {
-        // Clean the previous icon
-        if (mChannelIcon != null)
-            mChannelIcon.recycle();
+        // Release the old icon, after it is replaced in the view.
+        Bitmap oldIcon = mChannelIcon;
 
         // Set the new icon
         mChannelIcon = icon;
         mChannelIconImageView.setImageBitmap(icon);
+
+        ChannelIconCache.getInstance().release(oldIcon);
     }
 
 
     /**
      * Default process to make when icon loading failed.
      *
-     * @param e exception describing what got wrong.
+     * @param channelInfo the channel of the icon.
+     * @param e           exception describing what got wrong.
      */
-    private void iconLoadingError(@NonNull Exception e)
+    private void iconLoadingError(@NonNull ChannelInfo channelInfo, @NonNull Exception e)
     {
         // Post the error over logcat
         Log.w(TAG, String.format(
                 "Could not load icon of channel: \"%s\"",
-                mChannelInfo.getChannelName()), e);
+                channelInfo.getChannelName()), e);
     }
 }
@@ -0,0 +1,235 @@
+package com.penkov.vikstv.ui;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.penkov.vikstv.core.ChannelInfo;
+import com.penkov.vikstv.web.Cache.StreamUrlCache;
+import com.penkov.vikstv.web.base.ScraperPriority;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Switches between the channels of the list, by their order, and keeps the neighbours warm.
+ * <p>
+ * The video of the neighbour channels is resolved ahead, and the channel the user
+ * is most likely to switch to (the next one in the last direction) is buffered
+ * on the standby player. On low RAM devices or metered networks, fewer neighbours
+ * are resolved and no stream is buffered ahead.
+ * Must be used from the UI thread only.
+ */
+final class ChannelZapper
+        implements StreamUrlCache.Listener
+{
+    // TAG to use with logcat.
+    public static final String TAG = ChannelZapper.class.getSimpleName();
+
+    // Neighbours resolved ahead on each side, normally and under limits.
+    private static final int NEIGHBOURS = 2;
+    private static final int LIMITED_NEIGHBOURS = 1;
+
+    private final Context mContext;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // The channels, by the list order.
+    private final List<ChannelInfo> mChannels;
+
+    // The current channel position, and the last switch direction (1 or -1).
+    private int mPosition;
+    private int mDirection = 1;
+
+    // The channel to buffer on the standby player, once resolved.
+    private String mStandbyReference = null;
+
+    // Whether the neighbours are kept warm.
+    private boolean mStarted = false;
+
+
+    /**
+     * Create zapper over the channels list.
+     *
+     * @param context  the context of the application.
+     * @param channels the channels, by the list order.
+     * @param position the position of the current channel, looked up if the list changed since.
+     * @param channel  the current channel, added to the list if missing.
+     */
+    ChannelZapper(@NonNull Context context,
+                  @NonNull List<ChannelInfo> channels,
+                  int position,
+                  @NonNull ChannelInfo channel)
+    {
+        this.mContext = context.getApplicationContext();
+        this.mChannels = new ArrayList<>(channels);
+
+        if (position < 0 || position >= this.mChannels.size()
+                || !this.mChannels.get(position).equals(channel))
+            position = this.mChannels.indexOf(channel);
+
+        if (position < 0) {
+            this.mChannels.add(channel);
+            position = this.mChannels.size() - 1;
+        }
+
+        this.mPosition = position;
+    }
+
+
+    /**
+     * Get the position of the current channel.
+     *
+     * @return the position in the channels list.
+     */
+    int getPosition() {
+        return this.mPosition;
+    }
+
+
+    /**
+     * Get the current channel.
+     *
+     * @return the channel.
+     */
+    @NonNull ChannelInfo getChannel() {
+        return this.mChannels.get(this.mPosition);
+    }
+
+
+    /**
+     * Switch to a channel before or after the current one, the list wraps around.
+     *
+     * @param step positive for the next channels, negative for the previous ones.
+     * @return the new current channel.
+     */
+    @NonNull ChannelInfo zap(int step)
+    {
+        this.mPosition = Math.floorMod(this.mPosition + step, this.mChannels.size());
+
+        if (step != 0)
+            this.mDirection = step > 0 ? 1 : -1;
+
+        return getChannel();
+    }
+
+
+    /**
+     * Start keeping the neighbours warm, once the current channel plays.
+     */
+    void start()
+    {
+        if (this.mStarted)
+            return;
+
+        this.mStarted = true;
+        StreamUrlCache.getInstance().addListener(this);
+    }
+
+
+    /**
+     * Stop keeping the neighbours warm, and release the standby player.
+     */
+    void stop()
+    {
+        if (!this.mStarted)
+            return;
+
+        this.mStarted = false;
+        this.mStandbyReference = null;
+
+        StreamUrlCache.getInstance().removeListener(this);
+        PlayerManager.getInstance().releaseStandby();
+    }
+
+
+    /**
+     * Resolve the neighbours of the current channel, and buffer the likely next one.
+     * Called once the current channel plays, so it doesn't compete on bandwidth.
+     */
+    void warm()
+    {
+        if (!this.mStarted || this.mChannels.size() < 2)
+            return;
+
+        final boolean limited = isLimited();
+        final int neighbours = Math.min(limited ? LIMITED_NEIGHBOURS : NEIGHBOURS,
+                this.mChannels.size() - 1);
+
+        StreamUrlCache cache = StreamUrlCache.getInstance();
+
+        // The likely next channel first, then by distance.
+        for (int distance = 1; distance <= neighbours; distance++)
+        {
+            for (int side : new int[] { this.mDirection, -this.mDirection })
+            {
+                ChannelInfo neighbour = neighbour(side * distance);
+
+                cache.resolve(this.mContext, neighbour.getChannelReference(),
+                        distance == 1 && side == this.mDirection
+                                ? ScraperPriority.VISIBLE
+                                : ScraperPriority.PREFETCH);
+            }
+        }
+
+        // Buffering ahead takes memory and bandwidth.
+        if (limited) {
+            this.mStandbyReference = null;
+            PlayerManager.getInstance().releaseStandby();
+            return;
+        }
+
+        this.mStandbyReference = neighbour(this.mDirection).getChannelReference();
+
+        String url = cache.get(this.mStandbyReference);
+        if (url != null)
+            PlayerManager.getInstance().prepareStandby(this.mContext, url);
+    }
+
+
+    /**
+     * Called when a URL is resolved, the likely next channel is buffered.
+     *
+     * @param channelReference the channel page reference.
+     * @param url              the video URL.
+     */
+    @Override
+    public void onStreamUrlResolved(@NonNull String channelReference, @NonNull String url)
+    {
+        this.mHandler.post(() -> {
+            if (this.mStarted && channelReference.equals(this.mStandbyReference))
+                PlayerManager.getInstance().prepareStandby(this.mContext, url);
+        });
+    }
+
+
+    /**
+     * Get a channel relative to the current one, the list wraps around.
+     *
+     * @param offset the offset from the current channel.
+     * @return the channel.
+     */
+    private @NonNull ChannelInfo neighbour(int offset) {
+        return this.mChannels.get(Math.floorMod(this.mPosition + offset, this.mChannels.size()));
+    }
+
+
+    /**
+     * Check if the memory or the network are limited.
+     *
+     * @return true on low RAM device or metered network, false otherwise.
+     */
+    private boolean isLimited()
+    {
+        ActivityManager activityManager =
+                (ActivityManager) this.mContext.getSystemService(Context.ACTIVITY_SERVICE);
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) this.mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        return (activityManager != null && activityManager.isLowRamDevice())
+                || (connectivityManager != null && connectivityManager.isActiveNetworkMetered());
+    }
+}
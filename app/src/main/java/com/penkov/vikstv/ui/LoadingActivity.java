@@ -12,13 +12,20 @@ import android.widget.TextView;
 
 import androidx.activity.EdgeToEdge;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
 
 import com.penkov.vikstv.R;
 import com.penkov.vikstv.core.ChannelInfo;
+import com.penkov.vikstv.core.ChannelListSnapshot;
 import com.penkov.vikstv.web.Listener.ListenerChannelList;
 import com.penkov.vikstv.web.Scraper.ScraperChannelList;
+import com.penkov.vikstv.web.base.ScraperDispatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
 
 public class LoadingActivity extends AppCompatActivity
 {
@@ -61,6 +68,27 @@ public class LoadingActivity extends AppCompatActivity
         this.loadingImageView = findViewById(R.id.loadingImageView);
         this.loadingContainer = findViewById(R.id.loadingContainerLayout);
 
+        // Look for the last known channels, reading the file off the UI thread
+        ScraperDispatcher.getInstance().submit(new SnapshotLoader());
+    }
+
+
+    /**
+     * Called when the snapshot lookup is done.
+     *
+     * @param snapshot the last known channels, or null if none are stored.
+     */
+    private void onSnapshotLoaded(@Nullable ChannelInfo[] snapshot)
+    {
+        if (isFinishing() || isDestroyed())
+            return;
+
+        // Show the last known channels right away, they are refreshed by MainActivity
+        if (snapshot != null) {
+            startMainActivity(snapshot, true);
+            return;
+        }
+
         // Start the loading icon rotation
         Animation rotationAnimation = AnimationUtils.loadAnimation(
                 this, R.anim.loading_image_rotation);
@@ -101,6 +129,19 @@ public class LoadingActivity extends AppCompatActivity
      * @param channelInfos list of loaded channels.
      */
     private void onResult (@NonNull ChannelInfo[] channelInfos)
+    {
+        // The channels are fresh, no need to refresh
+        startMainActivity(channelInfos, false);
+    }
+
+
+    /**
+     * Start the MainActivity with the channels, and close this activity.
+     *
+     * @param channelInfos list of channels to show.
+     * @param refresh      whether the channels are from the snapshot, and should be refreshed.
+     */
+    private void startMainActivity (@NonNull ChannelInfo[] channelInfos, boolean refresh)
     {
         // Start the MainActivity
         startActivity(
@@ -115,7 +156,11 @@ public class LoadingActivity extends AppCompatActivity
                 ).putParcelableArrayListExtra(
                         // Set the intent all of the channels
                         MainActivity.CHANNELS,
-                        channelListScrapper.getChannelsArrayList()
+                        new ArrayList<>(Arrays.asList(channelInfos))
+                ).putExtra(
+                        // Ask to refresh stale channels
+                        MainActivity.REFRESH,
+                        refresh
                 )
         );
 
@@ -145,6 +190,33 @@ public class LoadingActivity extends AppCompatActivity
     }
 
 
+    /**
+     * Reads the channel list snapshot on a dispatcher worker,
+     *   and hands it to the UI thread.
+     */
+    private class SnapshotLoader implements ScraperDispatcher.Task
+    {
+        @Override
+        public void run()
+        {
+            ChannelInfo[] snapshot = ChannelListSnapshot.load(getApplicationContext());
+
+            LoadingActivity.this.runOnUiThread(
+                    () -> LoadingActivity.this.onSnapshotLoaded(snapshot)
+            );
+        }
+
+        @Override
+        public void onRejected(@NonNull RejectedExecutionException exception)
+        {
+            // No worker for the file, load the channels from the site instead.
+            LoadingActivity.this.runOnUiThread(
+                    () -> LoadingActivity.this.onSnapshotLoaded(null)
+            );
+        }
+    }
+
+
     /**
      * Class the serves as listener wrapper implementation -
      *   to call the inner methods.
@@ -154,6 +226,9 @@ public class LoadingActivity extends AppCompatActivity
         @Override
         public void onResult(@NonNull ChannelInfo[] channelInfos)
         {
+            // Store the channels for the next launch (still in the background).
+            ChannelListSnapshot.save(LoadingActivity.this, channelInfos);
+
             // Run the local onResult method, making sure UI functions available.
             LoadingActivity.this.runOnUiThread(
                     () -> LoadingActivity.this.onResult(channelInfos)
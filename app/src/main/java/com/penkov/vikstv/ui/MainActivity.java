@@ -2,6 +2,7 @@ package com.penkov.vikstv.ui;
 
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.util.Log;
 
 import androidx.activity.EdgeToEdge;
 import androidx.annotation.NonNull;
@@ -14,14 +15,33 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.penkov.vikstv.R;
 import com.penkov.vikstv.core.ChannelInfo;
+import com.penkov.vikstv.core.ChannelListSnapshot;
+import com.penkov.vikstv.core.ChannelListStore;
+import com.penkov.vikstv.web.Cache.ProgramPrefetcher;
+import com.penkov.vikstv.web.Cache.StreamUrlCache;
+import com.penkov.vikstv.web.Listener.ListenerChannelList;
+import com.penkov.vikstv.web.Scraper.ScraperChannelList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class MainActivity extends AppCompatActivity
 {
+    // TAG to use with logcat
+    public static final String TAG = "MainActivity";
+
     // Channel transferring key
     public static final String CHANNELS = "channel_list";
 
+    // Key of flag whether the channels are stale, and should be refreshed
+    public static final String REFRESH = "refresh_channel_list";
+
+    // The channels grid adapter
+    private ChannelItemAdapter mChannelAdapter = null;
+
+    // Scraper refreshing stale channels
+    private ScraperChannelList mRefreshScraper = null;
+
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -47,6 +67,48 @@ public class MainActivity extends AppCompatActivity
 
         // Start the UI
         loadChannels(channels);
+
+        // Refresh the channels in the background, if they are stale
+        if (getIntent().getBooleanExtra(REFRESH, false))
+            refreshChannels();
+    }
+
+
+    @Override
+    protected void onStart()
+    {
+        super.onStart();
+
+        // Update the shows on air only while the channels are shown
+        if (this.mChannelAdapter != null)
+            this.mChannelAdapter.startNowNext();
+    }
+
+
+    @Override
+    protected void onStop()
+    {
+        super.onStop();
+
+        if (this.mChannelAdapter != null)
+            this.mChannelAdapter.stopNowNext();
+
+        // The focused channel wasn't opened
+        StreamUrlCache.getInstance().cancelPreResolve();
+    }
+
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        // Don't get refresh results after the activity is gone
+        if (this.mRefreshScraper != null)
+            this.mRefreshScraper.removeListener();
+
+        // The channels are not shown anymore
+        ProgramPrefetcher.getInstance().cancel();
     }
 
 
@@ -65,6 +127,47 @@ public class MainActivity extends AppCompatActivity
         // Call the recycler view adapter
         RecyclerView recyclerView = findViewById(R.id.recyclerView_channelList);
         recyclerView.setLayoutManager(new GridLayoutManager(this, columns));
-        recyclerView.setAdapter(new ChannelItemAdapter(channels));
+        this.mChannelAdapter = new ChannelItemAdapter(channels);
+        recyclerView.setAdapter(this.mChannelAdapter);
+
+        // The video activity switches channels by the shown list
+        ChannelListStore.getInstance().set(channels);
+
+        // Load the programs in the background, so channels open with their programs
+        ProgramPrefetcher.getInstance().prefetch(channels);
+    }
+
+
+    /**
+     * Load the channel list from the server, and update the UI if it changed.
+     */
+    private void refreshChannels ()
+    {
+        this.mRefreshScraper = new ScraperChannelList(new ListenerChannelList()
+        {
+            @Override
+            public void onResult(@NonNull ChannelInfo[] channelInfos)
+            {
+                // Store the channels for the next launch (still in the background).
+                ChannelListSnapshot.save(MainActivity.this, channelInfos);
+
+                ArrayList<ChannelInfo> channels = new ArrayList<>(Arrays.asList(channelInfos));
+                ProgramPrefetcher.getInstance().prefetch(channels);
+
+                runOnUiThread(() -> {
+                    mChannelAdapter.setChannels(channels);
+                    ChannelListStore.getInstance().set(channels);
+                });
+            }
+
+            @Override
+            public void onError(@NonNull Exception exception)
+            {
+                // Keep showing the stale channels.
+                Log.w(TAG, "Couldn't refresh the channel list.", exception);
+            }
+        });
+
+        this.mRefreshScraper.load();
     }
 }
\ No newline at end of file
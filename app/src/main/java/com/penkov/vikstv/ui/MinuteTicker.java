@@ -0,0 +1,123 @@
+package com.penkov.vikstv.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared ticker, called on the UI thread at the start of every wall clock minute.
+ * <p>
+ * The ticker runs only while it has listeners, and is scheduled
+ * to the next minute on every tick - it doesn't poll.
+ * Must be used from the UI thread only.
+ */
+public final class MinuteTicker
+{
+    // TAG to use with logcat.
+    public static final String TAG = MinuteTicker.class.getSimpleName();
+
+    // A minute in milliseconds.
+    private static final long MINUTE_MS = 60_000L;
+
+    // The shared instance.
+    private static volatile MinuteTicker sInstance = null;
+
+    // Posts the ticks on the UI thread.
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mTick = this::tick;
+
+    // The registered listeners, by registration order.
+    private final List<Listener> mListeners = new ArrayList<>();
+
+
+    /**
+     * Listener called on every minute.
+     */
+    public interface Listener
+    {
+        /**
+         * Called at the start of a minute, on the UI thread.
+         */
+        void onMinuteTick();
+    }
+
+
+    private MinuteTicker() { }
+
+
+    /**
+     * Get the shared ticker.
+     *
+     * @return the ticker.
+     */
+    public static @NonNull MinuteTicker getInstance()
+    {
+        if (sInstance == null) {
+            synchronized (MinuteTicker.class) {
+                if (sInstance == null)
+                    sInstance = new MinuteTicker();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Register a listener, the ticker starts with the first one.
+     *
+     * @param listener the listener, registering twice has no effect.
+     */
+    public void register(@NonNull Listener listener)
+    {
+        if (this.mListeners.contains(listener))
+            return;
+
+        this.mListeners.add(listener);
+
+        if (this.mListeners.size() == 1)
+            scheduleNextTick();
+    }
+
+
+    /**
+     * Unregister a listener, the ticker stops with the last one.
+     *
+     * @param listener the listener, unregistering unknown listener has no effect.
+     */
+    public void unregister(@NonNull Listener listener)
+    {
+        if (this.mListeners.remove(listener) && this.mListeners.isEmpty())
+            this.mHandler.removeCallbacks(this.mTick);
+    }
+
+
+    /**
+     * Call the listeners, and schedule the next tick.
+     */
+    private void tick()
+    {
+        // Listeners may unregister while called.
+        for (Listener listener : this.mListeners.toArray(new Listener[0]))
+            listener.onMinuteTick();
+
+        if (!this.mListeners.isEmpty())
+            scheduleNextTick();
+    }
+
+
+    /**
+     * Schedule the next tick, at the start of the next wall clock minute.
+     */
+    private void scheduleNextTick()
+    {
+        long now = System.currentTimeMillis();
+
+        this.mHandler.removeCallbacks(this.mTick);
+        this.mHandler.postDelayed(this.mTick, MINUTE_MS - now % MINUTE_MS);
+    }
+}
@@ -0,0 +1,175 @@
+package com.penkov.vikstv.ui;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.StringRes;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
+import androidx.media3.exoplayer.trackselection.AdaptiveTrackSelection;
+import androidx.media3.exoplayer.trackselection.DefaultTrackSelector;
+
+import com.penkov.vikstv.R;
+import com.penkov.vikstv.web.Cache.BandwidthStore;
+import com.penkov.vikstv.web.Cache.MediaCache;
+
+/**
+ * How the player starts a live stream - how much it buffers before playing,
+ * and at which bitrate it starts.
+ * <p>
+ * {@code FAST_START} plays after a short buffer, starting from a low bandwidth estimate
+ * (so the lowest variant is selected first) and quickly ramping up.
+ * {@code STABLE} keeps the player defaults, waiting for a larger buffer to rebuffer less.
+ * Both start from the measured bandwidth of the network, once it has samples,
+ * and load the streams through the shared media cache.
+ * The user's choice is kept in the shared preferences.
+ */
+public enum PlaybackProfile
+{
+    FAST_START(R.string.profile_fast_start,
+            15_000, 30_000, 1_000, 2_500,
+            500_000L, 5_000),
+
+    STABLE(R.string.profile_stable,
+            DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+            0, AdaptiveTrackSelection.DEFAULT_MIN_DURATION_FOR_QUALITY_INCREASE_MS);
+
+    // The preferences holding the profile.
+    private static final String PREFERENCES = "playback";
+    private static final String KEY_PROFILE = "profile";
+
+    // The profile used until the user chooses.
+    public static final PlaybackProfile DEFAULT = FAST_START;
+
+    // The profile name shown to the user.
+    private final int mNameId;
+
+    // Buffer before playing and the buffer limits, in milliseconds.
+    private final int mMinBufferMs;
+    private final int mMaxBufferMs;
+    private final int mBufferForPlaybackMs;
+    private final int mBufferForPlaybackAfterRebufferMs;
+
+    // Bandwidth estimate of a network without samples, in bits per second (0 for the meter default).
+    private final long mInitialBitrate;
+
+    // Time the bandwidth must allow a higher variant, before switching to it.
+    private final int mMinDurationForQualityIncreaseMs;
+
+
+    PlaybackProfile(@StringRes int nameId,
+                    int minBufferMs,
+                    int maxBufferMs,
+                    int bufferForPlaybackMs,
+                    int bufferForPlaybackAfterRebufferMs,
+                    long initialBitrate,
+                    int minDurationForQualityIncreaseMs)
+    {
+        this.mNameId = nameId;
+        this.mMinBufferMs = minBufferMs;
+        this.mMaxBufferMs = maxBufferMs;
+        this.mBufferForPlaybackMs = bufferForPlaybackMs;
+        this.mBufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.mInitialBitrate = initialBitrate;
+        this.mMinDurationForQualityIncreaseMs = minDurationForQualityIncreaseMs;
+    }
+
+
+    /**
+     * Get the profile name shown to the user.
+     *
+     * @return the name string resource.
+     */
+    public @StringRes int getNameId() {
+        return this.mNameId;
+    }
+
+
+    /**
+     * Get the profile that follows this one, to switch between them.
+     *
+     * @return the next profile.
+     */
+    public @NonNull PlaybackProfile next() {
+        return values()[(ordinal() + 1) % values().length];
+    }
+
+
+    /**
+     * Build a player that starts streams by this profile.
+     *
+     * @param context the context of the application.
+     * @return the player.
+     */
+    public @NonNull ExoPlayer buildPlayer(@NonNull Context context)
+    {
+        DefaultLoadControl loadControl = new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(
+                        this.mMinBufferMs,
+                        this.mMaxBufferMs,
+                        this.mBufferForPlaybackMs,
+                        this.mBufferForPlaybackAfterRebufferMs)
+                .setPrioritizeTimeOverSizeThresholds(true)
+                .build();
+
+        DefaultTrackSelector trackSelector = new DefaultTrackSelector(context,
+                new AdaptiveTrackSelection.Factory(
+                        this.mMinDurationForQualityIncreaseMs,
+                        AdaptiveTrackSelection.DEFAULT_MAX_DURATION_FOR_QUALITY_DECREASE_MS,
+                        AdaptiveTrackSelection.DEFAULT_MIN_DURATION_TO_RETAIN_AFTER_DISCARD_MS,
+                        AdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION));
+
+        return new ExoPlayer.Builder(context)
+                .setLoadControl(loadControl)
+                .setBandwidthMeter(BandwidthStore.getInstance().createMeter(context, this.mInitialBitrate))
+                .setTrackSelector(trackSelector)
+                .setMediaSourceFactory(
+                        new DefaultMediaSourceFactory(MediaCache.getInstance().getDataSourceFactory()))
+                .build();
+    }
+
+
+    /**
+     * Load the profile chosen by the user.
+     *
+     * @param context the context of the application.
+     * @return the chosen profile, or the default one.
+     */
+    public static @NonNull PlaybackProfile load(@NonNull Context context)
+    {
+        String name = preferences(context).getString(KEY_PROFILE, DEFAULT.name());
+
+        try {
+            return valueOf(name);
+        }
+        catch (IllegalArgumentException e) {
+            return DEFAULT;
+        }
+    }
+
+
+    /**
+     * Store the profile chosen by the user.
+     *
+     * @param context the context of the application.
+     */
+    public void save(@NonNull Context context) {
+        preferences(context).edit().putString(KEY_PROFILE, name()).apply();
+    }
+
+
+    /**
+     * Get the preferences of the playback.
+     *
+     * @param context the context of the application.
+     * @return the shared preferences.
+     */
+    static @NonNull SharedPreferences preferences(@NonNull Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,277 @@
+package com.penkov.vikstv.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.datasource.HttpDataSource;
+
+import java.util.Random;
+
+/**
+ * Recovers the playback from errors, without hammering the device or the server.
+ * <p>
+ * The errors are sorted by type, and each type has its action - a stream that fell behind
+ * the live window is restarted at once, a network error retries the same URL,
+ * an HTTP error that looks like an expired token resolves the URL again,
+ * and a decoder error rebuilds the player. The retries are delayed by exponential backoff
+ * with jitter, and after the retries budget the recovery gives up.
+ * The budget is restored once the stream plays steadily.
+ * Must be used from the UI thread only.
+ */
+final class PlaybackRecovery
+{
+    // TAG to use with logcat.
+    public static final String TAG = PlaybackRecovery.class.getSimpleName();
+
+    // The retries before giving up.
+    static final int MAX_ATTEMPTS = 6;
+
+    // The backoff delays, doubled on every attempt.
+    private static final long BASE_DELAY_MS = 1_000;
+    private static final long MAX_DELAY_MS = 30_000;
+
+    // Playing this long restores the retries budget.
+    private static final long STEADY_PLAYBACK_MS = 30_000;
+
+
+    /**
+     * The error types, by their recovery action.
+     */
+    enum ErrorType
+    {
+        // The stream fell behind the live window, restart it at the live position.
+        BEHIND_LIVE_WINDOW,
+
+        // The server is not reachable, retry the same URL.
+        NETWORK,
+
+        // The server refuses the URL, probably an expired token - resolve the URL again.
+        STALE_URL,
+
+        // The decoder failed, rebuild the player.
+        DECODER,
+
+        // Anything else, retry the same URL.
+        OTHER
+    }
+
+
+    /**
+     * The recovery actions, called on the UI thread.
+     */
+    interface Callback
+    {
+        /**
+         * Play the same URL again.
+         *
+         * @param rebuildPlayer true if the player should be built again.
+         */
+        void onRetry(boolean rebuildPlayer);
+
+        /**
+         * Resolve the URL again, and play it.
+         * If the resolution fails, call {@code onFailure(ErrorType.STALE_URL)}.
+         */
+        void onResolve();
+
+        /**
+         * Called when a retry is scheduled, to show the status.
+         *
+         * @param type    the error type.
+         * @param attempt the retry number, from 1.
+         * @param delayMs the delay before the retry.
+         */
+        void onRetryScheduled(@NonNull ErrorType type, int attempt, long delayMs);
+
+        /**
+         * Called when the retries budget is spent.
+         *
+         * @param type the last error type.
+         */
+        void onGiveUp(@NonNull ErrorType type);
+    }
+
+
+    private final Callback mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Random mRandom = new Random();
+
+    // The retries made since the budget was restored.
+    private int mAttempts = 0;
+
+    // Restores the budget after steady playback.
+    private final Runnable mRestoreBudget = () -> this.mAttempts = 0;
+
+
+    /**
+     * Create recovery for a player.
+     *
+     * @param callback the recovery actions.
+     */
+    PlaybackRecovery(@NonNull Callback callback) {
+        this.mCallback = callback;
+    }
+
+
+    /**
+     * Called when the player failed, a recovery is scheduled.
+     *
+     * @param error the player error.
+     */
+    void onPlayerError(@NonNull PlaybackException error)
+    {
+        ErrorType type = classify(error);
+        Log.w(TAG, "Playback failed (" + type + "): " + error.getErrorCodeName(), error);
+
+        onFailure(type);
+    }
+
+
+    /**
+     * Called when the playback, or the URL resolution, failed.
+     *
+     * @param type the error type.
+     */
+    void onFailure(@NonNull ErrorType type)
+    {
+        cancel();
+
+        if (this.mAttempts >= MAX_ATTEMPTS) {
+            Log.w(TAG, "Giving up after " + this.mAttempts + " retries.");
+            this.mCallback.onGiveUp(type);
+            return;
+        }
+
+        // The live position is known, no reason to wait.
+        final long delayMs = type == ErrorType.BEHIND_LIVE_WINDOW ? 0 : backoffDelay(this.mAttempts);
+        this.mAttempts++;
+
+        this.mCallback.onRetryScheduled(type, this.mAttempts, delayMs);
+        this.mHandler.postDelayed(() -> recover(type), delayMs);
+    }
+
+
+    /**
+     * Called when the stream plays, the budget is restored if it keeps playing.
+     */
+    void onPlaying()
+    {
+        this.mHandler.removeCallbacks(this.mRestoreBudget);
+        this.mHandler.postDelayed(this.mRestoreBudget, STEADY_PLAYBACK_MS);
+    }
+
+
+    /**
+     * Cancel the scheduled recovery, and restore the budget - for a new stream.
+     */
+    void reset()
+    {
+        cancel();
+        this.mAttempts = 0;
+    }
+
+
+    /**
+     * Cancel the scheduled recovery, the budget is kept.
+     */
+    void cancel() {
+        this.mHandler.removeCallbacksAndMessages(null);
+    }
+
+
+    /**
+     * Run the action of an error type.
+     *
+     * @param type the error type.
+     */
+    private void recover(@NonNull ErrorType type)
+    {
+        switch (type)
+        {
+            case STALE_URL:
+                this.mCallback.onResolve();
+                break;
+
+            case DECODER:
+                this.mCallback.onRetry(true);
+                break;
+
+            default:
+                this.mCallback.onRetry(false);
+                break;
+        }
+    }
+
+
+    /**
+     * Get the delay before a retry - exponential, with jitter so clients don't retry together.
+     *
+     * @param attempt the retries made so far.
+     * @return the delay, between half and the whole of the exponential delay.
+     */
+    private long backoffDelay(int attempt)
+    {
+        long delayMs = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt, 16));
+        long half = delayMs / 2;
+
+        return half + (long) (this.mRandom.nextDouble() * half);
+    }
+
+
+    /**
+     * Sort a player error by its recovery action.
+     *
+     * @param error the player error.
+     * @return the error type.
+     */
+    static @NonNull ErrorType classify(@NonNull PlaybackException error)
+    {
+        switch (error.errorCode)
+        {
+            case PlaybackException.ERROR_CODE_BEHIND_LIVE_WINDOW:
+                return ErrorType.BEHIND_LIVE_WINDOW;
+
+            case PlaybackException.ERROR_CODE_IO_BAD_HTTP_STATUS:
+            case PlaybackException.ERROR_CODE_IO_FILE_NOT_FOUND:
+                return isStaleResponse(error) ? ErrorType.STALE_URL : ErrorType.NETWORK;
+
+            case PlaybackException.ERROR_CODE_IO_UNSPECIFIED:
+            case PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_FAILED:
+            case PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_TIMEOUT:
+            case PlaybackException.ERROR_CODE_TIMEOUT:
+                return ErrorType.NETWORK;
+
+            case PlaybackException.ERROR_CODE_DECODER_INIT_FAILED:
+            case PlaybackException.ERROR_CODE_DECODER_QUERY_FAILED:
+            case PlaybackException.ERROR_CODE_DECODING_FAILED:
+            case PlaybackException.ERROR_CODE_DECODING_FORMAT_EXCEEDS_CAPABILITIES:
+            case PlaybackException.ERROR_CODE_DECODING_FORMAT_UNSUPPORTED:
+                return ErrorType.DECODER;
+
+            default:
+                return ErrorType.OTHER;
+        }
+    }
+
+
+    /**
+     * Check if the server refused the URL itself - forbidden or gone, as expired tokens are.
+     *
+     * @param error the player error.
+     * @return true if the response code is of a refused URL, false otherwise.
+     */
+    private static boolean isStaleResponse(@NonNull PlaybackException error)
+    {
+        // File not found has no response code.
+        if (!(error.getCause() instanceof HttpDataSource.InvalidResponseCodeException))
+            return error.errorCode == PlaybackException.ERROR_CODE_IO_FILE_NOT_FOUND;
+
+        int responseCode = ((HttpDataSource.InvalidResponseCodeException) error.getCause()).responseCode;
+
+        return responseCode == 401 || responseCode == 403
+                || responseCode == 404 || responseCode == 410;
+    }
+}
@@ -0,0 +1,130 @@
+package com.penkov.vikstv.ui;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Measures the start of the streams, by the playback profile they started with -
+ * the time to the first frame, and the rate of rebuffers soon after it.
+ * <p>
+ * The totals are kept in the playback preferences, so the profiles can be compared
+ * over many starts. Must be used from the UI thread only.
+ */
+final class PlaybackStats
+{
+    // TAG to use with logcat.
+    public static final String TAG = PlaybackStats.class.getSimpleName();
+
+    // A rebuffer within this time from the first frame is an early rebuffer.
+    private static final long EARLY_REBUFFER_WINDOW_MS = 30_000;
+
+    // Preferences keys, followed by the profile name.
+    private static final String KEY_STARTS = "stats_starts_";
+    private static final String KEY_TTFF_TOTAL = "stats_ttff_total_ms_";
+    private static final String KEY_EARLY_REBUFFERS = "stats_early_rebuffers_";
+
+    private final SharedPreferences mPreferences;
+
+    // The measured start, times in elapsed realtime milliseconds (-1 if not set).
+    private PlaybackProfile mProfile = null;
+    private long mStartTime = -1;
+    private long mFirstFrameTime = -1;
+    private boolean mRebuffered = false;
+
+
+    /**
+     * Create stats keeper over the playback preferences.
+     *
+     * @param context the context of the application.
+     */
+    PlaybackStats(@NonNull Context context) {
+        this.mPreferences = PlaybackProfile.preferences(context);
+    }
+
+
+    /**
+     * Called when a stream starts loading, the previous start is dropped if not measured.
+     *
+     * @param profile the profile of the player.
+     */
+    void onStreamStarted(@NonNull PlaybackProfile profile)
+    {
+        this.mProfile = profile;
+        this.mStartTime = SystemClock.elapsedRealtime();
+        this.mFirstFrameTime = -1;
+        this.mRebuffered = false;
+    }
+
+
+    /**
+     * Called when a frame is first rendered, the time to the first frame is recorded.
+     */
+    void onFirstFrame()
+    {
+        if (this.mStartTime < 0 || this.mFirstFrameTime >= 0)
+            return;
+
+        this.mFirstFrameTime = SystemClock.elapsedRealtime();
+        final long ttff = this.mFirstFrameTime - this.mStartTime;
+        final String name = this.mProfile.name();
+
+        this.mPreferences.edit()
+                .putInt(KEY_STARTS + name, this.mPreferences.getInt(KEY_STARTS + name, 0) + 1)
+                .putLong(KEY_TTFF_TOTAL + name, this.mPreferences.getLong(KEY_TTFF_TOTAL + name, 0) + ttff)
+                .apply();
+
+        Log.i(TAG, "First frame after " + ttff + " ms. " + summary(this.mProfile));
+    }
+
+
+    /**
+     * Called when the player buffers, a rebuffer soon after the first frame is recorded once.
+     */
+    void onBuffering()
+    {
+        if (this.mFirstFrameTime < 0 || this.mRebuffered)
+            return;
+
+        if (SystemClock.elapsedRealtime() - this.mFirstFrameTime > EARLY_REBUFFER_WINDOW_MS)
+            return;
+
+        this.mRebuffered = true;
+        final String name = this.mProfile.name();
+
+        this.mPreferences.edit()
+                .putInt(KEY_EARLY_REBUFFERS + name,
+                        this.mPreferences.getInt(KEY_EARLY_REBUFFERS + name, 0) + 1)
+                .apply();
+
+        Log.i(TAG, "Early rebuffer. " + summary(this.mProfile));
+    }
+
+
+    /**
+     * Describe the measures of a profile.
+     *
+     * @param profile the profile.
+     * @return the starts count, the average time to first frame, and the early rebuffer rate.
+     */
+    @NonNull String summary(@NonNull PlaybackProfile profile)
+    {
+        final String name = profile.name();
+        final int starts = this.mPreferences.getInt(KEY_STARTS + name, 0);
+
+        if (starts == 0)
+            return name + ": no starts measured.";
+
+        final long ttffTotal = this.mPreferences.getLong(KEY_TTFF_TOTAL + name, 0);
+        final int rebuffers = this.mPreferences.getInt(KEY_EARLY_REBUFFERS + name, 0);
+
+        return String.format(Locale.ROOT,
+                "%s: %d starts, average first frame %d ms, early rebuffers %.1f%%.",
+                name, starts, ttffTotal / starts, 100.0 * rebuffers / starts);
+    }
+}
@@ -0,0 +1,390 @@
+package com.penkov.vikstv.ui;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.Player;
+import androidx.media3.exoplayer.ExoPlayer;
+
+import com.penkov.vikstv.web.Cache.BandwidthStore;
+
+/**
+ * Keeps a single player for all the video activities, so its codecs and renderers
+ * are not rebuilt on every channel and every return to the application.
+ * <p>
+ * An activity attaches to the player with its surface and listener, and plays streams on it -
+ * a new stream swaps the media item of the warm player. When the activity detaches,
+ * the player is paused and kept for the idle timeout, or until the memory runs low.
+ * <p>
+ * While attached, a second muted player may hold the stream the user is likely to switch to,
+ * prepared and buffering - playing that stream swaps the players, instead of loading it.
+ * Must be used from the UI thread only.
+ */
+public final class PlayerManager
+{
+    // TAG to use with logcat.
+    public static final String TAG = PlayerManager.class.getSimpleName();
+
+    // Default time a detached player is kept.
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000L;
+
+    // The shared instance.
+    private static volatile PlayerManager sInstance = null;
+
+    // Posts the idle release.
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mIdleRelease = this::releasePlayer;
+
+    // The warm player, or null if released.
+    private ExoPlayer mPlayer = null;
+
+    // The stream set on the player.
+    private String mStreamURL = null;
+
+    // The standby player and its stream, or null if released.
+    private ExoPlayer mStandbyPlayer = null;
+    private String mStandbyURL = null;
+
+    // The attached activity surface and listener.
+    private SurfaceView mSurfaceView = null;
+    private Player.Listener mListener = null;
+
+    // Time a detached player is kept.
+    private long mIdleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+
+    // How the players start streams.
+    private PlaybackProfile mProfile = PlaybackProfile.DEFAULT;
+
+
+    private PlayerManager() { }
+
+
+    /**
+     * Get the shared player manager.
+     *
+     * @return the player manager.
+     */
+    public static @NonNull PlayerManager getInstance()
+    {
+        if (sInstance == null) {
+            synchronized (PlayerManager.class) {
+                if (sInstance == null)
+                    sInstance = new PlayerManager();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Set the time a detached player is kept, before its codecs are released.
+     *
+     * @param timeoutMs the timeout in milliseconds, 0 to release on detach.
+     */
+    public void setIdleTimeout(long timeoutMs) {
+        this.mIdleTimeoutMs = Math.max(0, timeoutMs);
+    }
+
+
+    /**
+     * Set how the players start streams.
+     * The players are built by the profile, so on change they are released.
+     *
+     * @param profile the playback profile.
+     */
+    public void setProfile(@NonNull PlaybackProfile profile)
+    {
+        if (this.mProfile == profile)
+            return;
+
+        this.mProfile = profile;
+        releasePlayer();
+    }
+
+
+    /**
+     * Get how the players start streams.
+     *
+     * @return the playback profile.
+     */
+    public @NonNull PlaybackProfile getProfile() {
+        return this.mProfile;
+    }
+
+
+    /**
+     * Attach to the player, detaching the previous surface and listener.
+     * The player is created if it was released.
+     *
+     * @param context     the context of the application.
+     * @param surfaceView the surface to show the video on.
+     * @param listener    the listener of the player events.
+     * @return the player.
+     */
+    public @NonNull ExoPlayer attach(@NonNull Context context,
+                                     @NonNull SurfaceView surfaceView,
+                                     @NonNull Player.Listener listener)
+    {
+        this.mHandler.removeCallbacks(this.mIdleRelease);
+
+        if (this.mPlayer == null) {
+            this.mPlayer = this.mProfile.buildPlayer(context.getApplicationContext());
+            this.mStreamURL = null;
+        }
+
+        if (this.mListener != listener)
+        {
+            if (this.mListener != null)
+                this.mPlayer.removeListener(this.mListener);
+
+            this.mPlayer.addListener(listener);
+            this.mListener = listener;
+        }
+
+        if (this.mSurfaceView != surfaceView) {
+            this.mPlayer.setVideoSurfaceView(surfaceView);
+            this.mSurfaceView = surfaceView;
+        }
+
+        return this.mPlayer;
+    }
+
+
+    /**
+     * Play a stream on the attached player.
+     * The stream that is already set is resumed at the live position, any other one replaces it.
+     *
+     * @param url the stream url.
+     */
+    public void play(@NonNull String url)
+    {
+        if (this.mPlayer == null) {
+            Log.w(TAG, "Stream played without attaching to the player.");
+            return;
+        }
+
+        // Keep the loaded stream, its buffers and codecs.
+        if (url.equals(this.mStreamURL) && isLoaded(this.mPlayer))
+        {
+            if (!this.mPlayer.getPlayWhenReady())
+                this.mPlayer.seekToDefaultPosition();
+
+            this.mPlayer.setPlayWhenReady(true);
+            return;
+        }
+
+        // The standby player already buffers the stream.
+        if (url.equals(this.mStandbyURL) && isLoaded(this.mStandbyPlayer)) {
+            swapStandby();
+            return;
+        }
+
+        this.mStreamURL = url;
+        this.mPlayer.setMediaItem(MediaItem.fromUri(url));
+        this.mPlayer.prepare();
+        this.mPlayer.setPlayWhenReady(true);
+    }
+
+
+    /**
+     * Stop the stream of the player, if still attached with the listener.
+     * The codecs are kept for the next stream.
+     *
+     * @param listener the listener given on attach.
+     */
+    public void stop(@NonNull Player.Listener listener)
+    {
+        if (this.mPlayer == null || this.mListener != listener)
+            return;
+
+        this.mPlayer.stop();
+        this.mStreamURL = null;
+    }
+
+
+    /**
+     * Prepare a stream on the muted standby player, replacing its previous stream.
+     * The stream buffers without playing, until it is played.
+     *
+     * @param context the context of the application.
+     * @param url     the stream url.
+     */
+    public void prepareStandby(@NonNull Context context, @NonNull String url)
+    {
+        // Nothing to switch from.
+        if (this.mPlayer == null || this.mListener == null || url.equals(this.mStreamURL))
+            return;
+
+        if (this.mStandbyPlayer == null) {
+            this.mStandbyPlayer = this.mProfile.buildPlayer(context.getApplicationContext());
+            this.mStandbyURL = null;
+        }
+
+        if (url.equals(this.mStandbyURL) && isLoaded(this.mStandbyPlayer))
+            return;
+
+        this.mStandbyURL = url;
+        this.mStandbyPlayer.setVolume(0f);
+        this.mStandbyPlayer.setPlayWhenReady(false);
+        this.mStandbyPlayer.setMediaItem(MediaItem.fromUri(url));
+        this.mStandbyPlayer.prepare();
+    }
+
+
+    /**
+     * Release the standby player, its memory and bandwidth are needed.
+     */
+    public void releaseStandby()
+    {
+        if (this.mStandbyPlayer == null)
+            return;
+
+        this.mStandbyPlayer.release();
+        this.mStandbyPlayer = null;
+        this.mStandbyURL = null;
+    }
+
+
+    /**
+     * Play the standby player instead of the attached one, which becomes the standby -
+     * holding the previous stream, muted and paused.
+     */
+    private void swapStandby()
+    {
+        ExoPlayer previousPlayer = this.mPlayer;
+        String previousURL = this.mStreamURL;
+
+        previousPlayer.setPlayWhenReady(false);
+        previousPlayer.setVolume(0f);
+
+        if (this.mSurfaceView != null) {
+            previousPlayer.clearVideoSurfaceView(this.mSurfaceView);
+            this.mStandbyPlayer.setVideoSurfaceView(this.mSurfaceView);
+        }
+
+        if (this.mListener != null) {
+            previousPlayer.removeListener(this.mListener);
+            this.mStandbyPlayer.addListener(this.mListener);
+        }
+
+        this.mStandbyPlayer.setVolume(1f);
+        this.mStandbyPlayer.setPlayWhenReady(true);
+
+        this.mPlayer = this.mStandbyPlayer;
+        this.mStreamURL = this.mStandbyURL;
+        this.mStandbyPlayer = previousPlayer;
+        this.mStandbyURL = previousURL;
+    }
+
+
+    /**
+     * Check if a player holds a stream that can be played.
+     *
+     * @param player the player, or null.
+     * @return true if prepared without error, false otherwise.
+     */
+    private static boolean isLoaded(@Nullable ExoPlayer player)
+    {
+        if (player == null)
+            return false;
+
+        final int state = player.getPlaybackState();
+        return state != Player.STATE_IDLE && state != Player.STATE_ENDED;
+    }
+
+
+    /**
+     * Detach from the player, if still attached with the listener.
+     * The player is paused, and released after the idle timeout.
+     *
+     * @param listener the listener given on attach.
+     */
+    public void detach(@NonNull Player.Listener listener)
+    {
+        if (this.mPlayer == null || this.mListener != listener)
+            return;
+
+        this.mPlayer.removeListener(listener);
+        this.mPlayer.setPlayWhenReady(false);
+
+        if (this.mSurfaceView != null)
+            this.mPlayer.clearVideoSurfaceView(this.mSurfaceView);
+
+        this.mListener = null;
+        this.mSurfaceView = null;
+
+        // Nothing to switch to.
+        releaseStandby();
+
+        // Keep the samples of this session, the process may not come back.
+        BandwidthStore.getInstance().flush();
+
+        this.mHandler.removeCallbacks(this.mIdleRelease);
+        this.mHandler.postDelayed(this.mIdleRelease, this.mIdleTimeoutMs);
+    }
+
+
+    /**
+     * Called when the system asks to trim memory.
+     * A detached player is released once the application is in the background list,
+     * or when the memory runs low - hiding the UI alone keeps it.
+     *
+     * @param level the trim level, as given to {@code onTrimMemory()}.
+     */
+    public void onTrimMemory(int level)
+    {
+        // The standby player is only an optimization.
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            releaseStandby();
+
+        if (this.mListener != null)
+            return;
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+            releasePlayer();
+    }
+
+
+    /**
+     * Get the attached player.
+     *
+     * @return the player, or null if released.
+     */
+    public @Nullable ExoPlayer getPlayer() {
+        return this.mPlayer;
+    }
+
+
+    /**
+     * Release the player and its codecs, it is created again on the next attach.
+     */
+    public void releasePlayer()
+    {
+        this.mHandler.removeCallbacks(this.mIdleRelease);
+
+        releaseStandby();
+
+        if (this.mPlayer == null)
+            return;
+
+        Log.v(TAG, "Releasing the player.");
+
+        this.mPlayer.release();
+        this.mPlayer = null;
+        this.mStreamURL = null;
+        this.mListener = null;
+        this.mSurfaceView = null;
+
+        BandwidthStore.getInstance().flush();
+    }
+}
@@ -1,8 +1,5 @@
 package com.penkov.vikstv.ui;
 
-import android.annotation.SuppressLint;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,28 +9,30 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.penkov.vikstv.R;
-import com.penkov.vikstv.core.ChannelProgram;
+import com.penkov.vikstv.core.ProgramSchedule;
 
-import java.util.Calendar;
+import java.util.TimeZone;
 
 public class ProgramItemAdapter
         extends RecyclerView.Adapter<ProgramItemViewHolder>
+        implements MinuteTicker.Listener
 {
     // TAG to use with logcat
     private static final String TAG = "ProgramItemAdapter";
 
-    // The programs list
-    private final ChannelProgram[] mChannelPrograms;
-    private final ProgramItemViewHolder.ShowTime[] showTimes;
+    // The programs schedule
+    private final ProgramSchedule mSchedule;
+
+    // The time zone of the schedule, kept to find the time without allocations.
+    private final TimeZone mTimeZone = TimeZone.getDefault();
 
     private int mShowingPosition = 0;
     private View mShowingView = null;
 
 
-    public ProgramItemAdapter(@NonNull ChannelProgram[] programs)
+    public ProgramItemAdapter(@NonNull ProgramSchedule schedule)
     {
-        this.mChannelPrograms = programs;
-        this.showTimes = new ProgramItemViewHolder.ShowTime[programs.length];
+        this.mSchedule = schedule;
 
         timelineShows();
     }
@@ -55,7 +54,7 @@ public class ProgramItemAdapter
     @Override
     public void onBindViewHolder(@NonNull ProgramItemViewHolder holder, int position)
     {
-        holder.setProgram(mChannelPrograms[position], showTimes[position]);
+        holder.setProgram(mSchedule, position, showTime(position));
 
         if (position == this.mShowingPosition)
             this.mShowingView = holder.itemView;
@@ -72,18 +71,48 @@ public class ProgramItemAdapter
     @Override
     public int getItemCount()
     {
-        return mChannelPrograms.length;
+        return mSchedule.size();
     }
 
 
-    @SuppressLint("NotifyDataSetChanged")
-    public void updateView(@NonNull RecyclerView recyclerView)
+    /**
+     * Update the show on air while the programs are shown.
+     */
+    @Override
+    public void onMinuteTick()
     {
+        refreshShowing();
+    }
+
+
+    /**
+     * Update the show on air.
+     * Only the programs between the previous and the current show are rebound.
+     *
+     * @return true if the show on air changed, false otherwise.
+     */
+    public boolean refreshShowing()
+    {
+        final int previousPosition = this.mShowingPosition;
         timelineShows();
-        notifyDataSetChanged();
+
+        if (previousPosition == this.mShowingPosition)
+            return false;
+
+        final int from = Math.min(previousPosition, this.mShowingPosition);
+        final int to = Math.max(previousPosition, this.mShowingPosition);
+        notifyItemRangeChanged(from, to - from + 1);
+
+        return true;
+    }
+
+
+    public void updateView(@NonNull RecyclerView recyclerView)
+    {
+        refreshShowing();
 
         // Scroll to showing program
-        if (this.mChannelPrograms.length > 0)
+        if (this.mSchedule.size() > 0)
         {
             RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
             if (!(layoutManager instanceof LinearLayoutManager)) return;
@@ -101,66 +130,37 @@ public class ProgramItemAdapter
 
 
     /**
-     * Set the programs state.
+     * Find the program on air, by binary search over the schedule.
      */
     private void timelineShows()
     {
         // Can work only if there are programs...
-        if (mChannelPrograms.length == 0)
+        if (mSchedule.size() == 0)
             return;
 
         // Get current time
-        int hour = Calendar.getInstance().get(Calendar.HOUR_OF_DAY);
-        int minutes = Calendar.getInstance().get(Calendar.MINUTE);
-
-        int time = hour * 60 + minutes;
-
-        // Fix day leap
-        if (mChannelPrograms[0].getCompactTime() > time)
-            time += 24 * 60;
-
-        // Found the desired channel.
-        boolean found = false;
-        // If the program time is of next day.
-        boolean isNextDay = false;
-
-        // First show default is shown.
-        this.showTimes[0] = ProgramItemViewHolder.ShowTime.SHOW_PASSED;
-
-        // Iterate the shows
-        for (int i = 1; i < mChannelPrograms.length; i++)
-        {
-            // Check if day passed.
-            isNextDay |= mChannelPrograms[i].getCompactTime()
-                    < mChannelPrograms[i - 1].getCompactTime();
-
-            if (found)
-                // If current show found, all the rest are future shows.
-                this.showTimes[i] = ProgramItemViewHolder.ShowTime.SHOW_FUTURE;
+        int time = ProgramSchedule.minuteOfDay(System.currentTimeMillis(), this.mTimeZone);
 
-            else if (time >= mChannelPrograms[i].getCompactTime(isNextDay))
-                // If the time is smaller, this show probably ended.
-                this.showTimes[i] = ProgramItemViewHolder.ShowTime.SHOW_PASSED;
+        // Before the first show, the first is shown.
+        this.mShowingPosition = Math.max(0, mSchedule.currentIndex(time));
+    }
 
-            else
-            {
-                // Show is in the future, hence previous show is playing
-                found = true;
 
-                this.mShowingPosition = i - 1;
-                this.showTimes[i - 1] = ProgramItemViewHolder.ShowTime.SHOW_SHOWING;
+    /**
+     * Get the state of a program, by its position to the program on air.
+     *
+     * @param position the program position.
+     * @return the program state.
+     */
+    private @NonNull ProgramItemViewHolder.ShowTime showTime(int position)
+    {
+        if (position < this.mShowingPosition)
+            return ProgramItemViewHolder.ShowTime.SHOW_PASSED;
 
-                // current show is in the future
-                this.showTimes[i] = ProgramItemViewHolder.ShowTime.SHOW_FUTURE;
-            }
-        }
+        if (position == this.mShowingPosition)
+            return ProgramItemViewHolder.ShowTime.SHOW_SHOWING;
 
-        // If no show found, it must be the last
-        if (!found)
-        {
-            this.showTimes[this.showTimes.length - 1] = ProgramItemViewHolder.ShowTime.SHOW_SHOWING;
-            this.mShowingPosition = this.showTimes.length - 1;
-        }
+        return ProgramItemViewHolder.ShowTime.SHOW_FUTURE;
     }
 
 }
@@ -7,19 +7,18 @@ import android.view.View;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.cardview.widget.CardView;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.card.MaterialCardView;
 import com.penkov.vikstv.R;
-import com.penkov.vikstv.core.ChannelProgram;
+import com.penkov.vikstv.core.ProgramSchedule;
 
 public class ProgramItemViewHolder
         extends RecyclerView.ViewHolder
 {
-    // The program this view is responsible for
-    private ChannelProgram mProgram = null;
+    // The program this view is responsible for, its position in the schedule
+    private int mProgramPosition = RecyclerView.NO_POSITION;
 
     // View values
     private final TextView mTimeTextView;
@@ -62,22 +61,26 @@ public class ProgramItemViewHolder
 
     /**
      * Set the program this view represents.
-     * If the program is null, then default behavior is set.
+     * If the position is out of the schedule, then default behavior is set.
      *
-     * @param program the program to show.
+     * @param schedule the programs schedule.
+     * @param position the position of the program to show.
+     * @param showTime the program state.
      */
-    public void setProgram(@Nullable ChannelProgram program, @NonNull ShowTime showTime)
+    public void setProgram(@NonNull ProgramSchedule schedule, int position, @NonNull ShowTime showTime)
     {
-        // Store the program
-        this.mProgram = program;
-
         // Set view attributes accordingly
         setDefault();
-        if (program == null)
+        if (position < 0 || position >= schedule.size()) {
+            this.mProgramPosition = RecyclerView.NO_POSITION;
             return;
+        }
+
+        // Store the program
+        this.mProgramPosition = position;
 
-        this.mTimeTextView.setText(program.getTime());
-        this.mProgramTextView.setText(program.getName());
+        this.mTimeTextView.setText(schedule.getTime(position));
+        this.mProgramTextView.setText(schedule.getName(position));
 
         setColor(showTime);
     }
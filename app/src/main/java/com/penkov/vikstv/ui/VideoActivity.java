@@ -18,19 +18,20 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
-import androidx.media3.common.MediaItem;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.Player;
-import androidx.media3.exoplayer.ExoPlayer;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.penkov.vikstv.R;
 import com.penkov.vikstv.core.ChannelInfo;
-import com.penkov.vikstv.core.ChannelProgram;
+import com.penkov.vikstv.core.ChannelListStore;
+import com.penkov.vikstv.core.ProgramIndex;
+import com.penkov.vikstv.core.ProgramSchedule;
+import com.penkov.vikstv.web.Cache.StreamUrlCache;
 import com.penkov.vikstv.web.Listener.ListenerChannelProgram;
 import com.penkov.vikstv.web.Listener.ListenerChannelVideoURL;
-import com.penkov.vikstv.web.Scraper.ScraperChannelProgram;
+import com.penkov.vikstv.web.Scraper.ScraperChannelPage;
 import com.penkov.vikstv.web.Scraper.ScraperChannelVideoURL;
 
 public class VideoActivity extends AppCompatActivity
@@ -41,11 +42,23 @@ public class VideoActivity extends AppCompatActivity
     // Key to transfer channel info
     public static final String CHANNEL = "channel_info";
 
+    // Key to transfer the channel position in the shared list, to switch channels by
+    public static final String POSITION = "channel_position";
+
     // Local variables
     private ChannelInfo mChannelInfo = null;
-    private ExoPlayer mExoPlayer = null;
+    private final ExoPlayerListener mPlayerListener = new ExoPlayerListener();
+    private final StreamUrlListener mStreamUrlListener = new StreamUrlListener();
     private String mVideoURL = null;
+    private String mPendingVideoURL = null;
+    private boolean mAwaitingVideoURL = false;
+    private boolean mVideoURLLoading = true;
     private WifiManager.WifiLock mWifiLock = null;
+    private ScraperChannelPage mPageScraper = null;
+    private ChannelZapper mZapper = null;
+    private PlaybackStats mPlaybackStats = null;
+    private PlaybackRecovery mPlaybackRecovery = null;
+    private ScraperChannelVideoURL mVideoURLScraper = null;
 
     private SurfaceView mVideoSurfaceView = null;
     private ImageView mVideoLoadingImage = null;
@@ -87,6 +100,11 @@ public class VideoActivity extends AppCompatActivity
 
         this.mVideoSurfaceView.setOnClickListener(this::toggleProgramView);
 
+        // Start the streams by the user's profile, and measure how they start
+        PlayerManager.getInstance().setProfile(PlaybackProfile.load(this));
+        this.mPlaybackStats = new PlaybackStats(this);
+        this.mPlaybackRecovery = new PlaybackRecovery(new RecoveryCallback());
+
         // this.mVideoLoadingImage.setVisibility(View.INVISIBLE);
 
         // Check channel info is valid
@@ -96,40 +114,140 @@ public class VideoActivity extends AppCompatActivity
             return;
         }
 
-        // Load video link
-        new ScraperChannelVideoURL(
+        // Switch channels by the list order, without leaving the video
+        this.mZapper = new ChannelZapper(this,
+                ChannelListStore.getInstance().get(),
+                getIntent().getIntExtra(POSITION, -1),
+                this.mChannelInfo);
+
+        openChannel(this.mChannelInfo);
+    }
+
+
+    /**
+     * Open a channel - play its video and show its programs.
+     * The loads of the previous channel are dropped.
+     *
+     * @param channel the channel to open.
+     */
+    private void openChannel(@NonNull ChannelInfo channel)
+    {
+        this.mChannelInfo = channel;
+
+        // Drop the previous channel page, and its recovery
+        if (this.mPageScraper != null) {
+            this.mPageScraper.cancel();
+            this.mPageScraper = null;
+        }
+
+        cancelVideoURLScraper();
+        this.mPlaybackRecovery.reset();
+        StreamUrlCache.getInstance().removeListener(this.mStreamUrlListener);
+
+        this.mVideoURL = null;
+        this.mPendingVideoURL = null;
+        this.mAwaitingVideoURL = false;
+        this.mVideoURLLoading = true;
+
+        // Show the prefetched programs right away, the page programs only refresh the index
+        ProgramSchedule prefetchedPrograms =
+                ProgramIndex.getInstance().get(channel.getChannelReference());
+
+        if (prefetchedPrograms != null)
+            onProgramsLoaded(prefetchedPrograms);
+
+        // Play the resolved video right away, the page only refreshes the URL
+        String cachedURL = StreamUrlCache.getInstance().get(channel.getChannelReference());
+
+        if (cachedURL != null)
+            onVideoUrlLoaded(cachedURL);
+
+        else {
+            // Don't keep playing the previous channel
+            PlayerManager.getInstance().stop(this.mPlayerListener);
+            this.mAwaitingVideoURL = true;
+
+            // A resolve of the focused tile may still run, play its URL if it comes first
+            StreamUrlCache.getInstance().addListener(this.mStreamUrlListener);
+        }
+
+        // Load video link and the programs, sharing the same channel page.
+        // Results of a channel switched away from are dropped.
+        this.mPageScraper = new ScraperChannelPage(
                 this,
-                this.mChannelInfo.getChannelReference(),
+                channel.getChannelReference(),
                 new ListenerChannelVideoURL()
                 {
                     @Override
                     public void onResult(@NonNull String url) {
-                        runOnUiThread(() -> onVideoUrlLoaded(url));
+                        StreamUrlCache.getInstance().put(channel.getChannelReference(), url);
+                        runOnUiThread(() -> {
+                            if (mChannelInfo == channel)
+                                onVideoUrlResolved(url);
+                        });
                     }
 
                     @Override
                     public void onError(@NonNull Exception exception) {
-                        runOnUiThread(() -> onVideoUrlError(exception));
+                        runOnUiThread(() -> {
+                            if (mChannelInfo == channel)
+                                onVideoUrlError(exception);
+                        });
                     }
-                }
-        ).load();
-
-        // Load the programs
-        new ScraperChannelProgram(
-                this.mChannelInfo.getChannelReference(),
+                },
                 new ListenerChannelProgram() {
                     @Override
-                    public void onResult(@NonNull ChannelProgram[] channelPrograms) {
-                        runOnUiThread(() -> onProgramsLoaded(channelPrograms));
+                    public void onResult(@NonNull ProgramSchedule channelPrograms) {
+                        ProgramIndex.getInstance().put(
+                                channel.getChannelReference(), channelPrograms);
+                        runOnUiThread(() -> {
+                            if (mChannelInfo == channel)
+                                onProgramsLoaded(channelPrograms);
+                        });
                     }
 
                     @Override
                     public void onError(@NonNull Exception exception) {
-                        runOnUiThread(() -> onProgramsError(exception));
+                        runOnUiThread(() -> {
+                            if (mChannelInfo == channel)
+                                onProgramsError(exception);
+                        });
                     }
                 }
-        ).load();
+        );
 
+        this.mPageScraper.load();
+    }
+
+
+    /**
+     * Switch to a channel before or after the current one, in the channels list order.
+     *
+     * @param step positive for the next channels, negative for the previous ones.
+     */
+    private void zapChannel(int step)
+    {
+        ChannelInfo channel = this.mZapper.zap(step);
+        if (channel == this.mChannelInfo)
+            return;
+
+        // Recreated activity opens the current channel
+        getIntent().putExtra(CHANNEL, channel)
+                .putExtra(POSITION, this.mZapper.getPosition());
+
+        // The programs are of the previous channel
+        if (this.mProgramShown)
+            toggleProgramView(this.mVideoSurfaceView);
+
+        if (this.mProgramAdapter != null)
+            MinuteTicker.getInstance().unregister(this.mProgramAdapter);
+
+        this.mProgramAdapter = null;
+        this.mProgramSet = false;
+        this.mProgramsRecycler.setAdapter(null);
+
+        this.mVideoLoadingText.setText(channel.getChannelName());
+        openChannel(channel);
     }
 
 
@@ -138,13 +256,18 @@ public class VideoActivity extends AppCompatActivity
     {
         super.onPause();
 
-        // Release the media player
-        if (this.mExoPlayer != null) {
-            this.mExoPlayer.release();
-            this.mExoPlayer = null;
-        }
+        // Keep the player warm for the return, or for the next channel
+        if (this.mZapper != null)
+            this.mZapper.stop();
+
+        // Recover on the return, if still needed
+        if (this.mPlaybackRecovery != null)
+            this.mPlaybackRecovery.cancel();
+
+        PlayerManager.getInstance().detach(this.mPlayerListener);
 
         this.mActivityPaused = true;
+        updateMinuteTicker();
     }
 
 
@@ -156,11 +279,16 @@ public class VideoActivity extends AppCompatActivity
         // Check if this was called after a pause
         if (!this.mActivityPaused) return;
         this.mActivityPaused = false;
+        updateMinuteTicker();
 
         // Restart the media player
         if (this.mVideoURL != null)
             onVideoUrlLoaded(null);
 
+        // The URL is still loading
+        else if (this.mAwaitingVideoURL)
+            return;
+
         // If no URL probably a bug
         else finish();
     }
@@ -177,11 +305,18 @@ public class VideoActivity extends AppCompatActivity
             this.mWifiLock = null;
         }
 
-        // Release the media player
-        if (this.mExoPlayer != null) {
-            this.mExoPlayer.release();
-            this.mExoPlayer = null;
-        }
+        // Detach from the player, unless the next channel already did
+        PlayerManager.getInstance().detach(this.mPlayerListener);
+
+        if (this.mPageScraper != null)
+            this.mPageScraper.cancel();
+
+        cancelVideoURLScraper();
+        StreamUrlCache.getInstance().removeListener(this.mStreamUrlListener);
+
+        // Stop updating the programs
+        if (this.mProgramAdapter != null)
+            MinuteTicker.getInstance().unregister(this.mProgramAdapter);
     }
 
 
@@ -198,9 +333,82 @@ public class VideoActivity extends AppCompatActivity
             return true;
         }
 
+        // In case of MENU, switch the playback profile.
+        if (event.getKeyCode() == KeyEvent.KEYCODE_MENU)
+        {
+            if (event.getAction() == KeyEvent.ACTION_UP)
+                switchPlaybackProfile();
+
+            return true;
+        }
+
+        // Channel up and down, and the D-pad while the programs are hidden, switch channels.
+        int step = zapStep(event.getKeyCode());
+
+        if (step != 0 && this.mZapper != null)
+        {
+            if (event.getAction() == KeyEvent.ACTION_DOWN)
+                zapChannel(step);
+
+            return true;
+        }
+
         return super.dispatchKeyEvent(event);
     }
 
+
+    /**
+     * Switch to the next playback profile, and restart the stream with it.
+     */
+    private void switchPlaybackProfile()
+    {
+        PlayerManager playerManager = PlayerManager.getInstance();
+        PlaybackProfile profile = playerManager.getProfile().next();
+
+        profile.save(this);
+        playerManager.setProfile(profile);
+
+        // Show the profile with its measures, to compare the profiles
+        Toast.makeText(
+                this,
+                getString(R.string.playback_profile_changed, getString(profile.getNameId()))
+                        + "\n" + this.mPlaybackStats.summary(profile),
+                Toast.LENGTH_LONG
+        ).show();
+
+        if (this.mVideoURL != null)
+            onVideoUrlLoaded(this.mPendingVideoURL != null ? this.mPendingVideoURL : this.mVideoURL);
+    }
+
+
+    /**
+     * Get the channel switch of a key.
+     *
+     * @param keyCode the key code.
+     * @return 1 for the next channel, -1 for the previous one, 0 if the key doesn't switch.
+     */
+    private int zapStep(int keyCode)
+    {
+        switch (keyCode)
+        {
+            case KeyEvent.KEYCODE_CHANNEL_UP:
+                return 1;
+
+            case KeyEvent.KEYCODE_CHANNEL_DOWN:
+                return -1;
+
+            // The D-pad scrolls the programs when shown.
+            case KeyEvent.KEYCODE_DPAD_UP:
+                return this.mProgramShown ? 0 : 1;
+
+            case KeyEvent.KEYCODE_DPAD_DOWN:
+                return this.mProgramShown ? 0 : -1;
+
+            default:
+                return 0;
+        }
+    }
+
     /**
      * Called whenever the program view is need to be toggled.
      *
@@ -216,39 +424,104 @@ public class VideoActivity extends AppCompatActivity
 
         // Set the textview visibility accordingly
         this.mProgramsRecycler.setVisibility(this.mProgramShown ? View.VISIBLE : View.GONE);
-        this.mProgramAdapter.updateView(this.mProgramsRecycler);
 
-        if (!this.mProgramShown)
+        if (this.mProgramShown)
+            this.mProgramAdapter.updateView(this.mProgramsRecycler);
+        else
             this.mVideoSurfaceView.requestFocus();
+
+        updateMinuteTicker();
+    }
+
+
+    /**
+     * Keep the show on air updated while the programs are shown and the activity is resumed,
+     * and leave the ticker idle otherwise.
+     */
+    private void updateMinuteTicker()
+    {
+        if (this.mProgramAdapter == null)
+            return;
+
+        if (this.mProgramShown && !this.mActivityPaused)
+            MinuteTicker.getInstance().register(this.mProgramAdapter);
+        else
+            MinuteTicker.getInstance().unregister(this.mProgramAdapter);
+    }
+
+
+    /**
+     * Called when the video url is loaded from the channel page.
+     * If a cached url already plays, it is kept playing - the new url is used on the next restart,
+     * and until then the failures are of the playing url.
+     *
+     * @param url the url of the video.
+     */
+    private void onVideoUrlResolved(@NonNull String url)
+    {
+        this.mVideoURLLoading = false;
+
+        if (!this.mAwaitingVideoURL) {
+            this.mPendingVideoURL = url;
+            return;
+        }
+
+        this.mAwaitingVideoURL = false;
+
+        if (!this.mActivityPaused)
+            onVideoUrlLoaded(url);
+        else
+            this.mVideoURL = url;
+    }
+
+
+    /**
+     * Called when the video url is resolved by another load of the channel page,
+     * as the focused tile resolve started before the channel was opened.
+     * Plays the url if it is still awaited, the page of this activity only refreshes it.
+     *
+     * @param url the url of the video.
+     */
+    private void onVideoUrlPreResolved(@NonNull String url)
+    {
+        StreamUrlCache.getInstance().removeListener(this.mStreamUrlListener);
+
+        if (!this.mAwaitingVideoURL)
+            return;
+
+        this.mAwaitingVideoURL = false;
+
+        if (!this.mActivityPaused)
+            onVideoUrlLoaded(url);
+        else
+            this.mVideoURL = url;
     }
 
 
     /**
      * Called when video url is available.
-     * If the url is null, called with the previous link.
+     * If the url is null, called with the previous link, or the link refreshed since.
      *
      * @param url the url of the video.
      */
     private void onVideoUrlLoaded(@Nullable String url)
     {
-        // Release the previous player (in case of reload)
-        if (this.mExoPlayer != null)
-            this.mExoPlayer.release();
-
-        // Load previous url if needed
-        if (url == null) url = this.mVideoURL;
-        else this.mVideoURL = url;
+        // The shared player only swaps the stream, its codecs are kept
+        PlayerManager playerManager = PlayerManager.getInstance();
 
-        this.mExoPlayer = new ExoPlayer.Builder(this).build();
+        // Measure the start of new streams, not the restarts of the previous one
+        if (url != null)
+            this.mPlaybackStats.onStreamStarted(playerManager.getProfile());
 
-        this.mExoPlayer.setVideoSurfaceView(mVideoSurfaceView);
-        this.mExoPlayer.addListener(new ExoPlayerListener());
+        // Load previous url if needed, the refreshed url replaces it
+        if (url == null)
+            url = this.mPendingVideoURL != null ? this.mPendingVideoURL : this.mVideoURL;
 
-        MediaItem mediaItem = MediaItem.fromUri(url);
+        this.mVideoURL = url;
+        this.mPendingVideoURL = null;
 
-        this.mExoPlayer.setMediaItem(mediaItem);
-        this.mExoPlayer.prepare();
-        this.mExoPlayer.setPlayWhenReady(true);
+        playerManager.attach(this, this.mVideoSurfaceView, this.mPlayerListener);
+        playerManager.play(url);
     }
 
 
@@ -259,6 +532,14 @@ public class VideoActivity extends AppCompatActivity
      */
     private void onVideoUrlError(@NonNull Exception e)
     {
+        this.mVideoURLLoading = false;
+
+        // The cached url plays anyway
+        if (!this.mAwaitingVideoURL) {
+            Log.w(TAG, "Couldn't refresh the video url.", e);
+            return;
+        }
+
         // Show the url error message
         Toast.makeText(
                 this,
@@ -282,21 +563,35 @@ public class VideoActivity extends AppCompatActivity
     }
 
 
-    private void onProgramsLoaded(@NonNull ChannelProgram[] programs)
+    private void onProgramsLoaded(@NonNull ProgramSchedule programs)
     {
+        // The prefetched programs are already shown
+        if (this.mProgramSet)
+            return;
+
+        // An empty schedule was shown before, its adapter leaves the ticker
+        if (this.mProgramAdapter != null)
+            MinuteTicker.getInstance().unregister(this.mProgramAdapter);
+
         // Call the recycler view adapter
         this.mProgramAdapter = new ProgramItemAdapter(programs);
 
         this.mProgramsRecycler.setLayoutManager(new LinearLayoutManager(this));
         this.mProgramsRecycler.setAdapter(this.mProgramAdapter);
 
-        if (programs.length > 0)
+        if (programs.size() > 0)
             this.mProgramSet = true;
+
+        updateMinuteTicker();
     }
 
 
     private void onProgramsError(@NonNull Exception e)
     {
+        // The prefetched programs are shown anyway
+        if (this.mProgramSet)
+            return;
+
         Toast.makeText(
                 this,
                 "Error loading programs: " + e.toString(),
@@ -305,6 +600,107 @@ public class VideoActivity extends AppCompatActivity
     }
 
 
+    /**
+     * Cancel the video URL resolution of the recovery, if running.
+     */
+    private void cancelVideoURLScraper()
+    {
+        if (this.mVideoURLScraper != null) {
+            this.mVideoURLScraper.cancel();
+            this.mVideoURLScraper = null;
+        }
+    }
+
+
+    /**
+     * Listener to the urls resolved while the opened channel awaits its url
+     */
+    private class StreamUrlListener implements StreamUrlCache.Listener
+    {
+        @Override
+        public void onStreamUrlResolved(@NonNull String channelReference, @NonNull String url)
+        {
+            runOnUiThread(() -> {
+                if (mChannelInfo != null
+                        && mChannelInfo.getChannelReference().equals(channelReference))
+                    onVideoUrlPreResolved(url);
+            });
+        }
+    }
+
+
+    /**
+     * Recovery actions over the player of this activity
+     */
+    private class RecoveryCallback implements PlaybackRecovery.Callback
+    {
+        @Override
+        public void onRetry(boolean rebuildPlayer)
+        {
+            if (mVideoURL == null || mActivityPaused)
+                return;
+
+            // The player is built again on attach
+            if (rebuildPlayer)
+                PlayerManager.getInstance().releasePlayer();
+
+            onVideoUrlLoaded(null);
+        }
+
+        @Override
+        public void onResolve()
+        {
+            if (mActivityPaused)
+                return;
+
+            final ChannelInfo channel = mChannelInfo;
+
+            cancelVideoURLScraper();
+            mVideoURLScraper = new ScraperChannelVideoURL(
+                    VideoActivity.this,
+                    channel.getChannelReference(),
+                    new ListenerChannelVideoURL()
+                    {
+                        @Override
+                        public void onResult(@NonNull String url) {
+                            StreamUrlCache.getInstance().put(channel.getChannelReference(), url);
+                            runOnUiThread(() -> {
+                                if (mChannelInfo == channel && !mActivityPaused)
+                                    onVideoUrlLoaded(url);
+                            });
+                        }
+
+                        @Override
+                        public void onError(@NonNull Exception exception) {
+                            Log.w(TAG, "Couldn't resolve the video url again.", exception);
+                            runOnUiThread(() -> {
+                                if (mChannelInfo == channel)
+                                    mPlaybackRecovery.onFailure(PlaybackRecovery.ErrorType.STALE_URL);
+                            });
+                        }
+                    });
+
+            mVideoURLScraper.load();
+        }
+
+        @Override
+        public void onRetryScheduled(@NonNull PlaybackRecovery.ErrorType type, int attempt, long delayMs)
+        {
+            int status = type == PlaybackRecovery.ErrorType.STALE_URL
+                    ? R.string.recovery_resolving
+                    : R.string.recovery_retrying;
+
+            mVideoLoadingText.setText(getString(status,
+                    (int) ((delayMs + 999) / 1000), attempt, PlaybackRecovery.MAX_ATTEMPTS));
+        }
+
+        @Override
+        public void onGiveUp(@NonNull PlaybackRecovery.ErrorType type) {
+            mVideoLoadingText.setText(getString(R.string.recovery_failed, type.name()));
+        }
+    }
+
+
     /**
      * ExoPlayer listener on various events
      */
@@ -323,18 +719,32 @@ public class VideoActivity extends AppCompatActivity
         @Override
         public void onPlayerError(@NonNull PlaybackException error)
         {
-            // Print the error message
-            Toast.makeText(
-                    VideoActivity.this,
-                    error.toString(),
-                    Toast.LENGTH_SHORT
-            ).show();
+            // The url may have expired, don't open the channel with it again
+            if (PlaybackRecovery.classify(error) == PlaybackRecovery.ErrorType.STALE_URL)
+                StreamUrlCache.getInstance().onPlaybackFailed(
+                        mChannelInfo.getChannelReference(), mVideoURL);
+
+            // Wait for the url loaded from the page, instead of the cached one
+            if (mVideoURLLoading) {
+                mAwaitingVideoURL = true;
+                mVideoURL = null;
+                return;
+            }
+
+            // Try again, by the error type and with backoff
+            mPlaybackRecovery.onPlayerError(error);
+        }
 
-            // Finish the video player
-            //finish();
+        @Override
+        public void onRenderedFirstFrame() {
+            mPlaybackStats.onFirstFrame();
+        }
 
-            // Try again to load the video
-            onVideoUrlLoaded(null);
+        @Override
+        public void onPlaybackStateChanged(int playbackState)
+        {
+            if (playbackState == Player.STATE_BUFFERING)
+                mPlaybackStats.onBuffering();
         }
 
         @Override
@@ -343,6 +753,14 @@ public class VideoActivity extends AppCompatActivity
             // Set the dot to hidden when playing
             mVideoLoadingImage.setVisibility(isPlaying ? View.INVISIBLE : View.VISIBLE);
 
+            // The channel plays, warm its neighbours for the next switch
+            if (isPlaying && !mActivityPaused) {
+                mVideoLoadingText.setText(null);
+                mPlaybackRecovery.onPlaying();
+                mZapper.start();
+                mZapper.warm();
+            }
+
             // Do the default behaviour
             Player.Listener.super.onIsPlayingChanged(isPlaying);
         }
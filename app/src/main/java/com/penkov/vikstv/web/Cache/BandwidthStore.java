@@ -0,0 +1,366 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.exoplayer.upstream.BandwidthMeter;
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recent throughput of the video segments, by the network they were loaded on.
+ * <p>
+ * Every new player's bandwidth meter starts from the estimate of the current network,
+ * instead of a guess, and its samples are added back to the store.
+ * The samples are kept on the disk (the shared preferences), so the estimate
+ * survives restarts - they are written every few samples, and flushed when the player stops.
+ * A sample is filed under the network it was measured on, the player may outlive a network. The estimate is the median of the recent samples,
+ * so a single stalled or burst segment doesn't move it.
+ */
+public final class BandwidthStore
+{
+    // TAG to use with logcat.
+    public static final String TAG = BandwidthStore.class.getSimpleName();
+
+    // The preferences holding the samples, a key per network.
+    private static final String PREFERENCES = "bandwidth";
+    private static final String KEY_SAMPLES = "samples_";
+
+    // Recent samples kept per network.
+    private static final int MAX_SAMPLES = 16;
+
+    // Transfers too small to measure the throughput.
+    private static final long MIN_SAMPLE_BYTES = 64 * 1024;
+    private static final int MIN_SAMPLE_MS = 50;
+
+    // Minimal interval between the writes of the samples.
+    private static final long SAVE_INTERVAL_MS = 10_000;
+
+    // Networks without a known name.
+    private static final String NETWORK_WIFI = "wifi";
+    private static final String NETWORK_ETHERNET = "ethernet";
+    private static final String NETWORK_CELLULAR = "cellular";
+    private static final String NETWORK_OTHER = "other";
+    private static final String UNKNOWN_SSID = "<unknown ssid>";
+
+    // The shared instance.
+    private static volatile BandwidthStore sInstance = null;
+
+    // The preferences, or null for a memory only store.
+    private final SharedPreferences mPreferences;
+
+    // Delivers the meters samples.
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Recent samples in bits per second, by the network (loaded on first use).
+    private final Map<String, ArrayDeque<Long>> mSamples = new HashMap<>();
+
+    // Networks with samples not written yet.
+    private final Set<String> mUnsaved = new HashSet<>();
+
+    // Last write of the samples, in uptime milliseconds.
+    private long mLastSaveTime = 0;
+
+
+    private BandwidthStore(@Nullable SharedPreferences preferences) {
+        this.mPreferences = preferences;
+    }
+
+
+    /**
+     * Initialize the shared store over the application preferences.
+     * Must be called once, before the first {@code getInstance()}.
+     *
+     * @param context the context of the application.
+     */
+    public static void initialize(@NonNull Context context)
+    {
+        synchronized (BandwidthStore.class)
+        {
+            if (sInstance != null) {
+                Log.w(TAG, "Store already initialized.");
+                return;
+            }
+
+            sInstance = new BandwidthStore(context.getApplicationContext()
+                    .getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE));
+        }
+    }
+
+
+    /**
+     * Get the shared store.
+     * If it wasn't initialized, a memory only store is created.
+     *
+     * @return the store instance.
+     */
+    public static @NonNull BandwidthStore getInstance()
+    {
+        if (sInstance == null)
+        {
+            synchronized (BandwidthStore.class)
+            {
+                if (sInstance == null)
+                    sInstance = new BandwidthStore(null);
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Create bandwidth meter for a new player, starting from the current network estimate.
+     * The meter samples are added to the store.
+     *
+     * @param context         the context of the application.
+     * @param fallbackBitrate the initial estimate if the network has no samples, 0 for the meter default.
+     * @return the bandwidth meter.
+     */
+    public @NonNull DefaultBandwidthMeter createMeter(@NonNull Context context, long fallbackBitrate)
+    {
+        final Context appContext = context.getApplicationContext();
+        final String network = currentNetwork(appContext);
+        final long estimate = getEstimate(network);
+        final long initialBitrate = estimate > 0 ? estimate : fallbackBitrate;
+
+        DefaultBandwidthMeter.Builder builder = new DefaultBandwidthMeter.Builder(context);
+        if (initialBitrate > 0)
+            builder.setInitialBitrateEstimate(initialBitrate);
+
+        Log.v(TAG, "Meter of " + network + " starts at " + initialBitrate + " bps.");
+
+        DefaultBandwidthMeter meter = builder.build();
+        meter.addEventListener(this.mHandler, new BandwidthMeter.EventListener()
+        {
+            @Override
+            public void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate)
+            {
+                // The network of this sample, it may have changed since the meter was created.
+                if (isMeasurable(bytesTransferred, elapsedMs))
+                    addSample(currentNetwork(appContext), bytesTransferred, elapsedMs);
+            }
+        });
+
+        return meter;
+    }
+
+
+    /**
+     * Get the estimate of a network.
+     *
+     * @param network the network name.
+     * @return the median of the recent samples in bits per second, or 0 if no samples.
+     */
+    public long getEstimate(@NonNull String network)
+    {
+        synchronized (this.mSamples)
+        {
+            ArrayDeque<Long> samples = samplesOf(network);
+            if (samples.isEmpty())
+                return 0;
+
+            long[] sorted = new long[samples.size()];
+            int i = 0;
+            for (long sample : samples)
+                sorted[i++] = sample;
+
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+    }
+
+
+    /**
+     * Add a measured transfer of a network, small transfers are ignored.
+     *
+     * @param network   the network name.
+     * @param bytes     the bytes transferred.
+     * @param elapsedMs the transfer time, in milliseconds.
+     */
+    public void addSample(@NonNull String network, long bytes, int elapsedMs)
+    {
+        if (!isMeasurable(bytes, elapsedMs))
+            return;
+
+        final long bitrate = bytes * 8000 / elapsedMs;
+
+        synchronized (this.mSamples)
+        {
+            ArrayDeque<Long> samples = samplesOf(network);
+
+            if (samples.size() == MAX_SAMPLES)
+                samples.removeFirst();
+
+            samples.addLast(bitrate);
+            this.mUnsaved.add(network);
+
+            // Segments arrive every few seconds, don't write on each.
+            if (SystemClock.uptimeMillis() - this.mLastSaveTime >= SAVE_INTERVAL_MS)
+                saveUnsaved();
+        }
+    }
+
+
+    /**
+     * Write the samples not written yet, when the player stops -
+     * the last samples of a short session may be all of it.
+     */
+    public void flush()
+    {
+        synchronized (this.mSamples) {
+            saveUnsaved();
+        }
+    }
+
+
+    /**
+     * Check if a transfer is large enough to measure the throughput.
+     *
+     * @param bytes     the bytes transferred.
+     * @param elapsedMs the transfer time, in milliseconds.
+     * @return true if it is, false otherwise.
+     */
+    private static boolean isMeasurable(long bytes, int elapsedMs) {
+        return bytes >= MIN_SAMPLE_BYTES && elapsedMs >= MIN_SAMPLE_MS;
+    }
+
+
+    /**
+     * Write the samples of the networks with new samples.
+     * Must be called while holding the samples lock.
+     */
+    private void saveUnsaved()
+    {
+        this.mLastSaveTime = SystemClock.uptimeMillis();
+
+        for (String network : this.mUnsaved)
+            save(network, samplesOf(network));
+
+        this.mUnsaved.clear();
+    }
+
+
+    /**
+     * Get the recent samples of a network, loading them from the disk on first use.
+     * Must be called while holding the samples lock.
+     *
+     * @param network the network name.
+     * @return the samples, oldest first.
+     */
+    private @NonNull ArrayDeque<Long> samplesOf(@NonNull String network)
+    {
+        ArrayDeque<Long> samples = this.mSamples.get(network);
+        if (samples != null)
+            return samples;
+
+        samples = new ArrayDeque<>(MAX_SAMPLES);
+        this.mSamples.put(network, samples);
+
+        if (this.mPreferences == null)
+            return samples;
+
+        String saved = this.mPreferences.getString(KEY_SAMPLES + network, null);
+        if (saved == null || saved.isEmpty())
+            return samples;
+
+        for (String sample : saved.split(","))
+        {
+            try {
+                samples.addLast(Long.parseLong(sample));
+            }
+            catch (NumberFormatException e) {
+                Log.w(TAG, "Dropping corrupted sample of " + network + ": " + sample);
+            }
+        }
+
+        while (samples.size() > MAX_SAMPLES)
+            samples.removeFirst();
+
+        return samples;
+    }
+
+
+    /**
+     * Write the samples of a network to the disk.
+     *
+     * @param network the network name.
+     * @param samples the samples, oldest first.
+     */
+    private void save(@NonNull String network, @NonNull ArrayDeque<Long> samples)
+    {
+        if (this.mPreferences == null)
+            return;
+
+        StringBuilder builder = new StringBuilder(samples.size() * 10);
+        for (long sample : samples)
+        {
+            if (builder.length() > 0)
+                builder.append(',');
+
+            builder.append(sample);
+        }
+
+        this.mPreferences.edit().putString(KEY_SAMPLES + network, builder.toString()).apply();
+    }
+
+
+    /**
+     * Get the name of the current network - the Wi-Fi SSID when known, or the network type.
+     *
+     * @param context the context of the application.
+     * @return the network name.
+     */
+    private static @NonNull String currentNetwork(@NonNull Context context)
+    {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null)
+            return NETWORK_OTHER;
+
+        Network network = connectivityManager.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null
+                ? connectivityManager.getNetworkCapabilities(network)
+                : null;
+
+        if (capabilities == null)
+            return NETWORK_OTHER;
+
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET))
+            return NETWORK_ETHERNET;
+
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR))
+            return NETWORK_CELLULAR;
+
+        if (!capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI))
+            return NETWORK_OTHER;
+
+        // The SSID is hidden without the location permission, then all Wi-Fi networks are one.
+        WifiManager wifiManager =
+                (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        WifiInfo wifiInfo = wifiManager != null ? wifiManager.getConnectionInfo() : null;
+        String ssid = wifiInfo != null ? wifiInfo.getSSID() : null;
+
+        if (ssid == null || ssid.isEmpty() || UNKNOWN_SSID.equals(ssid))
+            return NETWORK_WIFI;
+
+        return NETWORK_WIFI + ":" + ssid;
+    }
+}
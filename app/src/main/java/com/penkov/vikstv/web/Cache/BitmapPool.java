@@ -0,0 +1,217 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Reference counted bitmaps, and a pool of the unreferenced ones for reuse by the decoder.
+ * <p>
+ * Every owner of a bitmap (the memory cache, a view showing it) holds a reference.
+ * When the last reference is released the bitmap is not recycled,
+ * but kept to be decoded into ({@code inBitmap}), so its memory is reused.
+ * A bitmap which is never released is simply collected by the GC.
+ */
+final class BitmapPool
+{
+    // The references count of the referenced bitmaps.
+    private final IdentityHashMap<Bitmap, Integer> mReferences = new IdentityHashMap<>();
+
+    // The unreferenced bitmaps, the least recently released first.
+    private final LinkedList<Bitmap> mFreeBitmaps = new LinkedList<>();
+
+    // Maximum total size of the unreferenced bitmaps.
+    private final long mMaxFreeBytes;
+
+    // Total size of the unreferenced bitmaps.
+    private long mFreeBytes = 0;
+
+    // Metrics.
+    private long mReuses = 0;
+    private long mAllocations = 0;
+
+
+    /**
+     * Create new pool.
+     *
+     * @param maxFreeBytes maximum total size of the unreferenced bitmaps.
+     */
+    BitmapPool(long maxFreeBytes) {
+        this.mMaxFreeBytes = maxFreeBytes;
+    }
+
+
+    /**
+     * Add a reference to a bitmap.
+     *
+     * @param bitmap the referenced bitmap.
+     */
+    synchronized void acquire(@NonNull Bitmap bitmap)
+    {
+        Integer count = this.mReferences.get(bitmap);
+        this.mReferences.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+
+    /**
+     * Add a reference to a bitmap, only if it is still referenced by someone else.
+     * An unreferenced bitmap may already be reused for another image.
+     *
+     * @param bitmap the bitmap.
+     * @return true if the reference was added, false if the bitmap is unreferenced.
+     */
+    synchronized boolean acquireIfReferenced(@NonNull Bitmap bitmap)
+    {
+        Integer count = this.mReferences.get(bitmap);
+        if (count == null)
+            return false;
+
+        this.mReferences.put(bitmap, count + 1);
+        return true;
+    }
+
+
+    /**
+     * Remove a reference from a bitmap.
+     * When the last reference is removed, the bitmap is pooled for reuse.
+     *
+     * @param bitmap the no longer referenced bitmap.
+     */
+    synchronized void release(@NonNull Bitmap bitmap)
+    {
+        Integer count = this.mReferences.get(bitmap);
+
+        // Released more than acquired, it may be already reused.
+        if (count == null)
+            return;
+
+        if (count > 1) {
+            this.mReferences.put(bitmap, count - 1);
+            return;
+        }
+
+        this.mReferences.remove(bitmap);
+
+        // Only mutable bitmaps can be decoded into.
+        if (!bitmap.isMutable() || bitmap.isRecycled())
+            return;
+
+        this.mFreeBitmaps.addLast(bitmap);
+        this.mFreeBytes += bitmap.getAllocationByteCount();
+
+        // Drop the least recently released bitmaps, the GC will take them.
+        while (this.mFreeBytes > this.mMaxFreeBytes && !this.mFreeBitmaps.isEmpty())
+            this.mFreeBytes -= this.mFreeBitmaps.removeFirst().getAllocationByteCount();
+    }
+
+
+    /**
+     * Take an unreferenced bitmap large enough to decode into.
+     * The bitmap is removed from the pool, and should be acquired if it is decoded into.
+     *
+     * @param width  the decoded image width.
+     * @param height the decoded image height.
+     * @param config the decoded image pixel config.
+     * @return the bitmap to decode into, or null if none fits.
+     */
+    synchronized @Nullable Bitmap take(int width, int height, @NonNull Bitmap.Config config)
+    {
+        long byteCount = (long) width * height * bytesPerPixel(config);
+
+        // Take the smallest fitting bitmap, to keep the large ones for large images.
+        Bitmap best = null;
+        for (Bitmap bitmap : this.mFreeBitmaps)
+        {
+            int allocation = bitmap.getAllocationByteCount();
+            if (allocation >= byteCount
+                    && (best == null || allocation < best.getAllocationByteCount()))
+                best = bitmap;
+        }
+
+        if (best == null) {
+            this.mAllocations++;
+            return null;
+        }
+
+        removeFree(best);
+        this.mReuses++;
+        return best;
+    }
+
+
+    /**
+     * Drop all the unreferenced bitmaps.
+     */
+    synchronized void clear()
+    {
+        this.mFreeBitmaps.clear();
+        this.mFreeBytes = 0;
+    }
+
+
+    /**
+     * Get the total size of the unreferenced bitmaps.
+     *
+     * @return the size in bytes.
+     */
+    synchronized long getFreeBytes() {
+        return this.mFreeBytes;
+    }
+
+
+    /**
+     * Get the part of the decodes that reused a pooled bitmap.
+     *
+     * @return the reuse ratio, between 0 and 1.
+     */
+    synchronized float getReuseRatio()
+    {
+        long total = this.mReuses + this.mAllocations;
+        return total == 0 ? 0f : (float) this.mReuses / total;
+    }
+
+
+    /**
+     * Remove a bitmap from the free bitmaps.
+     *
+     * @param bitmap the bitmap to remove.
+     */
+    private void removeFree(@NonNull Bitmap bitmap)
+    {
+        Iterator<Bitmap> iterator = this.mFreeBitmaps.iterator();
+
+        while (iterator.hasNext())
+        {
+            if (iterator.next() == bitmap) {
+                iterator.remove();
+                this.mFreeBytes -= bitmap.getAllocationByteCount();
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Get the memory of a single pixel.
+     *
+     * @param config the pixel config.
+     * @return the pixel size in bytes.
+     */
+    static int bytesPerPixel(@NonNull Bitmap.Config config)
+    {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,610 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.penkov.vikstv.web.Listener.ListenerChannelIcon;
+import com.penkov.vikstv.web.Scraper.ScraperChannelIcon;
+import com.penkov.vikstv.web.base.ScraperDispatcher;
+import com.penkov.vikstv.web.base.ScraperPriority;
+
+import java.io.File;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two levels cache of the channels icons, keyed by the icon reference.
+ * <p>
+ * The decoded icons are kept in memory, bounded by their bytes count,
+ * and the encoded icons are kept on the disk.
+ * Memory lookup is synchronous, so a cached icon can be shown when the card is bound.
+ * Disk lookup and downloading are done on the scraper workers.
+ * <p>
+ * Icons are decoded at the size they are shown, and are reference counted:
+ * an icon returned by the cache is owned by the caller until it calls {@code release()},
+ * and icons no longer used are decoded into again instead of allocating new memory.
+ */
+public final class ChannelIconCache
+{
+    // TAG to use on logcat.
+    public static final String TAG = ChannelIconCache.class.getSimpleName();
+
+    // Part of the application heap used by the decoded icons.
+    private static final int MEMORY_HEAP_FRACTION = 8;
+
+    // The disk cache, inside the application cache directory.
+    private static final String DISK_DIRECTORY = "icons";
+    private static final long DISK_MAX_BYTES = 8 * 1024 * 1024;
+
+    // Maximum memory of the unused icons kept for reuse.
+    private static final long POOL_MAX_BYTES = 4 * 1024 * 1024;
+
+    // The single instance of the cache.
+    private static volatile ChannelIconCache sInstance = null;
+
+    // The decoded icons, by their reference and size.
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    // The icons references, and the unused icons memory.
+    private final BitmapPool mPool = new BitmapPool(POOL_MAX_BYTES);
+
+    // Decodes the icons into the pool memory.
+    private final IconDecoder mDecoder = new IconDecoder(this.mPool);
+
+    // The encoded icons, or null for memory only cache.
+    private final DiskCache mDiskCache;
+
+    // Metrics.
+    private final AtomicLong mMemoryHits = new AtomicLong();
+    private final AtomicLong mMemoryMisses = new AtomicLong();
+    private final AtomicLong mDiskHits = new AtomicLong();
+    private final AtomicLong mDiskMisses = new AtomicLong();
+
+
+    /**
+     * Icon load in progress, which can be cancelled.
+     */
+    public interface Request
+    {
+        /**
+         * Cancel the load - the disk lookup or the download.
+         * Once this method returns, the listener will not be called.
+         */
+        void cancel();
+
+        /**
+         * Change the priority of the load, for example when the icon becomes visible.
+         *
+         * @param priority the new priority.
+         */
+        void setPriority(@NonNull ScraperPriority priority);
+    }
+
+
+    /**
+     * Create the shared cache, with disk storage inside the application cache directory.
+     * Should be called once, when the application starts.
+     *
+     * @param context the context of the application.
+     */
+    public static void initialize(@NonNull Context context)
+    {
+        synchronized (ChannelIconCache.class)
+        {
+            if (sInstance != null) {
+                Log.w(TAG, "Cache already initialized.");
+                return;
+            }
+
+            sInstance = new ChannelIconCache(
+                    new DiskCache(new File(context.getCacheDir(), DISK_DIRECTORY), DISK_MAX_BYTES));
+        }
+    }
+
+
+    /**
+     * Get the shared cache.
+     * If it wasn't initialized, a memory only cache is created.
+     *
+     * @return the cache instance.
+     */
+    public static @NonNull ChannelIconCache getInstance()
+    {
+        if (sInstance == null)
+        {
+            synchronized (ChannelIconCache.class)
+            {
+                if (sInstance == null)
+                    sInstance = new ChannelIconCache(null);
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Create the cache.
+     *
+     * @param diskCache the disk storage, or null for memory only cache.
+     */
+    private ChannelIconCache(@Nullable DiskCache diskCache)
+    {
+        int maxMemoryBytes = (int) (Runtime.getRuntime().maxMemory() / MEMORY_HEAP_FRACTION);
+
+        this.mMemoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap icon) {
+                return icon.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldIcon, Bitmap newIcon) {
+                // The cache reference, the icon may still be shown.
+                mPool.release(oldIcon);
+            }
+        };
+
+        this.mDiskCache = diskCache;
+    }
+
+
+    /**
+     * Get an icon from the memory, without blocking.
+     * The caller owns a reference to the returned icon, and should {@code release()} it.
+     *
+     * @param URL    the icon reference.
+     * @param width  the shown width in pixels, 0 for the original size.
+     * @param height the shown height in pixels, 0 for the original size.
+     * @return the icon, or null if not in memory.
+     */
+    public @Nullable Bitmap acquireCached(@NonNull String URL, int width, int height)
+    {
+        Bitmap icon = acquireMemory(getKey(URL, width, height));
+
+        if (icon != null)
+            this.mMemoryHits.incrementAndGet();
+        else
+            this.mMemoryMisses.incrementAndGet();
+
+        return icon;
+    }
+
+
+    /**
+     * Get an icon from the memory, the disk or the server - the first that has it.
+     * On memory hit the listener is called before returning,
+     * otherwise it is called on a background thread.
+     * <p>
+     * The listener owns a reference to the icon it gets, and should {@code release()} it.
+     *
+     * @param URL      the icon reference.
+     * @param width    the shown width in pixels, 0 for the original size.
+     * @param height   the shown height in pixels, 0 for the original size.
+     * @param priority the priority of the disk lookup and the download.
+     * @param listener the listener to inform with the icon.
+     * @return the load in progress, or null if the listener was already called.
+     */
+    public @Nullable Request load(@NonNull String URL, int width, int height,
+                                  @NonNull ScraperPriority priority,
+                                  @NonNull ListenerChannelIcon listener)
+    {
+        Bitmap icon = acquireCached(URL, width, height);
+        if (icon != null) {
+            listener.onResult(icon);
+            return null;
+        }
+
+        DiskLookup lookup = new DiskLookup(URL, width, height, priority, listener);
+        ScraperDispatcher.getInstance().submit(lookup);
+        return lookup;
+    }
+
+
+    /**
+     * Release a reference to an icon returned by the cache.
+     * The icon must not be used after it was released.
+     *
+     * @param icon the icon, or null for no operation.
+     */
+    public void release(@Nullable Bitmap icon)
+    {
+        if (icon != null)
+            this.mPool.release(icon);
+    }
+
+
+    /**
+     * Decode an icon at the size it is shown, reusing memory of unused icons.
+     *
+     * @param encoded the encoded icon.
+     * @param width   the shown width in pixels, 0 for the original size.
+     * @param height  the shown height in pixels, 0 for the original size.
+     * @return the decoded icon, or null if it can't be decoded.
+     */
+    public @Nullable Bitmap decode(@NonNull byte[] encoded, int width, int height) {
+        return this.mDecoder.decode(encoded, width, height);
+    }
+
+
+    /**
+     * Store an icon downloaded from the server.
+     *
+     * @param URL     the icon reference.
+     * @param width   the shown width in pixels, 0 for the original size.
+     * @param height  the shown height in pixels, 0 for the original size.
+     * @param icon    the decoded icon.
+     * @param encoded the icon as received from the server.
+     */
+    public void put(@NonNull String URL, int width, int height,
+                    @NonNull Bitmap icon, @NonNull byte[] encoded)
+    {
+        putMemory(getKey(URL, width, height), icon);
+
+        if (this.mDiskCache != null)
+            this.mDiskCache.put(URL, encoded);
+    }
+
+
+    /**
+     * Drop all the decoded icons, to free memory.
+     * The disk cache is kept.
+     */
+    public void clearMemory()
+    {
+        this.mMemoryCache.evictAll();
+        this.mPool.clear();
+    }
+
+
+    /**
+     * Get the part of the memory lookups that found the icon.
+     *
+     * @return the hit ratio, between 0 and 1.
+     */
+    public float getMemoryHitRatio() {
+        return ratio(this.mMemoryHits.get(), this.mMemoryMisses.get());
+    }
+
+
+    /**
+     * Get the part of the disk lookups (after memory miss) that found the icon.
+     *
+     * @return the hit ratio, between 0 and 1.
+     */
+    public float getDiskHitRatio() {
+        return ratio(this.mDiskHits.get(), this.mDiskMisses.get());
+    }
+
+
+    /**
+     * Get the part of all the lookups that didn't need the server.
+     *
+     * @return the hit ratio, between 0 and 1.
+     */
+    public float getHitRatio()
+    {
+        long hits = this.mMemoryHits.get() + this.mDiskHits.get();
+        return ratio(hits, this.mDiskMisses.get());
+    }
+
+
+    /**
+     * Get the memory used by the decoded icons.
+     *
+     * @return the size in bytes.
+     */
+    public int getMemoryBytes() {
+        return this.mMemoryCache.size();
+    }
+
+
+    /**
+     * Get the maximum memory used by the decoded icons.
+     *
+     * @return the size limit in bytes.
+     */
+    public int getMemoryMaxBytes() {
+        return this.mMemoryCache.maxSize();
+    }
+
+
+    /**
+     * Get the disk space used by the encoded icons.
+     * Should not be called on the UI thread, the disk may be scanned.
+     *
+     * @return the size in bytes, 0 for memory only cache.
+     */
+    public long getDiskBytes() {
+        return this.mDiskCache != null ? this.mDiskCache.getSize() : 0;
+    }
+
+
+    /**
+     * Get the maximum disk space used by the encoded icons.
+     *
+     * @return the size limit in bytes, 0 for memory only cache.
+     */
+    public long getDiskMaxBytes() {
+        return this.mDiskCache != null ? this.mDiskCache.getMaxSize() : 0;
+    }
+
+
+    /**
+     * Get the part of the decodes that reused memory of unused icons.
+     *
+     * @return the reuse ratio, between 0 and 1.
+     */
+    public float getBitmapReuseRatio() {
+        return this.mPool.getReuseRatio();
+    }
+
+
+    /**
+     * Get the memory of the unused icons kept for reuse.
+     *
+     * @return the size in bytes.
+     */
+    public long getPoolBytes() {
+        return this.mPool.getFreeBytes();
+    }
+
+
+    /**
+     * Get a decoded icon from memory, with a reference to it.
+     *
+     * @param key the memory key.
+     * @return the icon, or null if not in memory.
+     */
+    private @Nullable Bitmap acquireMemory(@NonNull String key)
+    {
+        // Not evicted and reused between the lookup and the reference.
+        synchronized (this.mPool)
+        {
+            Bitmap icon = this.mMemoryCache.get(key);
+            if (icon != null)
+                this.mPool.acquire(icon);
+
+            return icon;
+        }
+    }
+
+
+    /**
+     * Store a decoded icon in memory, the memory cache holds a reference to it.
+     *
+     * @param key  the memory key.
+     * @param icon the decoded icon.
+     */
+    private void putMemory(@NonNull String key, @NonNull Bitmap icon)
+    {
+        synchronized (this.mPool)
+        {
+            this.mPool.acquire(icon);
+            this.mMemoryCache.put(key, icon);
+        }
+    }
+
+
+    /**
+     * Get the memory key of an icon - the same icon is decoded for every size shown.
+     *
+     * @param URL    the icon reference.
+     * @param width  the shown width.
+     * @param height the shown height.
+     * @return the memory key.
+     */
+    private static @NonNull String getKey(@NonNull String URL, int width, int height) {
+        return width + "x" + height + " " + URL;
+    }
+
+
+    /**
+     * Calculate hit ratio.
+     *
+     * @param hits   the hits count.
+     * @param misses the misses count.
+     * @return the hit ratio, 0 if there were no lookups.
+     */
+    private static float ratio(long hits, long misses)
+    {
+        long total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+
+    /**
+     * Look for an icon on the disk, and download it if not found.
+     */
+    private final class DiskLookup implements ScraperDispatcher.Task, Request
+    {
+        private final String mURL;
+        private final int mWidth;
+        private final int mHeight;
+        private final ListenerChannelIcon mListener;
+
+        // Whether the lookup was cancelled, and the download in progress.
+        // Guarded by the lookup itself.
+        private boolean mCancelled = false;
+        private ScraperChannelIcon mDownload = null;
+
+        // The priority, read by the dispatcher queue without the lookup lock.
+        private volatile ScraperPriority mPriority;
+
+        DiskLookup(@NonNull String URL, int width, int height,
+                   @NonNull ScraperPriority priority,
+                   @NonNull ListenerChannelIcon listener)
+        {
+            this.mURL = URL;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mPriority = priority;
+            this.mListener = listener;
+        }
+
+        @Override
+        public @NonNull ScraperPriority getPriority() {
+            return this.mPriority;
+        }
+
+        @Override
+        public void setPriority(@NonNull ScraperPriority priority)
+        {
+            ScraperChannelIcon download;
+
+            synchronized (this)
+            {
+                if (this.mCancelled || this.mPriority == priority)
+                    return;
+
+                this.mPriority = priority;
+                download = this.mDownload;
+            }
+
+            // Either still queued for the disk lookup, or already downloading.
+            if (!ScraperDispatcher.getInstance().setPriority(this, priority) && download != null)
+                download.setPriority(priority);
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (this) {
+                if (this.mCancelled)
+                    return;
+            }
+
+            // Other request may have brought it in the meantime.
+            Bitmap icon = acquireMemory(getKey(this.mURL, this.mWidth, this.mHeight));
+            if (icon != null) {
+                deliver(icon);
+                return;
+            }
+
+            byte[] encoded = mDiskCache != null ? mDiskCache.get(this.mURL) : null;
+            if (encoded != null)
+                icon = decode(encoded, this.mWidth, this.mHeight);
+
+            // Not cached, download it - the scraper stores it in the cache.
+            if (icon == null) {
+                mDiskMisses.incrementAndGet();
+                download();
+                return;
+            }
+
+            mDiskHits.incrementAndGet();
+
+            // One reference for the cache, and one for the listener.
+            putMemory(getKey(this.mURL, this.mWidth, this.mHeight), icon);
+            mPool.acquire(icon);
+            deliver(icon);
+        }
+
+        @Override
+        public synchronized void onRejected(@NonNull RejectedExecutionException exception)
+        {
+            if (!this.mCancelled)
+                this.mListener.onError(exception);
+        }
+
+        @Override
+        public void cancel()
+        {
+            ScraperChannelIcon download;
+
+            synchronized (this)
+            {
+                if (this.mCancelled)
+                    return;
+
+                this.mCancelled = true;
+                download = this.mDownload;
+            }
+
+            // Drop the disk lookup if it didn't start, or abort the download.
+            if (!ScraperDispatcher.getInstance().remove(this) && download != null)
+                download.cancel();
+        }
+
+        /**
+         * Download the icon, unless cancelled.
+         */
+        private synchronized void download()
+        {
+            if (this.mCancelled)
+                return;
+
+            this.mDownload = new ScraperChannelIcon(
+                    this.mURL, this.mWidth, this.mHeight, new DownloadListener(this));
+            this.mDownload.setPriority(this.mPriority);
+            this.mDownload.load();
+        }
+
+        /**
+         * Pass an icon, with a reference, to the listener.
+         * If the lookup was cancelled, the reference is released instead.
+         *
+         * @param icon the acquired icon.
+         */
+        private synchronized void deliver(@NonNull Bitmap icon)
+        {
+            if (this.mCancelled) {
+                mPool.release(icon);
+                return;
+            }
+
+            try {
+                this.mListener.onResult(icon);
+            }
+            catch (Exception e) {
+                this.mListener.onError(e);
+            }
+        }
+
+        /**
+         * Pass an error to the listener, unless cancelled.
+         *
+         * @param exception describes the problem.
+         */
+        private synchronized void deliverError(@NonNull Exception exception)
+        {
+            if (!this.mCancelled)
+                this.mListener.onError(exception);
+        }
+    }
+
+
+    /**
+     * Passes a downloaded icon, with a reference, to the lookup listener.
+     */
+    private final class DownloadListener extends ListenerChannelIcon
+    {
+        private final DiskLookup mLookup;
+
+        DownloadListener(@NonNull DiskLookup lookup) {
+            this.mLookup = lookup;
+        }
+
+        @Override
+        public void onResult(@NonNull Bitmap icon)
+        {
+            // Was evicted since downloaded, and may be reused - look for it again.
+            if (!mPool.acquireIfReferenced(icon)) {
+                ScraperDispatcher.getInstance().submit(this.mLookup);
+                return;
+            }
+
+            this.mLookup.deliver(icon);
+        }
+
+        @Override
+        public void onError(@NonNull Exception exception) {
+            this.mLookup.deliverError(exception);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Size bounded store of byte arrays on the disk, one file per entry.
+ * <p>
+ * Reading an entry marks it as recently used, and when the store grows
+ * above its limit the least recently used entries are deleted.
+ */
+final class DiskCache
+{
+    // TAG to use on logcat.
+    public static final String TAG = DiskCache.class.getSimpleName();
+
+    // Suffix of a file still being written.
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // The directory holding the entries.
+    private final File mDirectory;
+
+    // Maximum total size of the entries.
+    private final long mMaxBytes;
+
+    // Lock over the entries size.
+    private final Object mLock = new Object();
+
+    // Total size of the entries, or -1 before the directory was scanned.
+    private long mSize = -1;
+
+
+    /**
+     * Create new disk cache.
+     * The directory is scanned on first use, not here, as it may be called on the UI thread.
+     *
+     * @param directory the directory to store the entries in.
+     * @param maxBytes  maximum total size of the entries.
+     */
+    DiskCache(@NonNull File directory, long maxBytes)
+    {
+        this.mDirectory = directory;
+        this.mMaxBytes = maxBytes;
+    }
+
+
+    /**
+     * Read an entry, and mark it as recently used.
+     *
+     * @param key the entry key.
+     * @return the entry data, or null if not stored.
+     */
+    @Nullable byte[] get(@NonNull String key)
+    {
+        File file = fileOf(key);
+        if (!file.isFile())
+            return null;
+
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+
+            // Last modified time is the last use time.
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        }
+        catch (IOException e) {
+            // Probably evicted while reading.
+            Log.v(TAG, "Couldn't read cache entry.", e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Store an entry, replacing the old one.
+     * Least recently used entries are deleted when the cache is too big.
+     *
+     * @param key  the entry key.
+     * @param data the entry data.
+     */
+    void put(@NonNull String key, @NonNull byte[] data)
+    {
+        // Larger than the whole cache, don't bother.
+        if (data.length > this.mMaxBytes)
+            return;
+
+        File file = fileOf(key);
+        File temp = new File(this.mDirectory,
+                file.getName() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+
+        synchronized (this.mLock)
+        {
+            ensureScanned();
+
+            // Write to temporary file, so readers never see partial entry.
+            try (FileOutputStream output = new FileOutputStream(temp)) {
+                output.write(data);
+            }
+            catch (IOException e) {
+                Log.w(TAG, "Couldn't write cache entry.", e);
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                return;
+            }
+
+            long oldLength = file.length();
+
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Couldn't store cache entry.");
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                return;
+            }
+
+            this.mSize += data.length - oldLength;
+            trimToSize();
+        }
+    }
+
+
+    /**
+     * Get the total size of the stored entries.
+     *
+     * @return the size in bytes.
+     */
+    long getSize()
+    {
+        synchronized (this.mLock) {
+            ensureScanned();
+            return this.mSize;
+        }
+    }
+
+
+    /**
+     * Get the maximum total size of the stored entries.
+     *
+     * @return the size limit in bytes.
+     */
+    long getMaxSize() {
+        return this.mMaxBytes;
+    }
+
+
+    /**
+     * Calculate the entries size on first use, and clean leftovers of interrupted writes.
+     * Must be called under the lock.
+     */
+    private void ensureScanned()
+    {
+        if (this.mSize >= 0)
+            return;
+
+        //noinspection ResultOfMethodCallIgnored
+        this.mDirectory.mkdirs();
+
+        long size = 0;
+        for (File file : listFiles())
+        {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                continue;
+            }
+
+            size += file.length();
+        }
+
+        this.mSize = size;
+    }
+
+
+    /**
+     * Delete the least recently used entries until the size is within the limit.
+     * Must be called under the lock.
+     */
+    private void trimToSize()
+    {
+        if (this.mSize <= this.mMaxBytes)
+            return;
+
+        File[] files = listFiles();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        for (File file : files)
+        {
+            if (this.mSize <= this.mMaxBytes)
+                break;
+
+            if (file.getName().endsWith(TEMP_SUFFIX))
+                continue;
+
+            long length = file.length();
+            if (file.delete())
+                this.mSize -= length;
+        }
+    }
+
+
+    /**
+     * List the files in the cache directory.
+     *
+     * @return the files, empty if the directory can't be read.
+     */
+    private @NonNull File[] listFiles()
+    {
+        File[] files = this.mDirectory.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+
+    /**
+     * Get the file of an entry. The key is hashed, so any string can be a key.
+     *
+     * @param key the entry key.
+     * @return the entry file.
+     */
+    private @NonNull File fileOf(@NonNull String key)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(key.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                name.append(String.format("%02x", b));
+
+            return new File(this.mDirectory, name.toString());
+        }
+        catch (NoSuchAlgorithmException e) {
+            // SHA-1 is always supported on Android.
+            throw new IllegalStateException(e);
+        }
+    }
+}
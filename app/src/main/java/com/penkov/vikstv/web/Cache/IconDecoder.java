@@ -0,0 +1,106 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Decodes icons at the size they are shown, into memory reused from a {@code BitmapPool}.
+ * <p>
+ * The image bounds are read first, then the image is sub-sampled and scaled
+ * to fit the target size. Images without transparency (JPEG) use 16 bit pixels.
+ */
+final class IconDecoder
+{
+    // TAG to use on logcat.
+    public static final String TAG = IconDecoder.class.getSimpleName();
+
+    // Image type without alpha channel.
+    private static final String MIME_JPEG = "image/jpeg";
+
+    // The pool to reuse memory from.
+    private final BitmapPool mPool;
+
+
+    /**
+     * Create new decoder.
+     *
+     * @param pool the pool to take reusable bitmaps from.
+     */
+    IconDecoder(@NonNull BitmapPool pool) {
+        this.mPool = pool;
+    }
+
+
+    /**
+     * Decode an image to fit inside the target size, keeping its aspect ratio.
+     * Images smaller than the target are not scaled up.
+     *
+     * @param encoded      the encoded image.
+     * @param targetWidth  the target width in pixels, 0 or less for the original size.
+     * @param targetHeight the target height in pixels, 0 or less for the original size.
+     * @return the decoded image (mutable), or null if the image can't be decoded.
+     */
+    @Nullable Bitmap decode(@NonNull byte[] encoded, int targetWidth, int targetHeight)
+    {
+        // Read the bounds only, without allocating the pixels.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if (width <= 0 || height <= 0)
+            return null;
+
+        // The scale that fits the image inside the target.
+        float scale = 1f;
+        if (targetWidth > 0 && targetHeight > 0)
+            scale = Math.min(1f, Math.min(
+                    (float) targetWidth / width,
+                    (float) targetHeight / height));
+
+        // Sub-sample by the largest power of 2 that still keeps the target size,
+        // it is done while decoding and is much cheaper than scaling.
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= width * scale
+                && height / (sampleSize * 2) >= height * scale)
+            sampleSize *= 2;
+
+        int sampledWidth = width / sampleSize;
+        int decodedWidth = Math.max(1, Math.round(width * scale));
+        int decodedHeight = Math.max(1, Math.round(height * scale));
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inPreferredConfig = MIME_JPEG.equals(options.outMimeType)
+                ? Bitmap.Config.RGB_565
+                : Bitmap.Config.ARGB_8888;
+
+        // Scale the rest of the way while decoding.
+        if (decodedWidth < sampledWidth) {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = decodedWidth;
+        }
+        else {
+            options.inScaled = false;
+        }
+
+        options.inBitmap = this.mPool.take(decodedWidth, decodedHeight, options.inPreferredConfig);
+
+        try {
+            return BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+        }
+        catch (IllegalArgumentException e) {
+            // The pooled bitmap doesn't fit after all, decode into new memory.
+            Log.v(TAG, "Couldn't reuse bitmap.", e);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.FileDataSource;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+import androidx.media3.datasource.okhttp.OkHttpDataSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+
+/**
+ * The data source of all the players, over the connections of the scrapers.
+ * <p>
+ * The players share the HTTP client of the scrapers, so the connections to the video servers
+ * are kept alive between the segments, the players, and the channels.
+ * The video segments are kept in a small disk cache, so a rebuilt player, or a return
+ * to a recent channel, reads the segments it already loaded instead of loading them again.
+ * The playlists are not kept there, as live playlists change every few seconds -
+ * they go through the HTTP cache, which keeps them only as long as the server allows.
+ * <p>
+ * The requests are told apart by the file extension of their path, as the player doesn't
+ * tell the data source what it loads. A segment without a known extension is loaded
+ * directly, without the segments cache, and a playlist served under a segment extension
+ * (a {@code .ts} or {@code .mp4} path) would be kept as a segment - the channels
+ * this application plays don't do so, but a new server might.
+ */
+public final class MediaCache
+{
+    // TAG to use with logcat.
+    public static final String TAG = MediaCache.class.getSimpleName();
+
+    // The segments cache, inside the application cache directory.
+    private static final String DISK_DIRECTORY = "media";
+    private static final long DISK_MAX_BYTES = 32 * 1024 * 1024;
+
+    // The query parameters of the access token, in lower case.
+    private static final Set<String> TOKEN_PARAMS = new HashSet<>(Arrays.asList(
+            "token", "auth", "key", "sig", "signature", "hash", "md5", "expires", "e", "s", "st",
+            "wmsauthsign", "hdnts", "hdnea", "policy", "key-pair-id"));
+
+    // The file extensions of playlists, and of segments.
+    private static final String[] PLAYLIST_EXTENSIONS = { ".m3u8", ".m3u" };
+    private static final String[] SEGMENT_EXTENSIONS = {
+            ".ts", ".m4s", ".mp4", ".m4a", ".m4v", ".aac", ".vtt" };
+
+    // The shared instance.
+    private static volatile MediaCache sInstance = null;
+
+    // Loads the playlists, through the HTTP cache.
+    private final DataSource.Factory mPlaylistFactory;
+
+    // Loads the segments, through the segments cache (if any).
+    private final DataSource.Factory mSegmentFactory;
+
+    // Loads anything else, directly.
+    private final DataSource.Factory mUpstreamFactory;
+
+
+    /**
+     * Create the cache.
+     *
+     * @param client    the HTTP client to share the connections of.
+     * @param diskCache the segments storage, or null to load the segments directly.
+     */
+    private MediaCache(@NonNull OkHttpClient client, @Nullable SimpleCache diskCache)
+    {
+        // The transport statistics are of the scrapers.
+        OkHttpClient playlistClient = client.newBuilder()
+                .eventListener(EventListener.NONE)
+                .build();
+
+        // Segments are stored by the segments cache, and a long segment is not a stuck call.
+        OkHttpClient segmentClient = playlistClient.newBuilder()
+                .cache(null)
+                .callTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+
+        this.mPlaylistFactory = new OkHttpDataSource.Factory(playlistClient);
+        this.mUpstreamFactory = new OkHttpDataSource.Factory(segmentClient);
+
+        if (diskCache == null) {
+            this.mSegmentFactory = this.mUpstreamFactory;
+            return;
+        }
+
+        this.mSegmentFactory = new CacheDataSource.Factory()
+                .setCache(diskCache)
+                .setUpstreamDataSourceFactory(this.mUpstreamFactory)
+                .setCacheReadDataSourceFactory(
+                        () -> new UnmeasuredDataSource(new FileDataSource.Factory().createDataSource()))
+                .setCacheKeyFactory(MediaCache::segmentKey)
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+    }
+
+
+    /**
+     * Initialize the shared cache over the HTTP client of the scrapers.
+     * Must be called once, before the first {@code getInstance()}.
+     *
+     * @param context the context of the application.
+     * @param client  the HTTP client to share the connections of.
+     */
+    public static void initialize(@NonNull Context context, @NonNull OkHttpClient client)
+    {
+        synchronized (MediaCache.class)
+        {
+            if (sInstance != null) {
+                Log.w(TAG, "Cache already initialized.");
+                return;
+            }
+
+            sInstance = new MediaCache(client, new SimpleCache(
+                    new File(context.getCacheDir(), DISK_DIRECTORY),
+                    new LeastRecentlyUsedCacheEvictor(DISK_MAX_BYTES),
+                    new StandaloneDatabaseProvider(context.getApplicationContext())));
+        }
+    }
+
+
+    /**
+     * Get the shared cache.
+     * If it wasn't initialized, a cache without storage, over its own HTTP client, is created.
+     *
+     * @return the cache instance.
+     */
+    public static @NonNull MediaCache getInstance()
+    {
+        if (sInstance == null)
+        {
+            synchronized (MediaCache.class)
+            {
+                if (sInstance == null)
+                    sInstance = new MediaCache(new OkHttpClient(), null);
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Get the data source factory for the players.
+     *
+     * @return the factory, routing each request by its content.
+     */
+    public @NonNull DataSource.Factory getDataSourceFactory()
+    {
+        return () -> new RoutingDataSource(
+                this.mPlaylistFactory.createDataSource(),
+                this.mSegmentFactory.createDataSource(),
+                this.mUpstreamFactory.createDataSource());
+    }
+
+
+    /**
+     * Get the key a segment is stored by.
+     * The access token parameters are dropped from the query - the token changes when the URL
+     * is resolved again, while the segment stays the same. The other parameters are kept,
+     * as they may select the segment itself.
+     *
+     * @param dataSpec the segment request.
+     * @return the storage key.
+     */
+    private static @NonNull String segmentKey(@NonNull DataSpec dataSpec)
+    {
+        if (dataSpec.key != null)
+            return dataSpec.key;
+
+        Uri.Builder key = dataSpec.uri.buildUpon().clearQuery().fragment(null);
+        String query = dataSpec.uri.getEncodedQuery();
+
+        if (query == null)
+            return key.build().toString();
+
+        // Keep the parameters by their order and encoding.
+        StringBuilder keptQuery = new StringBuilder(query.length());
+
+        for (String param : query.split("&"))
+        {
+            int equals = param.indexOf('=');
+            String name = Uri.decode(equals < 0 ? param : param.substring(0, equals));
+
+            if (param.isEmpty() || TOKEN_PARAMS.contains(name.toLowerCase(Locale.ROOT)))
+                continue;
+
+            if (keptQuery.length() > 0)
+                keptQuery.append('&');
+
+            keptQuery.append(param);
+        }
+
+        if (keptQuery.length() > 0)
+            key.encodedQuery(keptQuery.toString());
+
+        return key.build().toString();
+    }
+
+
+    /**
+     * Check if the path of a URI ends with one of the extensions.
+     *
+     * @param uri        the URI.
+     * @param extensions the extensions, in lower case.
+     * @return true if the path ends with one of them, false otherwise.
+     */
+    private static boolean hasExtension(@NonNull Uri uri, @NonNull String[] extensions)
+    {
+        String path = uri.getPath();
+        if (path == null)
+            return false;
+
+        path = path.toLowerCase(Locale.ROOT);
+        for (String extension : extensions)
+        {
+            if (path.endsWith(extension))
+                return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Data source that sends each request to the playlists, the segments,
+     * or the direct source, by the file extension.
+     */
+    private static final class RoutingDataSource implements DataSource
+    {
+        private final DataSource mPlaylistSource;
+        private final DataSource mSegmentSource;
+        private final DataSource mUpstreamSource;
+
+        // The source of the open request, or null if closed.
+        private DataSource mOpenSource = null;
+
+        RoutingDataSource(@NonNull DataSource playlistSource,
+                          @NonNull DataSource segmentSource,
+                          @NonNull DataSource upstreamSource)
+        {
+            this.mPlaylistSource = playlistSource;
+            this.mSegmentSource = segmentSource;
+            this.mUpstreamSource = upstreamSource;
+        }
+
+        @Override
+        public void addTransferListener(@NonNull TransferListener transferListener)
+        {
+            this.mPlaylistSource.addTransferListener(transferListener);
+            this.mSegmentSource.addTransferListener(transferListener);
+            this.mUpstreamSource.addTransferListener(transferListener);
+        }
+
+        @Override
+        public long open(@NonNull DataSpec dataSpec) throws IOException
+        {
+            if (hasExtension(dataSpec.uri, PLAYLIST_EXTENSIONS))
+                this.mOpenSource = this.mPlaylistSource;
+            else if (hasExtension(dataSpec.uri, SEGMENT_EXTENSIONS))
+                this.mOpenSource = this.mSegmentSource;
+            else
+                this.mOpenSource = this.mUpstreamSource;
+
+            return this.mOpenSource.open(dataSpec);
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            return this.mOpenSource.read(buffer, offset, length);
+        }
+
+        @Override
+        public @Nullable Uri getUri() {
+            return this.mOpenSource != null ? this.mOpenSource.getUri() : null;
+        }
+
+        @Override
+        public @NonNull Map<String, List<String>> getResponseHeaders()
+        {
+            return this.mOpenSource != null
+                    ? this.mOpenSource.getResponseHeaders()
+                    : Collections.emptyMap();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (this.mOpenSource == null)
+                return;
+
+            try {
+                this.mOpenSource.close();
+            }
+            finally {
+                this.mOpenSource = null;
+            }
+        }
+    }
+
+
+    /**
+     * Data source that hides its transfers from the bandwidth meter.
+     * Reading a stored segment says nothing about the network.
+     */
+    private static final class UnmeasuredDataSource implements DataSource
+    {
+        private final DataSource mSource;
+
+        UnmeasuredDataSource(@NonNull DataSource source) {
+            this.mSource = source;
+        }
+
+        @Override
+        public void addTransferListener(@NonNull TransferListener transferListener) {
+            // The transfers are not measured.
+        }
+
+        @Override
+        public long open(@NonNull DataSpec dataSpec) throws IOException {
+            return this.mSource.open(dataSpec);
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            return this.mSource.read(buffer, offset, length);
+        }
+
+        @Override
+        public @Nullable Uri getUri() {
+            return this.mSource.getUri();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.mSource.close();
+        }
+    }
+}
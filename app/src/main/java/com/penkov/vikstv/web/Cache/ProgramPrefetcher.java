@@ -0,0 +1,272 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.penkov.vikstv.core.ChannelInfo;
+import com.penkov.vikstv.core.ProgramIndex;
+import com.penkov.vikstv.core.ProgramSchedule;
+import com.penkov.vikstv.web.Listener.ListenerChannelProgram;
+import com.penkov.vikstv.web.Scraper.ScraperChannelProgram;
+import com.penkov.vikstv.web.base.ScraperPriority;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the programs of all the channels in the background, into the {@code ProgramIndex}.
+ * <p>
+ * The channels are loaded by their order, with a limit on the concurrent loads,
+ * and a minimal interval between loads from the same host.
+ * Channels already indexed are skipped. The loads are of {@code PREFETCH} priority,
+ * so they never delay what the user waits for - and a channel opened while its programs
+ * are loaded shares the load of its page.
+ */
+public final class ProgramPrefetcher
+{
+    // TAG to use with logcat.
+    public static final String TAG = ProgramPrefetcher.class.getSimpleName();
+
+    // Default limits.
+    public static final int DEFAULT_MAX_CONCURRENT = 2;
+    public static final long DEFAULT_HOST_INTERVAL_MS = 250;
+
+    // The shared instance.
+    private static volatile ProgramPrefetcher sInstance = null;
+
+    // Posts the loads delayed by the host interval.
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Lock over the prefetcher state.
+    private final Object mLock = new Object();
+
+    // Channels waiting to be loaded, by their order.
+    private final ArrayDeque<ChannelInfo> mPending = new ArrayDeque<>();
+
+    // Channels being loaded (or waiting for their host), by their page reference.
+    private final Set<String> mLoading = new HashSet<>();
+
+    // Channels waiting for their host, their loads are posted to the handler.
+    private final Set<String> mDelayed = new HashSet<>();
+
+    // The earliest time the next load of each host may start, in uptime milliseconds.
+    private final Map<String, Long> mHostNextStart = new HashMap<>();
+
+    // The limits.
+    private int mMaxConcurrent = DEFAULT_MAX_CONCURRENT;
+    private long mHostIntervalMs = DEFAULT_HOST_INTERVAL_MS;
+
+
+    private ProgramPrefetcher() { }
+
+
+    /**
+     * Get the shared prefetcher.
+     *
+     * @return the prefetcher.
+     */
+    public static @NonNull ProgramPrefetcher getInstance()
+    {
+        if (sInstance == null) {
+            synchronized (ProgramPrefetcher.class) {
+                if (sInstance == null)
+                    sInstance = new ProgramPrefetcher();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Set the maximum number of concurrent loads.
+     *
+     * @param maxConcurrent the loads limit, at least 1.
+     */
+    public void setMaxConcurrent(int maxConcurrent)
+    {
+        synchronized (this.mLock) {
+            this.mMaxConcurrent = Math.max(1, maxConcurrent);
+        }
+
+        startNext();
+    }
+
+
+    /**
+     * Set the minimal interval between the start of loads from the same host.
+     *
+     * @param intervalMs the interval in milliseconds, 0 for no limit.
+     */
+    public void setHostInterval(long intervalMs)
+    {
+        synchronized (this.mLock) {
+            this.mHostIntervalMs = Math.max(0, intervalMs);
+        }
+    }
+
+
+    /**
+     * Load the programs of the channels, replacing the channels not loaded yet.
+     *
+     * @param channels the channels, by the order to load them.
+     */
+    public void prefetch(@NonNull List<ChannelInfo> channels)
+    {
+        synchronized (this.mLock)
+        {
+            this.mPending.clear();
+            this.mPending.addAll(channels);
+        }
+
+        startNext();
+    }
+
+
+    /**
+     * Stop loading the channels not loaded yet, the running loads complete.
+     * Loads waiting for their host are dropped.
+     */
+    public void cancel()
+    {
+        synchronized (this.mLock)
+        {
+            this.mPending.clear();
+
+            this.mHandler.removeCallbacksAndMessages(null);
+            this.mLoading.removeAll(this.mDelayed);
+            this.mDelayed.clear();
+        }
+    }
+
+
+    /**
+     * Start loading the next channels, up to the concurrency limit.
+     */
+    private void startNext()
+    {
+        List<ScraperChannelProgram> ready = new ArrayList<>();
+
+        synchronized (this.mLock)
+        {
+            final long now = SystemClock.uptimeMillis();
+
+            while (this.mLoading.size() < this.mMaxConcurrent && !this.mPending.isEmpty())
+            {
+                ChannelInfo channel = this.mPending.poll();
+                String reference = channel.getChannelReference();
+
+                // Already loaded or loading.
+                if (this.mLoading.contains(reference) || ProgramIndex.getInstance().contains(reference))
+                    continue;
+
+                ScraperChannelProgram scraper = createScraper(reference);
+                this.mLoading.add(reference);
+
+                // Keep the interval from the previous load of the host.
+                String host = hostOf(reference);
+                Long hostNextStart = this.mHostNextStart.get(host);
+                long startTime = hostNextStart != null ? Math.max(now, hostNextStart) : now;
+                this.mHostNextStart.put(host, startTime + this.mHostIntervalMs);
+
+                if (startTime <= now) {
+                    ready.add(scraper);
+                }
+                else {
+                    this.mDelayed.add(reference);
+                    this.mHandler.postAtTime(() -> startDelayed(reference, scraper), startTime);
+                }
+            }
+        }
+
+        for (ScraperChannelProgram scraper : ready)
+            scraper.load();
+    }
+
+
+    /**
+     * Start a load that waited for its host, unless it was cancelled meanwhile.
+     *
+     * @param reference the channel page reference.
+     * @param scraper   the scraper of the channel programs.
+     */
+    private void startDelayed(@NonNull String reference, @NonNull ScraperChannelProgram scraper)
+    {
+        synchronized (this.mLock)
+        {
+            if (!this.mDelayed.remove(reference))
+                return;
+        }
+
+        scraper.load();
+    }
+
+
+    /**
+     * Create the scraper of a channel programs, indexing its result.
+     *
+     * @param reference the channel page reference.
+     * @return the scraper, not loaded yet.
+     */
+    private @NonNull ScraperChannelProgram createScraper(@NonNull String reference)
+    {
+        ScraperChannelProgram scraper = new ScraperChannelProgram(reference, new ListenerChannelProgram()
+        {
+            @Override
+            public void onResult(@NonNull ProgramSchedule schedule)
+            {
+                ProgramIndex.getInstance().put(reference, schedule);
+                onLoadEnded(reference);
+            }
+
+            @Override
+            public void onError(@NonNull Exception exception)
+            {
+                Log.v(TAG, "Couldn't prefetch programs of: " + reference, exception);
+                onLoadEnded(reference);
+            }
+        });
+
+        // The user doesn't wait for it.
+        scraper.setPriority(ScraperPriority.PREFETCH);
+        return scraper;
+    }
+
+
+    /**
+     * Called when the load of a channel ended, successfully or not.
+     *
+     * @param reference the channel page reference.
+     */
+    private void onLoadEnded(@NonNull String reference)
+    {
+        synchronized (this.mLock) {
+            this.mLoading.remove(reference);
+        }
+
+        startNext();
+    }
+
+
+    /**
+     * Get the host of a reference, for the rate limit.
+     *
+     * @param reference the page reference.
+     * @return the host, or empty string if unknown.
+     */
+    private static @NonNull String hostOf(@NonNull String reference)
+    {
+        String host = Uri.parse(reference).getHost();
+        return host != null ? host : "";
+    }
+}
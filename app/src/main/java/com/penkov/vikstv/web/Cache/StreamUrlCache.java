@@ -0,0 +1,344 @@
+package com.penkov.vikstv.web.Cache;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.penkov.vikstv.web.Listener.ListenerChannelVideoURL;
+import com.penkov.vikstv.web.Scraper.ScraperChannelVideoURL;
+import com.penkov.vikstv.web.base.ScraperPriority;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process wide cache of the resolved video URLs, by the channel page reference.
+ * <p>
+ * The video URL holds access tokens of limited lifetime, so the URLs are kept for a TTL.
+ * The TTL starts at a configurable value, and is learned from playback failures -
+ * a URL that failed long after it was resolved has probably expired,
+ * and the TTL is shortened below its age.
+ * <p>
+ * The URLs can be resolved ahead, when the user is about to open a channel
+ * (a focused tile), so the channel starts without loading its page first.
+ */
+public final class StreamUrlCache
+{
+    // TAG to use with logcat.
+    public static final String TAG = StreamUrlCache.class.getSimpleName();
+
+    // Default lifetime of a URL.
+    public static final long DEFAULT_TTL_MS = 5 * 60_000L;
+
+    // Shortest lifetime of a URL, failures of younger URLs are not taken as expiration.
+    private static final long MIN_TTL_MS = 30_000L;
+
+    // Part of the age of an expired URL, the TTL is set to.
+    private static final long LEARNED_TTL_PERCENT = 75;
+
+    // Time a tile is focused before its URL is resolved, so scrolling doesn't load every tile.
+    private static final long RESOLVE_DELAY_MS = 300;
+
+    // The shared instance.
+    private static volatile StreamUrlCache sInstance = null;
+
+    // Posts the delayed resolutions.
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // The resolved URLs, by the channel page reference.
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    // Channels being resolved, by their page reference.
+    private final Set<String> mResolving = new HashSet<>();
+
+    // Listeners to resolved URLs.
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    // The lifetime of the URLs.
+    private long mTtlMs = DEFAULT_TTL_MS;
+
+    // The resolution waiting for its delay.
+    private Runnable mPendingResolve = null;
+
+
+    /**
+     * Resolved URL, with its resolution time.
+     */
+    private static final class Entry
+    {
+        private final String mUrl;
+        private final long mResolveTime;
+
+        private Entry(@NonNull String url, long resolveTime)
+        {
+            this.mUrl = url;
+            this.mResolveTime = resolveTime;
+        }
+    }
+
+
+    /**
+     * Listener to URLs stored in the cache.
+     */
+    public interface Listener
+    {
+        /**
+         * Called when a URL is stored, on the thread that stored it.
+         *
+         * @param channelReference the channel page reference.
+         * @param url              the video URL.
+         */
+        void onStreamUrlResolved(@NonNull String channelReference, @NonNull String url);
+    }
+
+
+    private StreamUrlCache() { }
+
+
+    /**
+     * Get the shared cache.
+     *
+     * @return the cache.
+     */
+    public static @NonNull StreamUrlCache getInstance()
+    {
+        if (sInstance == null) {
+            synchronized (StreamUrlCache.class) {
+                if (sInstance == null)
+                    sInstance = new StreamUrlCache();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Set the lifetime of the URLs, replacing the learned one.
+     *
+     * @param ttlMs the lifetime in milliseconds.
+     */
+    public void setTtl(long ttlMs)
+    {
+        synchronized (this.mEntries) {
+            this.mTtlMs = Math.max(MIN_TTL_MS, ttlMs);
+        }
+    }
+
+
+    /**
+     * Get the lifetime of the URLs, as set or learned.
+     *
+     * @return the lifetime in milliseconds.
+     */
+    public long getTtl()
+    {
+        synchronized (this.mEntries) {
+            return this.mTtlMs;
+        }
+    }
+
+
+    /**
+     * Store a URL resolved now.
+     *
+     * @param channelReference the channel page reference.
+     * @param url              the video URL.
+     */
+    public void put(@NonNull String channelReference, @NonNull String url)
+    {
+        synchronized (this.mEntries) {
+            this.mEntries.put(channelReference, new Entry(url, SystemClock.elapsedRealtime()));
+        }
+
+        for (Listener listener : this.mListeners)
+            listener.onStreamUrlResolved(channelReference, url);
+    }
+
+
+    /**
+     * Add listener to stored URLs.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(@NonNull Listener listener) {
+        this.mListeners.add(listener);
+    }
+
+
+    /**
+     * Remove listener to stored URLs.
+     *
+     * @param listener the listener.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        this.mListeners.remove(listener);
+    }
+
+
+    /**
+     * Get the URL of a channel.
+     *
+     * @param channelReference the channel page reference.
+     * @return the video URL, or null if not resolved or expired.
+     */
+    public @Nullable String get(@NonNull String channelReference)
+    {
+        synchronized (this.mEntries)
+        {
+            Entry entry = this.mEntries.get(channelReference);
+            if (entry == null)
+                return null;
+
+            if (SystemClock.elapsedRealtime() - entry.mResolveTime >= this.mTtlMs) {
+                this.mEntries.remove(channelReference);
+                return null;
+            }
+
+            return entry.mUrl;
+        }
+    }
+
+
+    /**
+     * Drop the URL of a channel, after its playback failed.
+     * If the URL failed at an age the TTL allows, the TTL is shortened.
+     *
+     * @param channelReference the channel page reference.
+     * @param url              the URL that failed, other URLs of the channel are kept.
+     */
+    public void onPlaybackFailed(@NonNull String channelReference, @NonNull String url)
+    {
+        synchronized (this.mEntries)
+        {
+            Entry entry = this.mEntries.get(channelReference);
+            if (entry == null || !entry.mUrl.equals(url))
+                return;
+
+            this.mEntries.remove(channelReference);
+
+            // Young URLs fail for other reasons.
+            long age = SystemClock.elapsedRealtime() - entry.mResolveTime;
+            if (age < MIN_TTL_MS)
+                return;
+
+            long learnedTtl = Math.max(MIN_TTL_MS, age * LEARNED_TTL_PERCENT / 100);
+
+            if (learnedTtl < this.mTtlMs) {
+                Log.i(TAG, "URL failed after " + age + " ms, TTL set to " + learnedTtl + " ms.");
+                this.mTtlMs = learnedTtl;
+            }
+        }
+    }
+
+
+    /**
+     * Drop all the URLs.
+     */
+    public void clear()
+    {
+        synchronized (this.mEntries) {
+            this.mEntries.clear();
+        }
+    }
+
+
+    /**
+     * Resolve the URL of a channel the user is about to open, if not cached.
+     * The resolution starts after a short delay, and replaces the previous one not started yet.
+     * Must be called from the UI thread.
+     *
+     * @param context          the context of the application.
+     * @param channelReference the channel page reference.
+     */
+    public void preResolve(@NonNull Context context, @NonNull String channelReference)
+    {
+        final Context appContext = context.getApplicationContext();
+
+        cancelPreResolve();
+
+        this.mPendingResolve = () -> {
+            this.mPendingResolve = null;
+            resolve(appContext, channelReference, ScraperPriority.VISIBLE);
+        };
+
+        this.mHandler.postDelayed(this.mPendingResolve, RESOLVE_DELAY_MS);
+    }
+
+
+    /**
+     * Cancel the resolution not started yet, the running ones complete.
+     */
+    public void cancelPreResolve()
+    {
+        if (this.mPendingResolve != null) {
+            this.mHandler.removeCallbacks(this.mPendingResolve);
+            this.mPendingResolve = null;
+        }
+    }
+
+
+    /**
+     * Load the URL of a channel into the cache, if not cached or loading.
+     *
+     * @param context          the context of the application.
+     * @param channelReference the channel page reference.
+     * @param priority         the load priority, by how soon the channel may be opened.
+     */
+    public void resolve(@NonNull Context context,
+                        @NonNull String channelReference,
+                        @NonNull ScraperPriority priority)
+    {
+        if (get(channelReference) != null)
+            return;
+
+        synchronized (this.mResolving) {
+            if (!this.mResolving.add(channelReference))
+                return;
+        }
+
+        ScraperChannelVideoURL scraper = new ScraperChannelVideoURL(context, channelReference,
+                new ListenerChannelVideoURL()
+                {
+                    @Override
+                    public void onResult(@NonNull String url)
+                    {
+                        put(channelReference, url);
+                        onResolveEnded(channelReference);
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception exception)
+                    {
+                        Log.v(TAG, "Couldn't resolve video URL of: " + channelReference, exception);
+                        onResolveEnded(channelReference);
+                    }
+                });
+
+        // The user may open the channel, but doesn't wait for it yet.
+        scraper.setPriority(priority);
+        scraper.load();
+    }
+
+
+    /**
+     * Called when a resolution ended, successfully or not.
+     *
+     * @param channelReference the channel page reference.
+     */
+    private void onResolveEnded(@NonNull String channelReference)
+    {
+        synchronized (this.mResolving) {
+            this.mResolving.remove(channelReference);
+        }
+    }
+}
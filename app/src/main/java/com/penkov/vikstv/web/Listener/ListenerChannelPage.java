@@ -0,0 +1,11 @@
+package com.penkov.vikstv.web.Listener;
+
+import com.penkov.vikstv.web.base.GeneralListener;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Channel's page request listener.
+ */
+public abstract class ListenerChannelPage
+        implements GeneralListener<Document> { }
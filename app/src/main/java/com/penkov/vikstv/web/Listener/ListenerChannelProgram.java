@@ -1,10 +1,10 @@
 package com.penkov.vikstv.web.Listener;
 
-import com.penkov.vikstv.core.ChannelProgram;
+import com.penkov.vikstv.core.ProgramSchedule;
 import com.penkov.vikstv.web.base.GeneralListener;
 
 /**
  * Channel's program request listener.
  */
 public abstract class ListenerChannelProgram
-        implements GeneralListener<ChannelProgram[]> { }
+        implements GeneralListener<ProgramSchedule> { }
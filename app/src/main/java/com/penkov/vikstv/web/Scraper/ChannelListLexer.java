@@ -0,0 +1,1012 @@
+package com.penkov.vikstv.web.Scraper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Single pass tokenizer of the channel list page, without building a document.
+ * <p>
+ * The page is scanned tag by tag, and only the channel elements (found by their class)
+ * are followed - their text, first link and first icon are taken the same way
+ * the document parser takes them. Markup the lexer can't follow exactly
+ * (block tags inside a channel, unknown entities, unclosed channels)
+ * is reported as mismatch, and the caller falls back to the document parser.
+ * Unclosed formatting tags are reported too - the document parser reopens them
+ * in the following elements, where they could hide the channel link.
+ * <p>
+ * The page is read from its bytes, without decoding it whole - the markup is ASCII
+ * in every ASCII compatible charset, and only the channel texts and the used attribute
+ * values are decoded. Pages of other charsets are reported as mismatch.
+ */
+final class ChannelListLexer
+{
+    // TAG to use with logcat.
+    public static final String TAG = ChannelListLexer.class.getSimpleName();
+
+    // Tokens of the page.
+    private static final int TOKEN_EOF = 0;
+    private static final int TOKEN_TEXT = 1;
+    private static final int TOKEN_START_TAG = 2;
+    private static final int TOKEN_END_TAG = 3;
+
+    // Markup tokens.
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+    private static final String END_TAG_START = "</";
+
+    // Tags and attributes of the channel.
+    private static final String CLASS_ATTR = "class";
+    private static final String LINK_TAG = "a";
+    private static final String LINK_ATTR = "href";
+    private static final String ICON_TAG = "img";
+    private static final String ICON_ATTR = "src";
+    private static final String BREAK_TAG = "br";
+
+    // Tags allowed inside a channel, they don't break its text.
+    private static final Set<String> INLINE_TAGS = new HashSet<>(Arrays.asList(
+            "a", "img", "span", "b", "i", "u", "strong", "em", "font", "small", "br"));
+
+    // Tags without content or end tag.
+    private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input",
+            "link", "meta", "param", "source", "track", "wbr"));
+
+    // Formatting tags, the document parser reopens them until they are closed.
+    private static final Set<String> FORMATTING_TAGS = new HashSet<>(Arrays.asList(
+            "a", "b", "big", "code", "em", "font", "i", "nobr", "s", "small", "strike", "strong", "tt", "u"));
+
+    // Tags with raw text content, their content has no tags.
+    private static final Set<String> RAW_TEXT_TAGS = new HashSet<>(Arrays.asList(
+            "script", "style", "textarea", "title"));
+
+    // Markup characters, encoded the same in every ASCII compatible charset.
+    private static final String ASCII_SAMPLE = "<>/=\"'&;#!?- \t\r\nazAZ09";
+
+    // The longest entity name the lexer looks for.
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    // Character entities the lexer knows.
+    private static final Map<String, Character> ENTITIES = new HashMap<>();
+
+    static {
+        ENTITIES.put("amp", '&');
+        ENTITIES.put("lt", '<');
+        ENTITIES.put("gt", '>');
+        ENTITIES.put("quot", '"');
+        ENTITIES.put("apos", '\'');
+    }
+
+    // The page bytes, and their charset.
+    private final byte[] mPage;
+    private final Charset mCharset;
+    private final int mLength;
+    private int mPosition = 0;
+
+    // The class of the channel elements.
+    private final String mChannelClass;
+
+    // The last token read, and the attributes of the channel used from its tag.
+    private int mTextStart;
+    private int mTextEnd;
+    private String mTagName;
+    private boolean mSelfClosing;
+    private String mClassValue;
+    private String mLinkValue;
+    private String mIconValue;
+
+    // The formatting tags open, by their order.
+    private final List<String> mFormatting = new ArrayList<>();
+
+    // Markup the lexer can't follow was found.
+    private boolean mMismatch = false;
+
+
+    /**
+     * Channel element of the page, as the document parser would read it.
+     */
+    static final class Channel
+    {
+        // The channel text.
+        final @NonNull String mName;
+
+        // The link of the first link tag, or null if it has none.
+        final @Nullable String mLink;
+
+        // The source of the first image tag, or null if it has none.
+        final @Nullable String mIcon;
+
+        Channel(@NonNull String name, @Nullable String link, @Nullable String icon)
+        {
+            this.mName = name;
+            this.mLink = link;
+            this.mIcon = icon;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object other)
+        {
+            if (this == other)
+                return true;
+
+            if (!(other instanceof Channel))
+                return false;
+
+            Channel channel = (Channel) other;
+
+            return this.mName.equals(channel.mName)
+                    && Objects.equals(this.mLink, channel.mLink)
+                    && Objects.equals(this.mIcon, channel.mIcon);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.mName, this.mLink, this.mIcon);
+        }
+
+        @Override
+        public @NonNull String toString() {
+            return "Channel{" + this.mName + ", " + this.mLink + ", " + this.mIcon + "}";
+        }
+    }
+
+
+    /**
+     * Channel element read so far.
+     */
+    private static final class Capture
+    {
+        private final String mTagName;
+        private final StringBuilder mText = new StringBuilder();
+        private int mDepth = 1;
+        private boolean mHasLink = false;
+        private String mLink = null;
+        private boolean mHasIcon = false;
+        private String mIcon = null;
+
+        private Capture(@NonNull String tagName) {
+            this.mTagName = tagName;
+        }
+    }
+
+
+    /**
+     * Create new lexer over a page.
+     *
+     * @param page         the page bytes.
+     * @param charset      the page charset.
+     * @param channelClass the class of the channel elements.
+     */
+    ChannelListLexer(@NonNull byte[] page, @NonNull Charset charset, @NonNull String channelClass)
+    {
+        this.mPage = page;
+        this.mCharset = charset;
+        this.mLength = page.length;
+        this.mChannelClass = channelClass;
+    }
+
+
+    /**
+     * Read the channel elements of the page.
+     *
+     * @return the channels by their order, or null if the markup can't be followed
+     *         or no channel was found.
+     */
+    @Nullable List<Channel> parse()
+    {
+        if (!isAsciiCompatible(this.mCharset))
+            return null;
+
+        List<Channel> channels = new ArrayList<>();
+        Capture capture = null;
+        int token;
+
+        while ((token = next()) != TOKEN_EOF && !this.mMismatch)
+        {
+            // A formatting tag left open before the channel would be reopened in it.
+            boolean formattingOpen = !this.mFormatting.isEmpty();
+            trackFormatting(token);
+
+            if (this.mMismatch)
+                return null;
+
+            // Outside a channel, only a channel start matters.
+            if (capture == null)
+            {
+                if (token == TOKEN_START_TAG && isChannel())
+                {
+                    if (formattingOpen || isSelfClosingElement())
+                        return null;
+
+                    capture = new Capture(this.mTagName);
+                    captureTag(capture);
+
+                    if (VOID_TAGS.contains(this.mTagName)) {
+                        channels.add(finish(capture));
+                        capture = null;
+                    }
+                }
+
+                continue;
+            }
+
+            switch (token)
+            {
+                case TOKEN_TEXT:
+                    appendText(capture.mText, this.mTextStart, this.mTextEnd);
+                    break;
+
+                case TOKEN_START_TAG:
+                    // Channel inside channel, or tag that breaks the text.
+                    if (isChannel() || !INLINE_TAGS.contains(this.mTagName) || isSelfClosingElement())
+                        return null;
+
+                    captureTag(capture);
+
+                    if (this.mTagName.equals(capture.mTagName) && !VOID_TAGS.contains(this.mTagName))
+                        capture.mDepth++;
+                    break;
+
+                case TOKEN_END_TAG:
+                    if (this.mTagName.equals(capture.mTagName)) {
+                        if (--capture.mDepth == 0) {
+                            channels.add(finish(capture));
+                            capture = null;
+                        }
+                    }
+                    else if (!INLINE_TAGS.contains(this.mTagName)) {
+                        return null;
+                    }
+                    break;
+            }
+        }
+
+        // Page ended inside a channel.
+        if (this.mMismatch || capture != null || channels.isEmpty())
+            return null;
+
+        return channels;
+    }
+
+
+    /**
+     * Follow the formatting tags opened and closed by a token.
+     * Tags the document parser would restructure are reported as mismatch -
+     * link inside link, self closing tags, and end tags out of their order.
+     *
+     * @param token the token type.
+     */
+    private void trackFormatting(int token)
+    {
+        if (token == TOKEN_START_TAG && FORMATTING_TAGS.contains(this.mTagName))
+        {
+            if (this.mSelfClosing || LINK_TAG.equals(this.mTagName) && this.mFormatting.contains(LINK_TAG))
+                this.mMismatch = true;
+
+            this.mFormatting.add(this.mTagName);
+        }
+        else if (token == TOKEN_END_TAG && FORMATTING_TAGS.contains(this.mTagName))
+        {
+            int last = this.mFormatting.size() - 1;
+
+            if (last >= 0 && this.mTagName.equals(this.mFormatting.get(last)))
+                this.mFormatting.remove(last);
+            else
+                this.mMismatch = true;
+        }
+    }
+
+
+    /**
+     * Read the next token of the page.
+     * Comments, declarations and raw text content are skipped.
+     *
+     * @return the token type.
+     */
+    private int next()
+    {
+        while (this.mPosition < this.mLength)
+        {
+            int start = this.mPosition;
+
+            if (charAt(start) != '<' || start + 1 == this.mLength) {
+                readText(start + 1);
+                return TOKEN_TEXT;
+            }
+
+            char c = charAt(start + 1);
+
+            // Comment.
+            if (startsWith(COMMENT_START, start)) {
+                int end = indexOf(COMMENT_END, start + COMMENT_START.length());
+                this.mPosition = end < 0 ? this.mLength : end + COMMENT_END.length();
+                continue;
+            }
+
+            // Declaration or processing instruction.
+            if (c == '!' || c == '?') {
+                int end = indexOf('>', start);
+                this.mPosition = end < 0 ? this.mLength : end + 1;
+                continue;
+            }
+
+            if (c == '/' && start + 2 < this.mLength && isLetter(charAt(start + 2))) {
+                this.mPosition = start + 2;
+                this.mTagName = readName();
+                readAttributes();
+                return TOKEN_END_TAG;
+            }
+
+            // End tag without name is dropped, as a comment.
+            if (c == '/' && start + 2 < this.mLength) {
+                this.mPosition = start + 2;
+                skipTo('>');
+                continue;
+            }
+
+            if (isLetter(c)) {
+                this.mPosition = start + 1;
+                this.mTagName = readName();
+
+                this.mSelfClosing = readAttributes();
+
+                if (RAW_TEXT_TAGS.contains(this.mTagName)) {
+                    // Document parsers differ on self closing raw text tags.
+                    if (this.mSelfClosing)
+                        this.mMismatch = true;
+                    else
+                        skipRawText();
+                }
+
+                return TOKEN_START_TAG;
+            }
+
+            // A bracket that doesn't start a tag is text.
+            readText(start + 1);
+            return TOKEN_TEXT;
+        }
+
+        return TOKEN_EOF;
+    }
+
+
+    /**
+     * Read text up to the next tag.
+     *
+     * @param from position to look for the next tag from.
+     */
+    private void readText(int from)
+    {
+        int end = indexOf('<', from);
+
+        this.mTextStart = this.mPosition;
+        this.mTextEnd = end < 0 ? this.mLength : end;
+        this.mPosition = this.mTextEnd;
+    }
+
+
+    /**
+     * Read a tag name, in lower case.
+     * Unlike attribute names, the equals sign is part of the name,
+     * and a bracket ends the tag as the document parser ends it.
+     *
+     * @return the name.
+     */
+    private @NonNull String readName()
+    {
+        int start = this.mPosition;
+
+        while (this.mPosition < this.mLength)
+        {
+            char c = charAt(this.mPosition);
+
+            if (Character.isWhitespace(c) || c == '>' || c == '/' || c == '<')
+                break;
+
+            this.mPosition++;
+        }
+
+        return decode(start, this.mPosition).toLowerCase(Locale.ROOT);
+    }
+
+
+    /**
+     * Skip a tag or attribute name.
+     */
+    private void skipName()
+    {
+        while (this.mPosition < this.mLength)
+        {
+            char c = charAt(this.mPosition);
+
+            if (Character.isWhitespace(c) || c == '>' || c == '/' || c == '=')
+                break;
+
+            this.mPosition++;
+        }
+    }
+
+
+    /**
+     * Read the attributes of a tag, up to its closing bracket (inclusive).
+     * Only the attributes the channel uses are kept, the first value of a repeated one.
+     *
+     * @return true if the tag is self closing, false otherwise.
+     */
+    private boolean readAttributes()
+    {
+        this.mClassValue = null;
+        this.mLinkValue = null;
+        this.mIconValue = null;
+        boolean selfClosing = false;
+        boolean afterName = false;
+
+        while (this.mPosition < this.mLength)
+        {
+            char c = charAt(this.mPosition);
+
+            if (c == '>') {
+                this.mPosition++;
+                return selfClosing;
+            }
+
+            // The document parser ends the tag before a bracket, unless it follows
+            // a name without value - then the bracket starts the next name.
+            if (c == '<' && !afterName)
+                return false;
+
+            if (Character.isWhitespace(c) || c == '/') {
+                selfClosing = c == '/';
+                afterName = false;
+                this.mPosition++;
+                continue;
+            }
+
+            selfClosing = false;
+            int nameStart = this.mPosition;
+
+            // An equals sign can't end an empty name, it is part of it.
+            if (c == '=')
+                this.mPosition++;
+
+            skipName();
+            int nameEnd = this.mPosition;
+
+            skipWhitespace();
+
+            // Attribute without value is empty.
+            boolean hasValue = this.mPosition < this.mLength
+                    && charAt(this.mPosition) == '=';
+
+            if (hasValue) {
+                this.mPosition++;
+                skipWhitespace();
+                skipValue();
+            }
+            else {
+                this.mTextStart = this.mTextEnd = this.mPosition;
+            }
+
+            afterName = !hasValue;
+
+            if (this.mClassValue == null && isName(nameStart, nameEnd, CLASS_ATTR))
+                this.mClassValue = readValue();
+            else if (this.mLinkValue == null && isName(nameStart, nameEnd, LINK_ATTR))
+                this.mLinkValue = readValue();
+            else if (this.mIconValue == null && isName(nameStart, nameEnd, ICON_ATTR))
+                this.mIconValue = readValue();
+        }
+
+        // Page ended inside a tag.
+        this.mMismatch = true;
+        return false;
+    }
+
+
+    /**
+     * Skip an attribute value, quoted or not.
+     * The value bounds are kept as the last text.
+     */
+    private void skipValue()
+    {
+        if (this.mPosition == this.mLength) {
+            this.mTextStart = this.mTextEnd = this.mPosition;
+            return;
+        }
+
+        char quote = charAt(this.mPosition);
+
+        if (quote == '"' || quote == '\'') {
+            int end = indexOf(quote, this.mPosition + 1);
+
+            this.mTextStart = this.mPosition + 1;
+            this.mTextEnd = end < 0 ? this.mLength : end;
+            this.mPosition = Math.min(this.mLength, this.mTextEnd + 1);
+            return;
+        }
+
+        this.mTextStart = this.mPosition;
+
+        while (this.mPosition < this.mLength)
+        {
+            char c = charAt(this.mPosition);
+            if (Character.isWhitespace(c) || c == '>')
+                break;
+            this.mPosition++;
+        }
+
+        this.mTextEnd = this.mPosition;
+    }
+
+
+    /**
+     * Get the last skipped attribute value, with its entities decoded.
+     *
+     * @return the value.
+     */
+    private @NonNull String readValue()
+    {
+        final String raw = decode(this.mTextStart, this.mTextEnd);
+
+        // Most values have no entities.
+        if (raw.indexOf('&') < 0)
+            return raw;
+
+        StringBuilder value = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++)
+            i = appendChar(value, raw, i, false);
+
+        return value.toString();
+    }
+
+
+    /**
+     * Check if the page text is the attribute name (case insensitive).
+     *
+     * @param start the text start.
+     * @param end   the text end.
+     * @param name  the attribute name, in lower case.
+     * @return true if the text is the name, false otherwise.
+     */
+    private boolean isName(int start, int end, @NonNull String name) {
+        return end - start == name.length() && regionMatchesIgnoreCase(start, name);
+    }
+
+
+    /**
+     * Skip the content of a raw text tag, up to its end tag (exclusive).
+     */
+    private void skipRawText()
+    {
+        int position = this.mPosition;
+
+        while ((position = indexOf(END_TAG_START, position)) >= 0)
+        {
+            int nameEnd = position + END_TAG_START.length() + this.mTagName.length();
+
+            // The end tag name must end there, as in the document parser.
+            if (regionMatchesIgnoreCase(position + END_TAG_START.length(), this.mTagName)
+                    && nameEnd < this.mLength && isTagNameEnd(charAt(nameEnd)))
+                break;
+
+            position += END_TAG_START.length();
+        }
+
+        this.mPosition = position < 0 ? this.mLength : position;
+    }
+
+
+    /**
+     * Check if the last start tag is self closing, though its element has content.
+     * The document parsers differ on these, some close the element and some don't.
+     *
+     * @return true if self closing element with content, false otherwise.
+     */
+    private boolean isSelfClosingElement() {
+        return this.mSelfClosing && !VOID_TAGS.contains(this.mTagName);
+    }
+
+
+    /**
+     * Check if a character ends an end tag name in raw text.
+     *
+     * @param c the character.
+     * @return true if the name ends before it, false otherwise.
+     */
+    private static boolean isTagNameEnd(char c) {
+        return isWhitespace(c) || c == '/' || c == '>';
+    }
+
+
+    /**
+     * Skip the text up to the character (inclusive).
+     *
+     * @param c the character to skip to.
+     */
+    private void skipTo(char c)
+    {
+        int end = indexOf(c, this.mPosition);
+        this.mPosition = end < 0 ? this.mLength : end + 1;
+    }
+
+
+    /**
+     * Skip whitespaces.
+     */
+    private void skipWhitespace()
+    {
+        while (this.mPosition < this.mLength
+                && Character.isWhitespace(charAt(this.mPosition)))
+            this.mPosition++;
+    }
+
+
+    /**
+     * Check if the last start tag is a channel element.
+     *
+     * @return true if the tag has the channel class, false otherwise.
+     */
+    private boolean isChannel()
+    {
+        final String classes = this.mClassValue;
+        final int length = this.mChannelClass.length();
+
+        if (classes == null)
+            return false;
+
+        // Look for the class between whitespaces.
+        for (int start = 0; start + length <= classes.length(); start++)
+        {
+            if ((start == 0 || isWhitespace(classes.charAt(start - 1)))
+                    && classes.regionMatches(true, start, this.mChannelClass, 0, length)
+                    && (start + length == classes.length() || isWhitespace(classes.charAt(start + length))))
+                return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Take the link, icon and line break of the last start tag into the channel.
+     *
+     * @param capture the channel read so far.
+     */
+    private void captureTag(@NonNull Capture capture)
+    {
+        switch (this.mTagName)
+        {
+            case LINK_TAG:
+                if (!capture.mHasLink) {
+                    capture.mHasLink = true;
+                    capture.mLink = this.mLinkValue;
+                }
+                break;
+
+            case ICON_TAG:
+                if (!capture.mHasIcon) {
+                    capture.mHasIcon = true;
+                    capture.mIcon = this.mIconValue;
+                }
+                break;
+
+            case BREAK_TAG:
+                appendSpace(capture.mText);
+                break;
+        }
+    }
+
+
+    /**
+     * Complete a channel, its text is trimmed.
+     *
+     * @param capture the channel read.
+     * @return the channel.
+     */
+    private static @NonNull Channel finish(@NonNull Capture capture)
+    {
+        StringBuilder text = capture.mText;
+
+        if (text.length() > 0 && text.charAt(text.length() - 1) == ' ')
+            text.setLength(text.length() - 1);
+
+        return new Channel(text.toString(), capture.mLink, capture.mIcon);
+    }
+
+
+    /**
+     * Append text with its whitespaces collapsed, and its entities decoded.
+     *
+     * @param text  the text to append to.
+     * @param start the text start in the page.
+     * @param end   the text end in the page.
+     */
+    private void appendText(@NonNull StringBuilder text, int start, int end)
+    {
+        final String raw = decode(start, end);
+
+        for (int i = 0; i < raw.length(); i++)
+        {
+            if (isWhitespace(raw.charAt(i)))
+                appendSpace(text);
+            else
+                i = appendChar(text, raw, i, true);
+        }
+    }
+
+
+    /**
+     * Append a single space, unless the text is empty or already ends with one.
+     *
+     * @param text the text to append to.
+     */
+    private static void appendSpace(@NonNull StringBuilder text)
+    {
+        if (text.length() > 0 && text.charAt(text.length() - 1) != ' ')
+            text.append(' ');
+    }
+
+
+    /**
+     * Append a decoded character, or the entity starting at it.
+     * Unknown entities are reported as mismatch, and so are references
+     * without semicolon - the document parser decodes some of them.
+     *
+     * @param text     the text to append to.
+     * @param raw      the decoded text, with its entities.
+     * @param position the character position.
+     * @param collapse whether whitespace entities are collapsed, as the text whitespaces.
+     * @return the position of the last character used.
+     */
+    private int appendChar(@NonNull StringBuilder text, @NonNull String raw, int position, boolean collapse)
+    {
+        char c = raw.charAt(position);
+        int end = c == '&' ? entityEnd(raw, position) : -1;
+
+        // Not an entity, a plain ampersand is text as well.
+        if (end < 0)
+        {
+            if (c == '&' && position + 1 < raw.length() && isReferenceChar(raw.charAt(position + 1)))
+                this.mMismatch = true;
+
+            text.append(c);
+            return position;
+        }
+
+        String name = raw.substring(position + 1, end);
+        Character named = ENTITIES.get(name);
+
+        if (named != null) {
+            text.append(named.charValue());
+            return end;
+        }
+
+        // Numeric entity, decimal or hexadecimal.
+        if (name.length() > 1 && name.charAt(0) == '#')
+        {
+            try {
+                int codePoint = name.charAt(1) == 'x' || name.charAt(1) == 'X'
+                        ? Integer.parseInt(name.substring(2), 16)
+                        : Integer.parseInt(name.substring(1));
+
+                if (collapse && isWhitespace(codePoint)) {
+                    appendSpace(text);
+                    return end;
+                }
+
+                // Null, control and surrogate references are replaced by the document parser.
+                if (codePoint > 0 && Character.isValidCodePoint(codePoint)
+                        && (codePoint < 0x80 || codePoint > 0x9F)
+                        && (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE)) {
+                    text.appendCodePoint(codePoint);
+                    return end;
+                }
+            }
+            catch (NumberFormatException e) {
+                // Handled as unknown entity.
+            }
+        }
+
+        this.mMismatch = true;
+        return end;
+    }
+
+
+    /**
+     * Find the end of the entity starting at the position.
+     *
+     * @param raw      the decoded text.
+     * @param position the ampersand position.
+     * @return the position of the entity semicolon, or -1 if it is not an entity.
+     */
+    private static int entityEnd(@NonNull String raw, int position)
+    {
+        int limit = Math.min(raw.length(), position + MAX_ENTITY_LENGTH + 2);
+
+        for (int i = position + 1; i < limit; i++)
+        {
+            char c = raw.charAt(i);
+
+            if (c == ';')
+                return i > position + 1 ? i : -1;
+
+            if (!Character.isLetterOrDigit(c) && c != '#')
+                return -1;
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Check if a character may follow the ampersand of a character reference.
+     *
+     * @param c the character.
+     * @return true if ASCII letter, digit or number sign, false otherwise.
+     */
+    private static boolean isReferenceChar(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9') || c == '#';
+    }
+
+
+    /**
+     * Get a page byte as a character - the ASCII characters are the markup,
+     * other bytes are parts of text and never match it.
+     *
+     * @param position the byte position.
+     * @return the character.
+     */
+    private char charAt(int position) {
+        return (char) (this.mPage[position] & 0xFF);
+    }
+
+
+    /**
+     * Decode part of the page.
+     *
+     * @param start the part start.
+     * @param end   the part end.
+     * @return the decoded text.
+     */
+    private @NonNull String decode(int start, int end) {
+        return new String(this.mPage, start, end - start, this.mCharset);
+    }
+
+
+    /**
+     * Find an ASCII character in the page.
+     *
+     * @param c    the character.
+     * @param from the search start.
+     * @return the character position, or -1 if not found.
+     */
+    private int indexOf(char c, int from)
+    {
+        for (int i = from; i < this.mLength; i++)
+        {
+            if (this.mPage[i] == c)
+                return i;
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Find ASCII text in the page.
+     *
+     * @param text the text.
+     * @param from the search start.
+     * @return the text position, or -1 if not found.
+     */
+    private int indexOf(@NonNull String text, int from)
+    {
+        for (int i = from; i + text.length() <= this.mLength; i++)
+        {
+            if (startsWith(text, i))
+                return i;
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Check if ASCII text starts at a page position.
+     *
+     * @param text     the text.
+     * @param position the position.
+     * @return true if the text starts there, false otherwise.
+     */
+    private boolean startsWith(@NonNull String text, int position)
+    {
+        if (position + text.length() > this.mLength)
+            return false;
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (this.mPage[position + i] != text.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Check if lower case ASCII text starts at a page position, ignoring the page case.
+     *
+     * @param position the position.
+     * @param text     the text, in lower case.
+     * @return true if the text starts there, false otherwise.
+     */
+    private boolean regionMatchesIgnoreCase(int position, @NonNull String text)
+    {
+        if (position + text.length() > this.mLength)
+            return false;
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = charAt(position + i);
+            if (c >= 'A' && c <= 'Z')
+                c += 'a' - 'A';
+
+            if (c != text.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Check if the markup of a charset is the same as in ASCII, so its bytes can be lexed.
+     *
+     * @param charset the charset.
+     * @return true if ASCII compatible, false otherwise.
+     */
+    private static boolean isAsciiCompatible(@NonNull Charset charset)
+    {
+        try {
+            return Arrays.equals(ASCII_SAMPLE.getBytes(charset),
+                    ASCII_SAMPLE.getBytes(StandardCharsets.US_ASCII));
+        }
+        catch (UnsupportedOperationException e) {
+            // Decode only charset.
+            return false;
+        }
+    }
+
+
+    /**
+     * Check if a character is HTML whitespace.
+     *
+     * @param c the character.
+     * @return true if whitespace, false otherwise.
+     */
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+
+    /**
+     * Check if a character is ASCII letter, as tag names start with one.
+     *
+     * @param c the character.
+     * @return true if letter, false otherwise.
+     */
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,106 @@
+package com.penkov.vikstv.web.Scraper;
+
+import androidx.annotation.NonNull;
+
+import com.penkov.vikstv.web.WebParsingException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Deobfuscator of PlayerJS links, built once for a set of keys.
+ * https://playerjs.com/docs/en=encodingbase64
+ * <p>
+ * The link is decoded twice, each round drops the first two characters,
+ * removes the keys (encoded as {@code "F" + base64(key)}) and decodes the rest as base64.
+ * The keys are encoded once, and removed one after the other from the last to the first,
+ * so keys that overlap, or that form once another key is removed, give the same link
+ * the scrapers always got. The removal and the decoding are left to {@code String.replace}
+ * and {@code Base64}, which the runtime optimizes beyond a hand written loop.
+ */
+final class PlayerJSDecoder
+{
+    // TAG to use with logcat.
+    public static final String TAG = PlayerJSDecoder.class.getSimpleName();
+
+    // Number of decoding rounds.
+    private static final int ROUNDS = 2;
+
+    // Characters dropped at the start of every round.
+    private static final int PREFIX_LENGTH = 2;
+
+    // Prefix of every encoded key.
+    private static final String KEY_PREFIX = "F";
+
+    // The encoded keys, by the removal order.
+    private final String[] mEncodedKeys;
+
+
+    /**
+     * Create new decoder, it is immutable and may be shared between threads.
+     *
+     * @param keys the keys used to obfuscate the links.
+     */
+    PlayerJSDecoder(@NonNull String[] keys)
+    {
+        // Encode the keys once, the last key is removed first.
+        this.mEncodedKeys = new String[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            this.mEncodedKeys[keys.length - 1 - i] =
+                    KEY_PREFIX + Base64.getEncoder().encodeToString(keys[i].getBytes());
+        }
+    }
+
+
+    /**
+     * Decode an obfuscated link.
+     * <p>
+     * please return after me: Base64 *clap* is *clap* not *clap* an *clap* encryption.
+     *
+     * @param encoded the obfuscated link.
+     * @return the decoded link.
+     *
+     * @throws WebParsingException If part of the decoding failed.
+     */
+    @NonNull String decode(@NonNull String encoded) throws WebParsingException
+    {
+        String text = encoded;
+
+        for (int round = 0; round < ROUNDS; round++)
+            text = decodeRound(text);
+
+        return text;
+    }
+
+
+    /**
+     * Decode a single round of the link.
+     *
+     * @param text the round input.
+     * @return the decoded text.
+     *
+     * @throws WebParsingException If the text is not base64 once the keys are removed.
+     */
+    private @NonNull String decodeRound(@NonNull String text) throws WebParsingException
+    {
+        if (text.length() < PREFIX_LENGTH)
+            throw new WebParsingException("Decoding the key didn't yield base64 string");
+
+        text = text.substring(PREFIX_LENGTH);
+
+        // Most keys are not in the text, don't copy it for them.
+        for (String key : this.mEncodedKeys)
+        {
+            if (text.contains(key))
+                text = text.replace(key, "");
+        }
+
+        try {
+            return new String(Base64.getDecoder().decode(text), StandardCharsets.UTF_8);
+        }
+        catch (IllegalArgumentException e) {
+            throw new WebParsingException("Decoding the key didn't yield base64 string", e);
+        }
+    }
+}
@@ -1,15 +1,17 @@
 package com.penkov.vikstv.web.Scraper;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 
 import androidx.annotation.NonNull;
 
+import com.penkov.vikstv.web.Cache.ChannelIconCache;
 import com.penkov.vikstv.web.Listener.ListenerChannelIcon;
 import com.penkov.vikstv.web.WebParsingException;
 import com.penkov.vikstv.web.base.GeneralScraper;
+import com.penkov.vikstv.web.base.ScraperPriority;
+import com.penkov.vikstv.web.base.ScraperResponse;
 
-import org.jsoup.Connection;
+import java.io.IOException;
 
 public class ScraperChannelIcon
     extends GeneralScraper<Bitmap, ListenerChannelIcon>
@@ -17,6 +19,10 @@ public class ScraperChannelIcon
     // TAG to use with logcat.
     public static final String TAG = ScraperChannelIcon.class.getSimpleName();
 
+    // The size the icon is shown at, 0 for the original size.
+    private final int mWidth;
+    private final int mHeight;
+
 
     /**
      * Create new scraper.
@@ -24,8 +30,13 @@ public class ScraperChannelIcon
      *
      * @param URL the url to connect to.
      */
-    public ScraperChannelIcon(@NonNull String URL) {
+    public ScraperChannelIcon(@NonNull String URL)
+    {
         super(URL);
+
+        this.mWidth = 0;
+        this.mHeight = 0;
+        this.setPriority(ScraperPriority.VISIBLE);
     }
 
 
@@ -39,21 +50,53 @@ public class ScraperChannelIcon
      */
     public ScraperChannelIcon(
             @NonNull String URL, @NonNull ListenerChannelIcon listener)
+    {
+        this(URL, 0, 0, listener);
+    }
+
+
+    /**
+     * Create new scrapper.
+     * This class responsible to retrieve channel icon from the server,
+     * decoded at the size it is shown.
+     *
+     * @param URL      the url to connect to.
+     * @param width    the shown width in pixels, 0 for the original size.
+     * @param height   the shown height in pixels, 0 for the original size.
+     * @param listener register listener on creation. <br>
+     *                 Equal to call {@code registerListener()}.
+     */
+    public ScraperChannelIcon(
+            @NonNull String URL, int width, int height, @NonNull ListenerChannelIcon listener)
     {
         super(URL, listener);
+
+        this.mWidth = width;
+        this.mHeight = height;
+        this.setPriority(ScraperPriority.VISIBLE);
+    }
+
+
+    @Override
+    protected @NonNull String getRequestKey() {
+        // The same icon at different sizes are different results.
+        return this.mWidth + "x" + this.mHeight + " " + getURL();
     }
 
 
     @Override
-    protected Bitmap processPage(@NonNull Connection.Response response)
-            throws WebParsingException
+    protected Bitmap processPage(@NonNull ScraperResponse response)
+            throws WebParsingException, IOException
     {
-        // Read the images as stream, and pass it to the bitmap factory.
-        Bitmap icon = BitmapFactory.decodeStream(response.bodyStream());
+        // Read the encoded image, it is kept in the cache as is.
+        byte[] encoded = response.bodyAsBytes();
+        ChannelIconCache iconCache = ChannelIconCache.getInstance();
+        Bitmap icon = iconCache.decode(encoded, this.mWidth, this.mHeight);
 
         if (icon == null)
             throw new WebParsingException("Couldn't decode the channel icon.");
 
+        iconCache.put(getURL(), this.mWidth, this.mHeight, icon, encoded);
         return icon;
     }
 }
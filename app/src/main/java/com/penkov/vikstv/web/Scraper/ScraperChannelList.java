@@ -1,5 +1,6 @@
 package com.penkov.vikstv.web.Scraper;
 
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -9,15 +10,21 @@ import com.penkov.vikstv.core.ChannelInfo;
 import com.penkov.vikstv.web.Listener.ListenerChannelList;
 import com.penkov.vikstv.web.WebParsingException;
 import com.penkov.vikstv.web.base.GeneralScraper;
+import com.penkov.vikstv.web.base.ScraperResponse;
 
-import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 public class ScraperChannelList
     extends GeneralScraper<ChannelInfo[], ListenerChannelList>
@@ -35,6 +42,10 @@ public class ScraperChannelList
     private static final String ICON_ATTR = "src";
     private static final String DIV_CHANNELS = "all_tv";
 
+    // The page head bytes to look for the page charset in.
+    private static final int CHARSET_SCAN_BYTES = 1024;
+    private static final String CHARSET_PARAM = "charset=";
+
 
     /**
      * Create new channel list scraper.
@@ -58,11 +69,67 @@ public class ScraperChannelList
 
 
     @Override
-    protected ChannelInfo[] processPage(@NonNull Connection.Response response)
+    protected ChannelInfo[] processPage(@NonNull ScraperResponse response)
             throws WebParsingException, IOException
+    {
+        // Both parsers may read the page.
+        final byte[] page = response.bodyAsBytes();
+        final String charset = response.charset();
+
+        // The lexer reads the channels only, without building the whole document.
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        long startHeap = usedHeap();
+
+        // Lexed from the bytes, the page is never decoded whole.
+        List<ChannelListLexer.Channel> lexerChannels = new ChannelListLexer(
+                page, pageCharset(page, charset), DIV_CHANNELS).parse();
+
+        reportParse("lexer", startTime, startHeap);
+
+        if (lexerChannels != null)
+        {
+            List<ChannelInfo> channelInfoList = new ArrayList<>(lexerChannels.size());
+
+            for (ChannelListLexer.Channel channel : lexerChannels)
+            {
+                ChannelInfo channelInfo = createChannel(channel.mName, channel.mLink, channel.mIcon);
+
+                if (channelInfo != null)
+                    channelInfoList.add(channelInfo);
+            }
+
+            // Channels without link or icon are dropped by both parsers,
+            // but if all are dropped - the markup has probably changed.
+            if (!channelInfoList.isEmpty())
+                return channelInfoList.toArray(new ChannelInfo[0]);
+        }
+
+        Log.w(TAG, "Channel list markup not recognized, parsing the whole document.");
+
+        startTime = SystemClock.elapsedRealtimeNanos();
+        startHeap = usedHeap();
+
+        Document document = Jsoup.parse(new ByteArrayInputStream(page), charset, response.url());
+
+        reportParse("jsoup", startTime, startHeap);
+
+        return processDocument(document);
+    }
+
+
+    /**
+     * Read the channels from the parsed page.
+     *
+     * @param document the channel list page.
+     * @return the channels found.
+     *
+     * @throws WebParsingException if the page has no channels.
+     */
+    private @NonNull ChannelInfo[] processDocument(@NonNull Document document)
+            throws WebParsingException
     {
         // Extract all channels by element.
-        Elements channelsDiv = response.parse().getElementsByClass(DIV_CHANNELS);
+        Elements channelsDiv = document.getElementsByClass(DIV_CHANNELS);
 
         if (channelsDiv.isEmpty()) {
             Log.e(TAG, "Scraping didn't find channels list tag.");
@@ -76,11 +143,14 @@ public class ScraperChannelList
         for (Element channelElement : channelsDiv)
         {
             // Parse the channel.
-            ChannelInfo channel = parseChannel(channelElement);
+            ChannelListLexer.Channel values = readChannel(channelElement);
+            ChannelInfo channel = createChannel(values.mName, values.mLink, values.mIcon);
 
             // Add the new channel to the list.
             if (channel != null)
                 channelInfoList.add(channel);
+            else
+                Log.v(TAG, "Element: " + channelElement.outerHtml());
         }
 
         // If everything worked right, store the channels as array.
@@ -89,41 +159,128 @@ public class ScraperChannelList
 
 
     /**
-     * Parse from HTML element, the channel information.
+     * Read from HTML element, the channel values - as the lexer reads them from the page.
      *
      * @param channelElement the element to scrap the channel from.
-     * @return ChannelInfo presenting the channel, or null on parsing error.
+     * @return the channel text, link and icon.
      */
-    private @Nullable ChannelInfo parseChannel(@NonNull Element channelElement)
+    static @NonNull ChannelListLexer.Channel readChannel(@NonNull Element channelElement)
     {
-        // The element should contain only the channel name by now.
-        final String channelName = channelElement.text();
+        // Get the first link and the first icon, in a single walk over the element.
+        Element linkElement = null;
+        Element imageElement = null;
 
+        for (Element element : channelElement.getAllElements())
+        {
+            if (linkElement == null && LINK_TAG.equals(element.normalName()))
+                linkElement = element;
+            else if (imageElement == null && ICON_TAG.equals(element.normalName()))
+                imageElement = element;
+        }
 
-        // Get the link that should direct to the channel page.
-        Element linkElement = channelElement.getElementsByTag(LINK_TAG).first();
+        return new ChannelListLexer.Channel(
+                channelElement.text(),
+                linkElement != null && linkElement.hasAttr(LINK_ATTR) ? linkElement.attr(LINK_ATTR) : null,
+                imageElement != null && imageElement.hasAttr(ICON_ATTR) ? imageElement.attr(ICON_ATTR) : null);
+    }
 
-        if (linkElement == null || !linkElement.hasAttr(LINK_ATTR)) {
-            Log.v(TAG, "Found element without link: " + channelElement.outerHtml());
+
+    /**
+     * Create the channel information from the values read from its element.
+     *
+     * @param channelName the channel text.
+     * @param link        the channel page link, or null if the element has none.
+     * @param icon        the channel icon link, or null if the element has none.
+     * @return ChannelInfo presenting the channel, or null if the link or icon are missing.
+     */
+    private static @Nullable ChannelInfo createChannel(@NonNull String channelName,
+                                                       @Nullable String link,
+                                                       @Nullable String icon)
+    {
+        if (link == null) {
+            Log.v(TAG, "Found channel without link: " + channelName);
             return null;
         }
 
-        final String channelPage = URL + linkElement.attr(LINK_ATTR);
+        if (icon == null) {
+            Log.v(TAG, "Found channel without icon: " + channelName);
+            return null;
+        }
 
+        // Create channel info object from the data.
+        return new ChannelInfo(channelName, URL + link, URL + icon);
+    }
 
-        // Get the link that should direct to the channel icon.
-        Element imageElement = channelElement.getElementsByTag(ICON_TAG).first();
 
-        if (imageElement == null || !imageElement.hasAttr(ICON_ATTR)) {
-            Log.v(TAG, "Found element without icon: " + channelElement.outerHtml());
-            return null;
+    /**
+     * Get the charset of the page - the declared one, or the one set by the page itself.
+     *
+     * @param page    the page bytes.
+     * @param charset the charset declared by the response, or null.
+     * @return the page charset, UTF-8 by default.
+     */
+    private static @NonNull Charset pageCharset(@NonNull byte[] page, @Nullable String charset)
+    {
+        if (charset != null)
+            return Charset.forName(charset);
+
+        // Look for the meta charset at the page head.
+        String head = new String(page, 0, Math.min(page.length, CHARSET_SCAN_BYTES),
+                StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+
+        int index = head.indexOf(CHARSET_PARAM);
+        if (index >= 0)
+        {
+            int start = index + CHARSET_PARAM.length();
+            while (start < head.length() && (head.charAt(start) == '"' || head.charAt(start) == '\''))
+                start++;
+
+            int end = start;
+            while (end < head.length() && (Character.isLetterOrDigit(head.charAt(end))
+                    || head.charAt(end) == '-' || head.charAt(end) == '_'))
+                end++;
+
+            try {
+                String name = head.substring(start, end);
+                if (Charset.isSupported(name))
+                    return Charset.forName(name);
+            }
+            catch (IllegalArgumentException e) {
+                // Handled as undeclared charset.
+            }
         }
 
-        final String channelIcon = URL + imageElement.attr(ICON_ATTR);
+        return StandardCharsets.UTF_8;
+    }
 
 
-        // Create channel info object from the data.
-        return new ChannelInfo(channelName, channelPage, channelIcon);
+    /**
+     * Get the heap in use, to estimate the memory used by a parser.
+     *
+     * @return the used heap in bytes.
+     */
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+
+    /**
+     * Report the time and memory used by a parser, while its result is still referenced.
+     * The heap growth is the peak estimation - the parser structures are not yet collected.
+     *
+     * @param parser    the parser name.
+     * @param startTime the parsing start time, in nanoseconds.
+     * @param startHeap the used heap at the parsing start.
+     */
+    private static void reportParse(@NonNull String parser, long startTime, long startHeap)
+    {
+        long timeMs = (SystemClock.elapsedRealtimeNanos() - startTime) / 1_000_000;
+        long heapKb = Math.max(0, usedHeap() - startHeap) / 1024;
+
+        Log.i(TAG, String.format(Locale.ROOT,
+                "Channel list parsed by %s in %d ms, heap grew by %d KB.", parser, timeMs, heapKb));
     }
 
 
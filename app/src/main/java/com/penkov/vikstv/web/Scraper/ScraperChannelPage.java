@@ -0,0 +1,143 @@
+package com.penkov.vikstv.web.Scraper;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.penkov.vikstv.web.Listener.ListenerChannelPage;
+import com.penkov.vikstv.web.Listener.ListenerChannelProgram;
+import com.penkov.vikstv.web.Listener.ListenerChannelVideoURL;
+import com.penkov.vikstv.web.WebParsingException;
+import com.penkov.vikstv.web.base.GeneralScraper;
+import com.penkov.vikstv.web.base.ScraperPriority;
+import com.penkov.vikstv.web.base.ScraperResponse;
+
+import com.penkov.vikstv.web.base.ScriptBlockReader;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ScraperChannelPage
+    extends GeneralScraper<Document, ListenerChannelPage>
+{
+    // TAG to use with logcat.
+    public static final String TAG = ScraperChannelPage.class.getSimpleName();
+
+    // The size of the buffer used to read the page.
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // The scrapers sharing the channel page.
+    private final ScraperChannelVideoURL mVideoURLScraper;
+    private final ScraperChannelProgram mProgramScraper;
+
+    // Whether the video URL was already passed while the page was processed.
+    private final AtomicBoolean mVideoDelivered = new AtomicBoolean(false);
+
+
+    /**
+     * Create new channel page scraper.
+     * This class responsible to retrieve the channel page once,
+     * and pass it to both the video URL and the programs scrapers.
+     * The video URL is passed as soon as its script is downloaded, before the page is parsed.
+     * A programs scraper loading the same page (a prefetch) shares the request. <br>
+     * The results are passed to the given listeners, the same way as the dedicated scrapers.
+     *
+     * @param context         the context of the application.
+     * @param URL             the channel page url.
+     * @param videoListener   the listener of the channel video URL.
+     * @param programListener the listener of the channel programs.
+     */
+    public ScraperChannelPage(@NonNull Context context,
+                              @NonNull String URL,
+                              @NonNull ListenerChannelVideoURL videoListener,
+                              @NonNull ListenerChannelProgram programListener)
+    {
+        super(URL);
+
+        this.mVideoURLScraper = new ScraperChannelVideoURL(context, URL, videoListener);
+        this.mProgramScraper = new ScraperChannelProgram(URL, programListener);
+
+        this.registerListener(new PageListener());
+
+        // The page holds the video, the user waits for it.
+        this.setPriority(ScraperPriority.PLAYBACK);
+    }
+
+
+    @Override
+    protected Document processPage(@NonNull ScraperResponse response)
+            throws WebParsingException, IOException
+    {
+        this.mVideoDelivered.set(false);
+
+        // Keep what is read, the page is parsed again from its start.
+        BufferedInputStream body = new BufferedInputStream(response.bodyStream(), BUFFER_SIZE);
+        body.mark(Integer.MAX_VALUE);
+
+        // The user waits for the video - pass it as soon as its script arrives,
+        // before the whole page is downloaded and parsed.
+        String videoScript = ScriptBlockReader.findScript(
+                body, response.charset(), ScraperChannelVideoURL.SCRIPT_CONST);
+
+        if (videoScript != null && isRunning()) {
+            this.mVideoURLScraper.loadScript(videoScript);
+            this.mVideoDelivered.set(true);
+        }
+
+        // Parse the page once, the scrapers process it in the listener.
+        body.reset();
+        return Jsoup.parse(body, response.charset(), response.url());
+    }
+
+
+    /**
+     * Get the video URL scraper, holding the last video URL result.
+     *
+     * @return the video URL scraper of this page.
+     */
+    public @NonNull ScraperChannelVideoURL getVideoURLScraper() {
+        return this.mVideoURLScraper;
+    }
+
+
+    /**
+     * Get the programs scraper, holding the last programs result.
+     *
+     * @return the programs scraper of this page.
+     */
+    public @NonNull ScraperChannelProgram getProgramScraper() {
+        return this.mProgramScraper;
+    }
+
+
+    /**
+     * Passes the parsed page (or the error) to the scrapers sharing it.
+     */
+    private final class PageListener extends ListenerChannelPage
+    {
+        @Override
+        public void onResult(@NonNull Document document)
+        {
+            // The video comes first, it is what the user waits for.
+            // This page may have been processed by another scraper, without the early video.
+            if (!mVideoDelivered.getAndSet(false))
+                mVideoURLScraper.loadDocument(document);
+
+            mProgramScraper.loadDocument(document);
+        }
+
+        @Override
+        public void onError(@NonNull Exception exception)
+        {
+            // The video may be playing already.
+            if (!mVideoDelivered.getAndSet(false))
+                mVideoURLScraper.loadError(exception);
+
+            mProgramScraper.loadError(exception);
+        }
+    }
+}
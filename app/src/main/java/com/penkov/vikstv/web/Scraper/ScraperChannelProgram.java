@@ -3,24 +3,22 @@ package com.penkov.vikstv.web.Scraper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 
-import com.penkov.vikstv.core.ChannelProgram;
-import com.penkov.vikstv.core.ProgramTimeException;
+import com.penkov.vikstv.core.ProgramSchedule;
 import com.penkov.vikstv.web.Listener.ListenerChannelProgram;
 import com.penkov.vikstv.web.WebParsingException;
-import com.penkov.vikstv.web.base.GeneralScraper;
+import com.penkov.vikstv.web.base.DocumentScraper;
+import com.penkov.vikstv.web.base.ScraperResponse;
 
-import org.jsoup.Connection;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+
 
 public class ScraperChannelProgram
-    extends GeneralScraper<ChannelProgram[], ListenerChannelProgram>
+    extends DocumentScraper<ProgramSchedule, ListenerChannelProgram>
 {
     // TAG to use with logcat.
     public static final String TAG = ScraperChannelProgram.class.getSimpleName();
@@ -54,12 +52,34 @@ public class ScraperChannelProgram
     }
 
 
+    /**
+     * The programs are read from the channel page, share its request -
+     * a channel whose programs are prefetched is not loaded again when it is opened.
+     */
+    @Override
+    protected @NonNull String getSharingType() {
+        return ScraperChannelPage.class.getName();
+    }
+
+
+    @Override
+    protected @NonNull Object readSharedPage(@NonNull ScraperResponse response) throws IOException {
+        return response.parse();
+    }
+
+
     @Override
-    protected ChannelProgram[] processPage(@NonNull Connection.Response response)
-            throws WebParsingException, IOException
+    protected @NonNull ProgramSchedule processSharedPage(@NonNull Object page) throws WebParsingException {
+        return processDocument((Document) page);
+    }
+
+
+    @Override
+    protected ProgramSchedule processDocument(@NonNull Document document)
+            throws WebParsingException
     {
         // Get the programs table.
-        Element body = response.parse().body();
+        Element body = document.body();
         Element programsTable = body.getElementsByClass(DIV_PROGRAMS).first();
 
         // Check if the program table was found.
@@ -68,21 +88,13 @@ public class ScraperChannelProgram
 
         // Get the program entries.
         Elements programEntries = programsTable.getElementsByTag(LIST_TAG);
-        List<ChannelProgram> channelProgramList = new ArrayList<>(programEntries.size());
+        ProgramSchedule.Builder schedule = new ProgramSchedule.Builder();
 
         // Parse the programs.
         for (Element programEntry : programEntries)
-        {
-            // Parse the program.
-            ChannelProgram program = parseProgram(programEntry);
-
-            // Add the program to the list.
-            if (program != null)
-                channelProgramList.add(program);
-        }
+            parseProgram(programEntry, schedule);
 
-        // Convert list to array.
-        return channelProgramList.toArray(new ChannelProgram[0]);
+        return schedule.build();
     }
 
 
@@ -91,12 +103,13 @@ public class ScraperChannelProgram
 
 
     /**
-     * Scrap channel program entry from designated element.
+     * Scrap channel program entry from designated element, into the schedule.
      *
      * @param programElement the element to scrap the channel from.
-     * @return object representing the program, or null on parsing error.
+     * @param schedule       the schedule to add the program to.
      */
-    private @Nullable ChannelProgram parseProgram(@NonNull Element programElement)
+    private void parseProgram(@NonNull Element programElement,
+                              @NonNull ProgramSchedule.Builder schedule)
     {
         // Get the program time and name elements.
         Element divTime = programElement.getElementsByClass(CLASS_TIME).first();
@@ -105,24 +118,16 @@ public class ScraperChannelProgram
         // If one element failed, can't make the channel program.
         if (divTime == null || divName == null) {
             Log.w(TAG, "Some information about the program is missing.");
-            return null;
+            return;
         }
 
         // Get the text representing the time and name.
         final String time = divTime.text();
         final String name = divName.text();
 
-        ChannelProgram program = null;
-
-        // Try to create the channel object.
-        try {
-            program = new ChannelProgram(name, time);
-        }
-        catch (ProgramTimeException e) {
-            Log.w(TAG, "Creating program yield a error.", e);
-        }
-
-        return program;
+        // Invalid rows are skipped, without the cost of an exception.
+        if (!schedule.add(name, time))
+            Log.w(TAG, "Program time is not in right format: " + time);
     }
 
 }
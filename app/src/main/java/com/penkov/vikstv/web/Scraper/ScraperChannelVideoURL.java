@@ -9,36 +9,40 @@ import androidx.annotation.NonNull;
 import com.penkov.vikstv.R;
 import com.penkov.vikstv.web.Listener.ListenerChannelVideoURL;
 import com.penkov.vikstv.web.WebParsingException;
-import com.penkov.vikstv.web.base.GeneralScraper;
+import com.penkov.vikstv.web.base.DocumentScraper;
+import com.penkov.vikstv.web.base.ScraperPriority;
+import com.penkov.vikstv.web.base.ScraperResponse;
+import com.penkov.vikstv.web.base.ScriptBlockReader;
 
-import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
 import java.io.IOException;
-import java.util.Base64;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ScraperChannelVideoURL
-    extends GeneralScraper<String, ListenerChannelVideoURL>
+    extends DocumentScraper<String, ListenerChannelVideoURL>
 {
     // TAG to use with logcat.
     public static final String TAG = ScraperChannelVideoURL.class.getSimpleName();
 
     // Constants that used in parsing.
     private static final String TAG_SCRIPT = "script";
-    private static final String SCRIPT_CONST = "Playerjs";
 
-    private static final String PATTERN_KODK = "var kodk=\"([^\"]*)\";";
-    private static final String PATTERN_KOS = "var kos=\"([^\"]*)\";";
-    private static final String PATTERN_PLAYERJS =
-            "var player=new Playerjs\\(\\{id:\"preroll\",file:\"([^\"]*)\"\\}\\);";
+    // Text that identifies the script responsible for the video.
+    static final String SCRIPT_CONST = "Playerjs";
 
-    // Private keys used in the player-js video library to obfuscate the link.
-    // https://playerjs.com/docs/en=encodingbase64
-    private final String[] keys;
+    private static final Pattern PATTERN_KODK = Pattern.compile("var kodk=\"([^\"]*)\";");
+    private static final Pattern PATTERN_KOS = Pattern.compile("var kos=\"([^\"]*)\";");
+    private static final Pattern PATTERN_PLAYERJS = Pattern.compile(
+            "var player=new Playerjs\\(\\{id:\"preroll\",file:\"([^\"]*)\"\\}\\);");
+
+    // Decoder of the links, built once from the private keys of the player-js library.
+    private static volatile PlayerJSDecoder sDecoder = null;
+
+    private final PlayerJSDecoder mDecoder;
 
 
     /**
@@ -51,7 +55,10 @@ public class ScraperChannelVideoURL
             @NonNull Context context, @NonNull String URL)
     {
         super(URL);
-        this.keys = loadKeys(context);
+        this.mDecoder = getDecoder(context);
+
+        // The user waits for the video.
+        this.setPriority(ScraperPriority.PLAYBACK);
     }
 
 
@@ -68,7 +75,29 @@ public class ScraperChannelVideoURL
                                   @NonNull ListenerChannelVideoURL listener)
     {
         super(URL, listener);
-        this.keys = loadKeys(context);
+        this.mDecoder = getDecoder(context);
+
+        // The user waits for the video.
+        this.setPriority(ScraperPriority.PLAYBACK);
+    }
+
+
+    /**
+     * Get the links decoder, the keys are loaded and prepared on the first call only.
+     *
+     * @param context the context of the application.
+     * @return the shared decoder.
+     */
+    private static @NonNull PlayerJSDecoder getDecoder(@NonNull Context context)
+    {
+        if (sDecoder == null) {
+            synchronized (ScraperChannelVideoURL.class) {
+                if (sDecoder == null)
+                    sDecoder = new PlayerJSDecoder(loadKeys(context));
+            }
+        }
+
+        return sDecoder;
     }
 
 
@@ -80,7 +109,7 @@ public class ScraperChannelVideoURL
      * @param context the context of the application.
      * @return string array of the keys.
      */
-    private String[] loadKeys(@NonNull Context context)
+    private static String[] loadKeys(@NonNull Context context)
     {
         // Default return value (in case not found) new empty array.
         String[] keys = new String[0];
@@ -99,22 +128,46 @@ public class ScraperChannelVideoURL
     }
 
 
+    /**
+     * Find the video script while the page is downloaded, without parsing the page.
+     * The rest of the page after the script is not read.
+     *
+     * @param response the loaded webpage.
+     * @return the video URL.
+     *
+     * @throws WebParsingException on parsing conflict.
+     * @throws IOException         on reading error.
+     */
     @Override
-    protected String processPage(@NonNull Connection.Response response)
+    protected String processPage(@NonNull ScraperResponse response)
             throws WebParsingException, IOException
     {
-        // Get the HTML body of the page.
-        Document document = response.parse();
+        String videoScript = ScriptBlockReader.findScript(
+                response.bodyStream(), response.charset(), SCRIPT_CONST);
+
+        // If no script - no url.
+        if (videoScript == null)
+            throw new WebParsingException("Couldn't find script responsible for the video.");
 
+        return processScript(videoScript);
+    }
+
+
+    @Override
+    protected String processDocument(@NonNull Document document)
+            throws WebParsingException
+    {
         // Script that controls the video.
         String videoScript = null;
 
         // Search for the script that manages the video player.
         for (Element element : document.getElementsByTag(TAG_SCRIPT))
         {
-            // Check if the script responsible for the video.
-            if (element.toString().contains(SCRIPT_CONST)) {
-                videoScript = element.toString();
+            // Check if the script responsible for the video (its content, without serializing).
+            String script = element.data();
+
+            if (script.contains(SCRIPT_CONST)) {
+                videoScript = script;
                 break;
             }
         }
@@ -124,63 +177,51 @@ public class ScraperChannelVideoURL
         if (videoScript == null)
             throw new WebParsingException("Couldn't find script responsible for the video.");
 
-        // Part of the url used in the process.
-        final String kodk = getRegexObject(videoScript, PATTERN_KODK);
-        final String kos =  getRegexObject(videoScript, PATTERN_KOS);
-
-        // Obfuscated video link.
-        String obf_key = getRegexObject(videoScript, PATTERN_PLAYERJS);
-
-
-        // Create the keys used inside the deobfuscator.
-        final String[] keys_base64 = new String[keys.length];
-
-        for (int i = 0; i < keys.length; i++)
-            keys_base64[i] = "F" + Base64.getEncoder().encodeToString(keys[i].getBytes());
-
+        return processScript(videoScript);
+    }
 
-        // Decode the string twice.
-        obf_key = decodePlayerJS(obf_key, keys_base64);
-        obf_key = decodePlayerJS(obf_key, keys_base64);
 
-        // Replace the the placeholders with the constants found earlier.
-        return obf_key
-                .replace("{v1}", kodk)
-                .replace("{v2}", kos);
+    /**
+     * Process a video script found by another request, as if it was loaded by this scraper.
+     * The result (or the error) is passed to the listener, on the calling thread.
+     *
+     * @param videoScript the content of the script responsible for the video.
+     */
+    public final void loadScript(@NonNull String videoScript)
+    {
+        try {
+            Log.v(TAG, "Start processing shared video script.");
+            publishResult(processScript(videoScript));
+        }
+        catch (Exception e) {
+            Log.v(TAG, "Error while processing shared video script.");
+            callListenerOnError(e);
+        }
     }
 
 
     /**
-     * Decode the key string - the core function from the PlayerJS library.
-     * <p>
-     * please return after me: Base64 *clap* is *clap* not *clap* an *clap* encryption.
+     * Extract the video URL from the script responsible for the video.
      *
-     * @param key      the original key to decode.
-     * @param keys_b64 list of keys used to decode.
-     * @return string of decoded key.
+     * @param videoScript the content of the script.
+     * @return the video URL.
      *
-     * @throws WebParsingException If part of the decoding failed.
+     * @throws WebParsingException on parsing conflict.
      */
-    private @NonNull String decodePlayerJS (@NonNull String key, @NonNull String[] keys_b64)
+    private @NonNull String processScript(@NonNull String videoScript)
             throws WebParsingException
     {
-        // Remove first two characters.
-        key = key.substring(2);
-
-        // Remove the keys.
-        for (int i = keys_b64.length - 1; i >= 0; i--)
-            key = key.replace(keys_b64[i], "");
+        // Part of the url used in the process.
+        final String kodk = getRegexObject(videoScript, PATTERN_KODK);
+        final String kos =  getRegexObject(videoScript, PATTERN_KOS);
 
-        // Decode the base64 string.
-        try {
-            key = new String(Base64.getDecoder().decode(key));
-        }
-        catch (IllegalArgumentException e) {
-            // If decoding was unsuccessful.
-            throw new WebParsingException("Decoding the key didn't yield base64 string", e);
-        }
+        // Obfuscated video link.
+        final String obf_key = getRegexObject(videoScript, PATTERN_PLAYERJS);
 
-        return key;
+        // Replace the the placeholders with the constants found earlier.
+        return mDecoder.decode(obf_key)
+                .replace("{v1}", kodk)
+                .replace("{v2}", kos);
     }
 
 
@@ -193,19 +234,19 @@ public class ScraperChannelVideoURL
      *
      * @throws WebParsingException If no capture was made.
      */
-    private @NonNull String getRegexObject(@NonNull String text, @NonNull String pattern)
+    private @NonNull String getRegexObject(@NonNull String text, @NonNull Pattern pattern)
         throws WebParsingException
     {
         // Regex the text.
-        Matcher matcher = Pattern.compile(pattern).matcher(text);
+        Matcher matcher = pattern.matcher(text);
 
         // If no match, throw parsing error.
         if (!matcher.find() || matcher.groupCount() != 1)
-            throw new WebParsingException("No text matches pattern: " + pattern);
+            throw new WebParsingException("No text matches pattern: " + pattern.pattern());
 
         // Pattern is set to more then one or no groups at all.
         if (matcher.groupCount() != 1)
-            throw new WebParsingException("Pattern must capture only one group: " + pattern);
+            throw new WebParsingException("Pattern must capture only one group: " + pattern.pattern());
 
         return Objects.requireNonNull(matcher.group(1));
     }
@@ -3,24 +3,35 @@ package com.penkov.vikstv.web.base;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import org.jsoup.Connection;
 import org.jsoup.HttpStatusException;
-import org.jsoup.Jsoup;
-import org.jsoup.UnsupportedMimeTypeException;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.RejectedExecutionException;
 
 public class BackgroundScraper
+        implements ScraperDispatcher.Task
 {
     // TAG to use on logcat.
     public static final String TAG = BackgroundScraper.class.getSimpleName();
 
-    // Thread to make the web communication in the background.
-    // Also, android doesn't allow network communication on GUI thread.
-    private final Thread backgroundHTTPScrapper;
+    // Flag whether the web communication is done.
+    // The communication is made on the ScraperDispatcher workers,
+    // as android doesn't allow network communication on GUI thread.
+    private volatile boolean mFinished = false;
+
+    // Flag whether the request was cancelled, and the request in progress.
+    private volatile boolean mCancelled = false;
+    private volatile ScraperCall mCall = null;
+
+    // The request priority, while queued and on the transport.
+    private volatile ScraperPriority mPriority;
+
+    // The transport used to retrieve the pages.
+    private static volatile ScraperTransport sTransport = null;
 
     // The URL to make the connections on.
     private final String URL;
@@ -30,54 +41,254 @@ public class BackgroundScraper
 
 
     /**
-     * Create new background scrapper, and initiate the web request.
+     * Create new background scrapper.
+     * The web request is initiated once submitted to the {@code ScraperDispatcher}.
      * All communication with this class are from now on over the {@code BackgroundScraperListener}.
      *
      * @param URL           The address to get the webpage from.
      * @param eventListener The event handler to manage the events from this server.
      */
     public BackgroundScraper(@NonNull String URL, @NonNull BackgroundScraperListener eventListener)
+    {
+        this(URL, ScraperPriority.INTERACTIVE, eventListener);
+    }
+
+
+    /**
+     * Create new background scrapper.
+     * The web request is initiated once submitted to the {@code ScraperDispatcher}.
+     * All communication with this class are from now on over the {@code BackgroundScraperListener}.
+     *
+     * @param URL           The address to get the webpage from.
+     * @param priority      The priority of the request.
+     * @param eventListener The event handler to manage the events from this server.
+     */
+    public BackgroundScraper(@NonNull String URL,
+                             @NonNull ScraperPriority priority,
+                             @NonNull BackgroundScraperListener eventListener)
     {
         // Save local variables
         this.scraperListener = eventListener;
         this.URL = URL;
+        this.mPriority = priority;
+    }
+
+
+    /**
+     * Get the priority of the request.
+     *
+     * @return the request priority.
+     */
+    @Override
+    public @NonNull ScraperPriority getPriority() {
+        return this.mPriority;
+    }
+
+
+    /**
+     * Change the priority of the request.
+     * Takes effect while the request waits for a worker.
+     *
+     * @param priority the new priority.
+     */
+    public void setPriority(@NonNull ScraperPriority priority)
+    {
+        if (this.mPriority == priority)
+            return;
+
+        this.mPriority = priority;
+        ScraperDispatcher.getInstance().setPriority(this, priority);
+    }
+
+
+    /**
+     * Check if the scraping finished (the network communication is done).
+     *
+     * @return true if the scraping is done, false otherwise.
+     */
+    public boolean isFinished() {
+        return this.mFinished;
+    }
+
+
+    /**
+     * Check if the request was cancelled.
+     *
+     * @return true if {@code cancel()} was called, false otherwise.
+     */
+    public boolean isCancelled() {
+        return this.mCancelled;
+    }
+
+
+    /**
+     * Cancel the request, from any thread.
+     * A queued request is dropped, and an open connection is closed.
+     * The listener is not called after the cancellation
+     * (unless it is already processing the document).
+     *
+     * @return true if the request was dropped before it started, false otherwise.
+     */
+    public boolean cancel()
+    {
+        if (this.mCancelled)
+            return false;
+
+        this.mCancelled = true;
+
+        // Never started, no connection was made.
+        if (ScraperDispatcher.getInstance().remove(this)) {
+            Log.v(TAG, "Queued web request was cancelled.");
+            this.mFinished = true;
+            return true;
+        }
+
+        // Close the connection, if it is still open.
+        ScraperCall call = this.mCall;
+        if (call != null)
+            call.cancel();
+
+        Log.v(TAG, "Web request was cancelled.");
+        return false;
+    }
+
+
+    /**
+     * Called by the dispatcher worker to make the web request.
+     */
+    @Override
+    public void run()
+    {
+        // Cancelled just before it was run.
+        if (this.mCancelled) {
+            this.mFinished = true;
+            return;
+        }
+
+        try {
+            backgroundScrapper();
+        }
+        finally {
+            this.mFinished = true;
+        }
+    }
+
+
+    /**
+     * Called by the dispatcher when the request was dropped before it started.
+     *
+     * @param exception describes why the request was dropped.
+     */
+    @Override
+    public void onRejected(@NonNull RejectedExecutionException exception)
+    {
+        this.mFinished = true;
+
+        if (this.mCancelled)
+            return;
 
-        // Create and start the background thread.
-        this.backgroundHTTPScrapper = new Thread(this::backgroundScrapper);
-        this.backgroundHTTPScrapper.start();
+        Log.w(TAG, "Web request was dropped.", exception);
+        this.scraperListener.onError(exception);
     }
 
 
     /**
-     * Check if the scraping thread finished (the network communication is done).
+     * Set the transport used by all the scrapers to retrieve the web pages.
      *
-     * @return true if the scraping thread is dead, false otherwise.
+     * @param transport the new transport.
      */
-    public synchronized boolean isFinished() {
-        return !this.backgroundHTTPScrapper.isAlive();
+    public static void setTransport(@NonNull ScraperTransport transport) {
+        sTransport = transport;
     }
 
 
     /**
-     * The core function that is called in a parallel thread.
+     * Get the transport used by all the scrapers, creating the default one on first use.
+     *
+     * @return the current transport.
+     */
+    public static @NonNull ScraperTransport getTransport()
+    {
+        if (sTransport == null)
+        {
+            synchronized (BackgroundScraper.class)
+            {
+                if (sTransport == null)
+                    sTransport = new PooledTransport();
+            }
+        }
+
+        return sTransport;
+    }
+
+
+    /**
+     * The core function that is called in a background worker.
      */
     private void backgroundScrapper()
     {
         Log.v(TAG, "Starting web connection.");
 
-        try {
-            // Retrieve the webpage.
-            Connection.Response response = Jsoup
-                    .connect(URL)
-                    .ignoreContentType(true)
-                    .method(Connection.Method.GET)
-                    .execute();
-            Log.v(TAG, "Successfully got the web page.");
+        // Retrieve the webpage.
+        ScraperResponse response = retrievePage();
+        if (response == null)
+            return;
 
+        // Cancelled while the headers arrived, don't bother processing.
+        if (this.mCancelled) {
+            closeResponse(response);
+            return;
+        }
+
+        Log.v(TAG, response.isFromCache()
+                ? "Successfully got the web page from cache."
+                : "Successfully got the web page.");
+
+        try {
             // Call the listener with the webpage.
             this.scraperListener.onDocument(response);
             Log.v(TAG, "Finished processing the document.");
         }
+        finally {
+            // Release the connection.
+            closeResponse(response);
+        }
+    }
+
+
+    /**
+     * Close the webpage, and release its connection.
+     *
+     * @param response the webpage to close.
+     */
+    private static void closeResponse(@NonNull ScraperResponse response)
+    {
+        try {
+            response.close();
+        }
+        catch (IOException e) {
+            Log.v(TAG, "Exception while closing the web page.", e);
+        }
+    }
+
+
+    /**
+     * Retrieve the webpage, or inform the listener about the error.
+     *
+     * @return the webpage, or null on error.
+     */
+    private @Nullable ScraperResponse retrievePage()
+    {
+        try {
+            ScraperCall call = getTransport().newCall(URL, this.mPriority);
+            this.mCall = call;
+
+            // Cancelled while the call was created.
+            if (this.mCancelled)
+                call.cancel();
+
+            return call.execute();
+        }
 
         // Exception if the URL is not right.
         catch (MalformedURLException e) {
@@ -91,22 +302,23 @@ public class BackgroundScraper
             this.scraperListener.onError(e);
         }
 
-        // Exception when the media type of the document is not supported (usually not HTML page).
-        catch (UnsupportedMimeTypeException e) {
-            Log.w(TAG, "Exception in Mime type.", e);
-            this.scraperListener.onError(e);
-        }
-
         // Exception when the server didn't answer the network request.
         catch (SocketTimeoutException e) {
             Log.w(TAG, "Exception socket timeout.", e);
             this.scraperListener.onError(e);
         }
 
-        // General exception.
+        // General exception, or the request was cancelled.
         catch (IOException e) {
+            if (this.mCancelled) {
+                Log.v(TAG, "Web request aborted.");
+                return null;
+            }
+
             Log.w(TAG, "Exception in IO.", e);
             this.scraperListener.onError(e);
         }
+
+        return null;
     }
 }
@@ -2,8 +2,6 @@ package com.penkov.vikstv.web.base;
 
 import androidx.annotation.NonNull;
 
-import org.jsoup.Connection;
-
 public interface BackgroundScraperListener
 {
     /**
@@ -11,7 +9,7 @@ public interface BackgroundScraperListener
      *
      * @param response the web page asked from the scraper.
      */
-    void onDocument(@NonNull Connection.Response response);
+    void onDocument(@NonNull ScraperResponse response);
 
     /**
      * Called on general error from the network communication.
@@ -21,9 +19,9 @@ public interface BackgroundScraperListener
      * <ul>
      *     <li> {@code MalformedURLException} </li>
      *     <li> {@code HttpStatusException} </li>
-     *     <li> {@code UnsupportedMimeTypeException} </li>
      *     <li> {@code SocketTimeoutException} </li>
      *     <li> {@code IOException} </li>
+     *     <li> {@code RejectedExecutionException} </li>
      * </ul>
      *
      * @param exception describes the problem.
@@ -0,0 +1,104 @@
+package com.penkov.vikstv.web.base;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.penkov.vikstv.web.WebParsingException;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+
+/**
+ * Scraper that extracts its {@code Result} from an HTML document.
+ * <p>
+ * Besides loading the page by itself (with {@code load()}), the scraper can process
+ * a document that was already downloaded and parsed by someone else,
+ * so several scrapers of the same page can share a single request.
+ */
+public abstract class DocumentScraper<Result, ListenerClass extends GeneralListener<Result>>
+        extends GeneralScraper<Result, ListenerClass>
+{
+    // TAG to use on logcat.
+    public static final String TAG = DocumentScraper.class.getSimpleName();
+
+
+    /**
+     * Create new document scraper.
+     *
+     * @param URL the web page to connect to.
+     */
+    public DocumentScraper(@NonNull String URL) {
+        super(URL);
+    }
+
+
+    /**
+     * Create new document scraper.
+     *
+     * @param URL      the web page to connect to.
+     * @param listener register listener on creation. <br>
+     *                 Equal to call {@code registerListener()}.
+     */
+    public DocumentScraper(@NonNull String URL, @NonNull ListenerClass listener) {
+        super(URL, listener);
+    }
+
+
+    /**
+     * Parse the webpage, and process the document.
+     *
+     * @param response the loaded webpage.
+     * @return Result scraped from the webpage.
+     *
+     * @throws WebParsingException on parsing conflict.
+     */
+    @Override
+    protected Result processPage(@NonNull ScraperResponse response)
+            throws WebParsingException, IOException
+    {
+        return processDocument(response.parse());
+    }
+
+
+    /**
+     * Process the parsed webpage to find the desired piece of data.
+     *
+     * @param document the parsed webpage.
+     * @return Result scraped from the webpage.
+     *
+     * @throws WebParsingException on parsing conflict.
+     */
+    protected abstract Result processDocument(@NonNull Document document)
+            throws WebParsingException;
+
+
+    /**
+     * Process a document loaded by another request, as if it was loaded by this scraper.
+     * The result (or the error) is passed to the listener, on the calling thread.
+     *
+     * @param document the parsed webpage of this scraper URL.
+     */
+    public final void loadDocument(@NonNull Document document)
+    {
+        try {
+            Log.v(TAG, "Start processing shared document.");
+            publishResult(processDocument(document));
+        }
+        catch (Exception e) {
+            Log.v(TAG, "Error while processing shared document.");
+            callListenerOnError(e);
+        }
+    }
+
+
+    /**
+     * Inform the listener that the request of the shared document failed.
+     *
+     * @param exception describes the problem.
+     */
+    public final void loadError(@NonNull Exception exception) {
+        callListenerOnError(exception);
+    }
+}
@@ -19,9 +19,9 @@ public interface GeneralListener<Result>
      * <ul>
      *     <li> {@code MalformedURLException} </li>
      *     <li> {@code HttpStatusException} </li>
-     *     <li> {@code UnsupportedMimeTypeException} </li>
      *     <li> {@code SocketTimeoutException} </li>
      *     <li> {@code IOException} </li>
+     *     <li> {@code RejectedExecutionException} </li>
      * </ul>
      *
      * @param exception describes the problem.
@@ -6,8 +6,6 @@ import androidx.annotation.NonNull;
 
 import com.penkov.vikstv.web.WebParsingException;
 
-import org.jsoup.Connection;
-
 import java.io.IOException;
 
 public abstract class GeneralScraper<Result, ListenerClass extends GeneralListener<Result>>
@@ -19,7 +17,13 @@ public abstract class GeneralScraper<Result, ListenerClass extends GeneralListen
     private final String mURL;
 
     // Flag whether a scraper is running.
-    private boolean mBackgroundThreadRunning = false;
+    private volatile boolean mBackgroundThreadRunning = false;
+
+    // The request this scraper waits for, null if none or cancelled.
+    private volatile Object mRequest = null;
+
+    // The priority of the requests of this scraper.
+    private volatile ScraperPriority mPriority = ScraperPriority.INTERACTIVE;
 
     // Holds the listener.
     private ListenerClass mListener = null;
@@ -57,10 +61,74 @@ public abstract class GeneralScraper<Result, ListenerClass extends GeneralListen
 
 
     /**
-     * Check if the thread is running.
-     * To initiate the thread, call {@code load()}.
+     * Get the web page this scraper connects to.
+     *
+     * @return the scraper URL.
+     */
+    public final @NonNull String getURL() {
+        return this.mURL;
+    }
+
+
+    /**
+     * Get the key identifying identical requests, which share a single result.
+     * By default requests of the same scraper type to the same URL are identical,
+     * scrapers which process the same page differently should add their parameters.
+     *
+     * @return the request key, without the scraper type.
+     */
+    protected @NonNull String getRequestKey() {
+        return this.mURL;
+    }
+
+
+    /**
+     * Get the type of the scrapers this scraper shares its requests with.
+     * By default only scrapers of the same class share a request. Scrapers of other
+     * classes may share it too, if they read the page the same way - see
+     * {@code readSharedPage()} and {@code processSharedPage()}.
+     *
+     * @return the sharing type, the scraper class name by default.
+     */
+    protected @NonNull String getSharingType() {
+        return this.getClass().getName();
+    }
+
+
+    /**
+     * Get the priority of the requests of this scraper.
+     *
+     * @return the scraper priority.
+     */
+    public final @NonNull ScraperPriority getPriority() {
+        return this.mPriority;
+    }
+
+
+    /**
+     * Set the priority of the requests of this scraper.
+     * If a request is waiting, its priority is changed too - for example,
+     * a prefetch becomes more urgent when its item is shown.
+     *
+     * @param priority the new priority.
+     */
+    public final void setPriority(@NonNull ScraperPriority priority)
+    {
+        if (this.mPriority == priority)
+            return;
+
+        this.mPriority = priority;
+
+        if (this.mRequest != null)
+            RequestCoalescer.getInstance().updatePriority(this);
+    }
+
+
+    /**
+     * Check if the request is running (queued or in progress).
+     * To initiate the request, call {@code load()}.
      *
-     * @return true if the thread is currently running, false otherwise.
+     * @return true if the request is currently running, false otherwise.
      */
     public final boolean isRunning() {
         return this.mBackgroundThreadRunning;
@@ -79,66 +147,138 @@ public abstract class GeneralScraper<Result, ListenerClass extends GeneralListen
     {
         // If the scrapping running, do notting.
         if (this.mBackgroundThreadRunning) {
-            Log.i(TAG, "Try to initiate new thread while one is already on.");
+            Log.i(TAG, "Try to initiate new request while one is already on.");
             return;
         }
 
         // Set the flag.
         this.mBackgroundThreadRunning = true;
-        Log.v(TAG, "Starting the background thread.");
+        Log.v(TAG, "Queueing the background request.");
 
-        // Run the network request.
-        new BackgroundScraper(this.mURL, new BackgroundListener());
+        // Run the network request, or join an identical one in flight.
+        RequestCoalescer.getInstance().load(this);
     }
 
 
     /**
-     * Class that manages the background listener.
+     * Cancel the running request.
+     * A queued network request is dropped and an open connection is closed,
+     * unless other scrapers wait for the same page.
+     * <p>
+     * Once this method returns, the listener will not be called for the cancelled request.
+     *
+     * @return true if a request was cancelled, false if no request was running.
      */
-    private final class BackgroundListener
-            implements BackgroundScraperListener
+    public final boolean cancel()
     {
-        /**
-         * Called when the document is loaded successfully.
-         *
-         * @param response the web page asked from the scrapper.
-         */
-        @Override
-        public void onDocument(@NonNull Connection.Response response)
+        synchronized (this.mListenerLock)
         {
-            try {
-                // Parse the response.
-                Log.v(TAG, "Start parsing the page.");
+            if (this.mRequest == null)
+                return false;
 
-                mResult = processPage(response);
-                callListenerOnResult(mResult);
+            // From now on, the result of the request is ignored.
+            this.mRequest = null;
+            this.mBackgroundThreadRunning = false;
+        }
 
-                // Clear the flag.
-                Log.v(TAG, "Server is shutting down after successful scrap.");
-                mBackgroundThreadRunning = false;
+        Log.v(TAG, "Cancel the background request.");
+        RequestCoalescer.getInstance().cancel(this);
+        return true;
+    }
+
+
+    /**
+     * Called by the {@code RequestCoalescer} when the scraper is attached to a request.
+     *
+     * @param request the request this scraper waits for.
+     */
+    final void attachRequest(@NonNull Object request) {
+        this.mRequest = request;
+    }
+
+
+    /**
+     * Called by the {@code RequestCoalescer} when the request result is ready.
+     *
+     * @param request the request that is done.
+     * @param result  the result processed from the webpage.
+     */
+    final void onRequestResult(@NonNull Object request, @NonNull Result result)
+    {
+        synchronized (this.mListenerLock)
+        {
+            // The request was cancelled.
+            if (this.mRequest != request)
+                return;
+
+            this.mRequest = null;
+
+            try {
+                publishResult(result);
             }
             catch (Exception e) {
-                // maybe processChannels() will throw an error.
-                // To not duplicate code, call the onError() method.
-                Log.v(TAG, "Error while parsing the page.");
-                this.onError(e);
+                // maybe the listener will throw an error.
+                Log.v(TAG, "Error while publishing the result.");
+                callListenerOnError(e);
+            }
+            finally {
+                // Clear the flag.
+                Log.v(TAG, "Request is done after successful scrap.");
+                mBackgroundThreadRunning = false;
             }
         }
+    }
 
-        /**
-         * Called on general error from the network communication.
-         *
-         * @param exception describes the problem.
-         */
-        @Override
-        public void onError(@NonNull Exception exception)
+
+    /**
+     * Called by the {@code RequestCoalescer} when the page of the request was read,
+     * to process it into the result of this scraper.
+     *
+     * @param request the request that is done.
+     * @param page    the page read by the scraper that started the request.
+     */
+    final void onRequestPage(@NonNull Object request, @NonNull Object page)
+    {
+        Result result;
+
+        try {
+            result = processSharedPage(page);
+        }
+        catch (Exception e) {
+            Log.v(TAG, "Error while processing the shared page.");
+            onRequestError(request, e);
+            return;
+        }
+
+        onRequestResult(request, result);
+    }
+
+
+    /**
+     * Called by the {@code RequestCoalescer} when the request failed.
+     *
+     * @param request   the request that failed.
+     * @param exception describes the problem.
+     */
+    final void onRequestError(@NonNull Object request, @NonNull Exception exception)
+    {
+        synchronized (this.mListenerLock)
         {
-            // Inform the listener about an error.
-            callListenerOnError(exception);
+            // The request was cancelled.
+            if (this.mRequest != request)
+                return;
 
-            // Clear the flag.
-            Log.v(TAG, "Server is shutting down after unsuccessful scrap.");
-            mBackgroundThreadRunning = false;
+            this.mRequest = null;
+
+            try {
+                // Inform the listener about an error.
+                callListenerOnError(exception);
+            }
+            finally {
+                // Clear the flag.
+                Log.v(TAG, "Request is done after unsuccessful scrap.");
+                mBackgroundThreadRunning = false;
+            }
         }
     }
 
@@ -151,10 +291,53 @@ public abstract class GeneralScraper<Result, ListenerClass extends GeneralListen
      *
      * @throws WebParsingException on parsing conflict.
      */
-    protected abstract Result processPage(@NonNull Connection.Response response)
+    protected abstract Result processPage(@NonNull ScraperResponse response)
             throws WebParsingException, IOException;
 
 
+    /**
+     * Read the webpage response once, for all the scrapers sharing the request.
+     * By default the page is read into the result of this scraper.
+     *
+     * @param response the loaded webpage.
+     * @return the page, as every scraper of the sharing type takes it.
+     *
+     * @throws WebParsingException on parsing conflict.
+     */
+    protected @NonNull Object readSharedPage(@NonNull ScraperResponse response)
+            throws WebParsingException, IOException
+    {
+        return processPage(response);
+    }
+
+
+    /**
+     * Process the page read for the scrapers sharing the request, into the result of this scraper.
+     * By default the page is the result.
+     *
+     * @param page the page read by {@code readSharedPage()}, of the scraper that started the request.
+     * @return Result scraped from the page.
+     *
+     * @throws WebParsingException on parsing conflict.
+     */
+    @SuppressWarnings("unchecked")
+    protected @NonNull Result processSharedPage(@NonNull Object page) throws WebParsingException {
+        return (Result) page;
+    }
+
+
+    /**
+     * Store the result as the last retrieved result, and inform the listener about it.
+     *
+     * @param result the result to publish.
+     */
+    protected final void publishResult(@NonNull Result result)
+    {
+        this.mResult = result;
+        callListenerOnResult(result);
+    }
+
+
     /**
      * Return the last retrieved result.
      * This method does not create the loading operation itself,
@@ -0,0 +1,624 @@
+package com.penkov.vikstv.web.base;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Transport that keeps the connections alive, and reuses them between requests to the same host.
+ * <p>
+ * The number of connections to each host is limited,
+ * a request to a busy host waits until one of its connections is released.
+ * {@code PLAYBACK} requests are not limited, they never wait behind background requests.
+ * <p>
+ * Optionally, the responses are stored in a size bounded disk cache.
+ * The cache follows the Cache-Control headers, and revalidates stale pages
+ * with their ETag / Last-Modified. A page that was not modified (304)
+ * is served from the cache, and processed as any other page.
+ */
+public class PooledTransport implements ScraperTransport
+{
+    // TAG to use on logcat.
+    public static final String TAG = PooledTransport.class.getSimpleName();
+
+    // Default configuration.
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    public static final long DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+    public static final long DEFAULT_READ_TIMEOUT_MS = 15_000;
+    public static final long DEFAULT_TOTAL_TIMEOUT_MS = 30_000;
+
+    // Status of a revalidated page that was not modified.
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    // Interval to check if a request waiting for a connection was cancelled.
+    private static final long PERMIT_POLL_MS = 100;
+
+    // Idle connections kept in the pool, and for how long.
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    // Present as a browser, the same way the site is used to.
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/126.0.0.0 Safari/537.36";
+
+    // The HTTP client, and its connections pool.
+    private final OkHttpClient mClient;
+    private final ConnectionPool mConnectionPool;
+
+    // The responses disk cache, or null if not cached.
+    private final @Nullable Cache mCache;
+
+    // Limit of concurrent connections to each host.
+    private final int mMaxConnectionsPerHost;
+    private final Map<String, Semaphore> mHostPermits = new HashMap<>();
+
+    // Creation time of the pooled connections, to know their age.
+    private final Map<Connection, Long> mConnectionCreation =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Metrics.
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mConnectionsAcquired = new AtomicLong();
+    private final AtomicLong mPoolHits = new AtomicLong();
+    private final AtomicLong mReusedAgeTotalMs = new AtomicLong();
+    private final AtomicLong mReusedAgeMaxMs = new AtomicLong();
+    private final AtomicLong mCacheHits = new AtomicLong();
+    private final AtomicLong mCacheMisses = new AtomicLong();
+    private final AtomicLong mCacheRevalidations = new AtomicLong();
+    private final AtomicLong mCacheRevalidationHits = new AtomicLong();
+
+
+    /**
+     * Create new pooled transport with the default configuration.
+     */
+    public PooledTransport()
+    {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST,
+                DEFAULT_CONNECT_TIMEOUT_MS,
+                DEFAULT_READ_TIMEOUT_MS,
+                DEFAULT_TOTAL_TIMEOUT_MS);
+    }
+
+
+    /**
+     * Create new pooled transport with the default configuration, and disk cache.
+     *
+     * @param cacheDirectory the directory to store the cache in, used only by this transport.
+     * @param cacheMaxBytes  the maximum size of the cache, in bytes.
+     */
+    public PooledTransport(@NonNull File cacheDirectory, long cacheMaxBytes)
+    {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST,
+                DEFAULT_CONNECT_TIMEOUT_MS,
+                DEFAULT_READ_TIMEOUT_MS,
+                DEFAULT_TOTAL_TIMEOUT_MS,
+                cacheDirectory,
+                cacheMaxBytes);
+    }
+
+
+    /**
+     * Create new pooled transport, without disk cache.
+     *
+     * @param maxConnectionsPerHost maximum concurrent connections to each host.
+     * @param connectTimeoutMs      timeout to establish connection, in milliseconds.
+     * @param readTimeoutMs         timeout between two reads of the connection, in milliseconds.
+     * @param totalTimeoutMs        timeout of the whole request, in milliseconds.
+     */
+    public PooledTransport(int maxConnectionsPerHost,
+                           long connectTimeoutMs,
+                           long readTimeoutMs,
+                           long totalTimeoutMs)
+    {
+        this(maxConnectionsPerHost, connectTimeoutMs, readTimeoutMs, totalTimeoutMs, null, 0);
+    }
+
+
+    /**
+     * Create new pooled transport.
+     *
+     * @param maxConnectionsPerHost maximum concurrent connections to each host.
+     * @param connectTimeoutMs      timeout to establish connection, in milliseconds.
+     * @param readTimeoutMs         timeout between two reads of the connection, in milliseconds.
+     * @param totalTimeoutMs        timeout of the whole request, in milliseconds.
+     * @param cacheDirectory        the directory to store the cache in, or null for no cache.
+     * @param cacheMaxBytes         the maximum size of the cache, in bytes.
+     *                              The least recently used pages are evicted above it.
+     */
+    public PooledTransport(int maxConnectionsPerHost,
+                           long connectTimeoutMs,
+                           long readTimeoutMs,
+                           long totalTimeoutMs,
+                           @Nullable File cacheDirectory,
+                           long cacheMaxBytes)
+    {
+        this.mMaxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        this.mConnectionPool = new ConnectionPool(
+                MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+        this.mCache = cacheDirectory != null ? new Cache(cacheDirectory, cacheMaxBytes) : null;
+
+        this.mClient = new OkHttpClient.Builder()
+                .connectionPool(this.mConnectionPool)
+                .cache(this.mCache)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(totalTimeoutMs, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(call -> new StatisticsListener())
+                .build();
+    }
+
+
+    @Override
+    public @NonNull ScraperCall newCall(@NonNull String URL, @NonNull ScraperPriority priority) {
+        return new PooledCall(URL, priority);
+    }
+
+
+    /**
+     * Get the HTTP client used by this transport.
+     * Other network users can build on it, to share its connections.
+     *
+     * @return the HTTP client.
+     */
+    public @NonNull OkHttpClient getClient() {
+        return this.mClient;
+    }
+
+
+    /**
+     * Get the number of requests made with this transport.
+     *
+     * @return the requests count.
+     */
+    public long getRequestCount() {
+        return this.mRequests.get();
+    }
+
+
+    /**
+     * Get the part of the connections that were taken from the pool, rather than created.
+     *
+     * @return the pool hit rate, between 0 and 1.
+     */
+    public float getPoolHitRate()
+    {
+        long acquired = this.mConnectionsAcquired.get();
+        return acquired == 0 ? 0f : (float) this.mPoolHits.get() / acquired;
+    }
+
+
+    /**
+     * Get the number of connections that were taken from the pool.
+     *
+     * @return the pool hits count.
+     */
+    public long getPoolHitCount() {
+        return this.mPoolHits.get();
+    }
+
+
+    /**
+     * Get the average age of the connections taken from the pool, at the time they were taken.
+     *
+     * @return the average age in milliseconds.
+     */
+    public long getAverageReusedConnectionAgeMs()
+    {
+        long hits = this.mPoolHits.get();
+        return hits == 0 ? 0 : this.mReusedAgeTotalMs.get() / hits;
+    }
+
+
+    /**
+     * Get the oldest age of a connection taken from the pool, at the time it was taken.
+     *
+     * @return the maximum age in milliseconds.
+     */
+    public long getMaxReusedConnectionAgeMs() {
+        return this.mReusedAgeMaxMs.get();
+    }
+
+
+    /**
+     * Get the number of open connections (idle and in use).
+     *
+     * @return the open connections count.
+     */
+    public int getOpenConnectionCount() {
+        return this.mConnectionPool.connectionCount();
+    }
+
+
+    /**
+     * Get the number of idle connections waiting for reuse.
+     *
+     * @return the idle connections count.
+     */
+    public int getIdleConnectionCount() {
+        return this.mConnectionPool.idleConnectionCount();
+    }
+
+
+    /**
+     * Get the number of pages served by the cache without network request.
+     *
+     * @return the cache hits count.
+     */
+    public long getCacheHitCount() {
+        return this.mCacheHits.get();
+    }
+
+
+    /**
+     * Get the number of pages that were not (validly) cached, and downloaded from the network.
+     *
+     * @return the cache misses count.
+     */
+    public long getCacheMissCount() {
+        return this.mCacheMisses.get();
+    }
+
+
+    /**
+     * Get the number of stale cached pages that were revalidated with the server.
+     *
+     * @return the revalidations count.
+     */
+    public long getCacheRevalidationCount() {
+        return this.mCacheRevalidations.get();
+    }
+
+
+    /**
+     * Get the number of revalidated pages that were not modified, and served by the cache.
+     *
+     * @return the not modified revalidations count.
+     */
+    public long getCacheRevalidationHitCount() {
+        return this.mCacheRevalidationHits.get();
+    }
+
+
+    /**
+     * Get the current size of the disk cache.
+     *
+     * @return the cache size in bytes, or 0 if there is no cache.
+     */
+    public long getCacheSize()
+    {
+        if (this.mCache == null)
+            return 0;
+
+        try {
+            return this.mCache.size();
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Couldn't get the cache size.", e);
+            return 0;
+        }
+    }
+
+
+    /**
+     * Close all the idle connections.
+     */
+    public void evictIdleConnections()
+    {
+        Log.v(TAG, "Evicting idle connections.");
+        this.mConnectionPool.evictAll();
+    }
+
+
+    /**
+     * Get the connections limiter of a host.
+     *
+     * @param host the host name.
+     * @return the host semaphore.
+     */
+    private @NonNull Semaphore getHostPermit(@NonNull String host)
+    {
+        synchronized (this.mHostPermits)
+        {
+            Semaphore permit = this.mHostPermits.get(host);
+
+            if (permit == null) {
+                permit = new Semaphore(this.mMaxConnectionsPerHost, true);
+                this.mHostPermits.put(host, permit);
+            }
+
+            return permit;
+        }
+    }
+
+
+    /**
+     * Convert the headers to map with lower case names.
+     * Repeated headers keep their last value.
+     *
+     * @param headers the response headers.
+     * @return the headers map.
+     */
+    private static @NonNull Map<String, String> getHeaders(@NonNull Headers headers)
+    {
+        Map<String, String> map = new HashMap<>(headers.size());
+
+        for (int i = 0; i < headers.size(); i++)
+            map.put(headers.name(i).toLowerCase(Locale.ROOT), headers.value(i));
+
+        return map;
+    }
+
+
+    /**
+     * Single request, made over the pooled connections.
+     */
+    private final class PooledCall implements ScraperCall
+    {
+        private final String mURL;
+        private final ScraperPriority mPriority;
+
+        // The HTTP call, once the host permit was acquired.
+        private volatile Call mCall = null;
+        private volatile boolean mCancelled = false;
+
+        private PooledCall(@NonNull String URL, @NonNull ScraperPriority priority)
+        {
+            this.mURL = URL;
+            this.mPriority = priority;
+        }
+
+        @Override
+        public @NonNull ScraperResponse execute() throws IOException
+        {
+            // Check the URL before waiting for a connection.
+            HttpUrl url = HttpUrl.parse(this.mURL);
+            if (url == null)
+                throw new MalformedURLException("Invalid URL: " + this.mURL);
+
+            mRequests.incrementAndGet();
+
+            // Wait for a free connection to the host, unless the user waits for the video.
+            Semaphore hostPermit = this.mPriority != ScraperPriority.PLAYBACK
+                    ? getHostPermit(url.host())
+                    : null;
+
+            if (hostPermit != null)
+                acquirePermit(hostPermit);
+
+            try {
+                Request request = new Request.Builder()
+                        .url(url)
+                        .header("User-Agent", USER_AGENT)
+                        .get()
+                        .build();
+
+                Call call = mClient.newCall(request);
+                this.mCall = call;
+
+                // Cancelled while the call was created.
+                if (this.mCancelled)
+                    call.cancel();
+
+                Response response = call.execute();
+
+                // Only successful pages are passed on, as jsoup used to.
+                if (!response.isSuccessful())
+                {
+                    response.close();
+                    throw new HttpStatusException(
+                            "HTTP error fetching URL", response.code(), this.mURL);
+                }
+
+                ResponseBody body = response.body();
+                if (body == null)
+                {
+                    response.close();
+                    throw new IOException("Response without body.");
+                }
+
+                // Served by the cache, with or without revalidation.
+                final Response networkResponse = response.networkResponse();
+                final boolean fromCache = response.cacheResponse() != null &&
+                        (networkResponse == null || networkResponse.code() == HTTP_NOT_MODIFIED);
+
+                // The host permit is released with the response.
+                return new ScraperResponse(
+                        response.request().url().toString(),
+                        response.code(),
+                        getHeaders(response.headers()),
+                        new ReleasingInputStream(body.byteStream(), hostPermit),
+                        fromCache);
+            }
+            catch (IOException | RuntimeException e) {
+                if (hostPermit != null)
+                    hostPermit.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void cancel()
+        {
+            this.mCancelled = true;
+
+            Call call = this.mCall;
+            if (call != null)
+                call.cancel();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.mCancelled;
+        }
+
+        /**
+         * Wait for the host permit, until it is acquired or the call is cancelled.
+         *
+         * @param hostPermit the permit of the host.
+         * @throws IOException if cancelled or interrupted while waiting.
+         */
+        private void acquirePermit(@NonNull Semaphore hostPermit) throws IOException
+        {
+            try {
+                while (!hostPermit.tryAcquire(PERMIT_POLL_MS, TimeUnit.MILLISECONDS))
+                {
+                    if (this.mCancelled)
+                        throw new IOException("Canceled");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for connection.");
+            }
+
+            // Cancelled just as the permit was acquired.
+            if (this.mCancelled) {
+                hostPermit.release();
+                throw new IOException("Canceled");
+            }
+        }
+    }
+
+
+    /**
+     * Body stream that releases the host permit (if any) when closed.
+     */
+    private static final class ReleasingInputStream extends FilterInputStream
+    {
+        private final Semaphore mPermit;
+        private final AtomicBoolean mReleased = new AtomicBoolean(false);
+
+        private ReleasingInputStream(@NonNull InputStream in, @Nullable Semaphore permit)
+        {
+            super(in);
+            this.mPermit = permit;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try {
+                super.close();
+            }
+            finally {
+                if (this.mPermit != null && this.mReleased.compareAndSet(false, true))
+                    this.mPermit.release();
+            }
+        }
+    }
+
+
+    /**
+     * Listener on single call events, collects the pool statistics.
+     */
+    private final class StatisticsListener extends EventListener
+    {
+        // Whether the call is making a new connection.
+        private boolean mConnecting = false;
+
+        // Whether the call revalidates a cached page.
+        private boolean mRevalidating = false;
+
+        @Override
+        public void connectStart(@NonNull Call call,
+                                 @NonNull InetSocketAddress inetSocketAddress,
+                                 @NonNull Proxy proxy)
+        {
+            this.mConnecting = true;
+        }
+
+        @Override
+        public void connectionAcquired(@NonNull Call call, @NonNull Connection connection)
+        {
+            final long now = SystemClock.elapsedRealtime();
+            mConnectionsAcquired.incrementAndGet();
+
+            // New connection, remember when it was created.
+            if (this.mConnecting) {
+                mConnectionCreation.put(connection, now);
+                return;
+            }
+
+            // Connection from the pool.
+            mPoolHits.incrementAndGet();
+
+            Long created = mConnectionCreation.get(connection);
+            if (created == null)
+                return;
+
+            final long age = now - created;
+            mReusedAgeTotalMs.addAndGet(age);
+
+            long max;
+            do {
+                max = mReusedAgeMaxMs.get();
+            } while (age > max && !mReusedAgeMaxMs.compareAndSet(max, age));
+        }
+
+        @Override
+        public void connectionReleased(@NonNull Call call, @NonNull Connection connection)
+        {
+            // Following requests of the call (redirects) may reuse the connection.
+            this.mConnecting = false;
+        }
+
+        @Override
+        public void cacheConditionalHit(@NonNull Call call, @NonNull Response cachedResponse)
+        {
+            // Followed by cache hit (not modified) or cache miss (modified).
+            this.mRevalidating = true;
+            mCacheRevalidations.incrementAndGet();
+        }
+
+        @Override
+        public void cacheHit(@NonNull Call call, @NonNull Response response)
+        {
+            if (this.mRevalidating)
+                mCacheRevalidationHits.incrementAndGet();
+            else
+                mCacheHits.incrementAndGet();
+        }
+
+        @Override
+        public void cacheMiss(@NonNull Call call)
+        {
+            if (!this.mRevalidating)
+                mCacheMisses.incrementAndGet();
+        }
+    }
+}
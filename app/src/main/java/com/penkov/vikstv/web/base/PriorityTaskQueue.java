@@ -0,0 +1,541 @@
+package com.penkov.vikstv.web.base;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The queue of the {@code ScraperDispatcher} - a bounded queue ordered by the tasks priority.
+ * <p>
+ * Each priority class is a FIFO queue, and the next task is taken from the highest class.
+ * To prevent starvation, a task is promoted by one class for every aging period it waited.
+ * The priority of a queued task can be changed, it keeps its waiting time.
+ * <p>
+ * {@code PLAYBACK} tasks are not queued when no worker is free,
+ * so the executor can start its express worker for them - also when a queued task is raised to it.
+ */
+final class PriorityTaskQueue
+        extends AbstractQueue<Runnable>
+        implements BlockingQueue<Runnable>
+{
+    // All the priority classes, by their order.
+    private static final ScraperPriority[] PRIORITIES = ScraperPriority.values();
+
+    // Maximum number of queued tasks.
+    private final int mCapacity;
+
+    // Waiting time that promotes a task by one class.
+    private final long mAgingMs;
+
+    // Lock over the whole queue.
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = this.mLock.newCondition();
+    private final Condition mNotFull = this.mLock.newCondition();
+
+    // Queue per priority class, by the class order.
+    private final List<ArrayDeque<Entry>> mQueues = new ArrayList<>(PRIORITIES.length);
+
+    // The queued entries, by their task.
+    private final Map<Runnable, Entry> mEntries = new IdentityHashMap<>();
+
+    // Number of workers waiting for a task.
+    private int mWaitingWorkers = 0;
+
+
+    /**
+     * Queued task, with its priority and queuing time.
+     */
+    private static final class Entry
+    {
+        private final Runnable mTask;
+        private final long mQueuedTime;
+        private ScraperPriority mPriority;
+
+        private Entry(@NonNull Runnable task, @NonNull ScraperPriority priority, long queuedTime)
+        {
+            this.mTask = task;
+            this.mPriority = priority;
+            this.mQueuedTime = queuedTime;
+        }
+    }
+
+
+    /**
+     * Create new queue.
+     *
+     * @param capacity maximum number of queued tasks.
+     * @param agingMs  waiting time that promotes a task by one priority class.
+     */
+    PriorityTaskQueue(int capacity, long agingMs)
+    {
+        this.mCapacity = capacity;
+        this.mAgingMs = agingMs;
+
+        for (int i = 0; i < PRIORITIES.length; i++)
+            this.mQueues.add(new ArrayDeque<>());
+    }
+
+
+    /**
+     * Queue a task, if there is room for it.
+     * A {@code PLAYBACK} task is refused when no worker waits for it,
+     * so the executor runs it on a new worker instead.
+     *
+     * @param task the task to queue.
+     * @return true if queued, false otherwise.
+     */
+    @Override
+    public boolean offer(@NonNull Runnable task)
+    {
+        this.mLock.lock();
+        try {
+            ScraperPriority priority = priorityOf(task);
+
+            if (priority == ScraperPriority.PLAYBACK && this.mWaitingWorkers == 0)
+                return false;
+
+            if (this.mEntries.size() >= this.mCapacity)
+                return false;
+
+            insert(task, priority);
+            return true;
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    /**
+     * Queue a task even if the queue is full, by dropping a less important one.
+     * The dropped task is the oldest of the lowest class,
+     * unless the new task is of lower class than all the queued ones.
+     *
+     * @param task the task to queue.
+     * @return the dropped task (maybe the new one), or null if nothing was dropped.
+     */
+    @Nullable Runnable offerEvicting(@NonNull Runnable task)
+    {
+        this.mLock.lock();
+        try {
+            ScraperPriority priority = priorityOf(task);
+            Runnable dropped = null;
+
+            if (this.mEntries.size() >= this.mCapacity)
+            {
+                // The least important queued task.
+                Entry lowest = null;
+                for (int i = PRIORITIES.length - 1; i >= 0 && lowest == null; i--)
+                    lowest = this.mQueues.get(i).peekFirst();
+
+                // The new task is the least important.
+                if (lowest == null || lowest.mPriority.isHigherThan(priority))
+                    return task;
+
+                removeEntry(lowest);
+                dropped = lowest.mTask;
+            }
+
+            insert(task, priority);
+            return dropped;
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    /**
+     * Change the priority of a queued task.
+     * The task keeps its waiting time, for the aging.
+     *
+     * @param task     the queued task.
+     * @param priority the new priority.
+     * @return true if the task was queued, false otherwise.
+     */
+    boolean reprioritize(@NonNull Runnable task, @NonNull ScraperPriority priority)
+    {
+        this.mLock.lock();
+        try {
+            Entry entry = this.mEntries.get(task);
+            if (entry == null)
+                return false;
+
+            if (entry.mPriority == priority)
+                return true;
+
+            this.mQueues.get(entry.mPriority.ordinal()).remove(entry);
+            entry.mPriority = priority;
+
+            // Keep the class ordered by the queuing time.
+            ArrayDeque<Entry> queue = this.mQueues.get(priority.ordinal());
+            ArrayDeque<Entry> reordered = new ArrayDeque<>(queue.size() + 1);
+            boolean added = false;
+
+            for (Entry other : queue)
+            {
+                if (!added && other.mQueuedTime > entry.mQueuedTime) {
+                    reordered.addLast(entry);
+                    added = true;
+                }
+                reordered.addLast(other);
+            }
+
+            if (!added)
+                reordered.addLast(entry);
+
+            queue.clear();
+            queue.addAll(reordered);
+            return true;
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    /**
+     * Remove a queued task raised to {@code PLAYBACK}, when no worker waits for it -
+     * so it is run again, on the express worker as a new playback task would.
+     *
+     * @param task the queued task.
+     * @return true if the task was removed, false if it isn't queued or a worker waits.
+     */
+    boolean removeForExpress(@NonNull Runnable task)
+    {
+        this.mLock.lock();
+        try {
+            Entry entry = this.mEntries.get(task);
+            if (entry == null || this.mWaitingWorkers > 0)
+                return false;
+
+            removeEntry(entry);
+            return true;
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void put(@NonNull Runnable task) throws InterruptedException
+    {
+        this.mLock.lockInterruptibly();
+        try {
+            while (this.mEntries.size() >= this.mCapacity)
+                this.mNotFull.await();
+
+            insert(task, priorityOf(task));
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public boolean offer(@NonNull Runnable task, long timeout, @NonNull TimeUnit unit) {
+        return offer(task);
+    }
+
+
+    @Override
+    public @Nullable Runnable poll()
+    {
+        this.mLock.lock();
+        try {
+            return next();
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public @NonNull Runnable take() throws InterruptedException
+    {
+        this.mLock.lockInterruptibly();
+        try {
+            this.mWaitingWorkers++;
+            try {
+                Runnable task;
+                while ((task = next()) == null)
+                    this.mNotEmpty.await();
+
+                return task;
+            }
+            finally {
+                this.mWaitingWorkers--;
+            }
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public @Nullable Runnable poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+
+        this.mLock.lockInterruptibly();
+        try {
+            this.mWaitingWorkers++;
+            try {
+                Runnable task;
+                while ((task = next()) == null)
+                {
+                    if (nanos <= 0)
+                        return null;
+
+                    nanos = this.mNotEmpty.awaitNanos(nanos);
+                }
+
+                return task;
+            }
+            finally {
+                this.mWaitingWorkers--;
+            }
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public @Nullable Runnable peek()
+    {
+        this.mLock.lock();
+        try {
+            Entry entry = selectNext();
+            return entry != null ? entry.mTask : null;
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public boolean remove(@Nullable Object task)
+    {
+        this.mLock.lock();
+        try {
+            Entry entry = this.mEntries.get(task);
+            if (entry == null)
+                return false;
+
+            removeEntry(entry);
+            return true;
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public int size()
+    {
+        this.mLock.lock();
+        try {
+            return this.mEntries.size();
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public int remainingCapacity()
+    {
+        this.mLock.lock();
+        try {
+            return this.mCapacity - this.mEntries.size();
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> collection, int maxElements)
+    {
+        this.mLock.lock();
+        try {
+            int count = 0;
+            Runnable task;
+
+            while (count < maxElements && (task = next()) != null) {
+                collection.add(task);
+                count++;
+            }
+
+            return count;
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    /**
+     * Iterate over a snapshot of the queued tasks, by their classes.
+     *
+     * @return the tasks iterator.
+     */
+    @Override
+    public @NonNull Iterator<Runnable> iterator()
+    {
+        this.mLock.lock();
+        try {
+            List<Runnable> tasks = new ArrayList<>(this.mEntries.size());
+
+            for (ArrayDeque<Entry> queue : this.mQueues)
+                for (Entry entry : queue)
+                    tasks.add(entry.mTask);
+
+            return tasks.iterator();
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    /**
+     * Get the number of queued tasks of a priority class.
+     *
+     * @param priority the priority class.
+     * @return the queued tasks count.
+     */
+    int size(@NonNull ScraperPriority priority)
+    {
+        this.mLock.lock();
+        try {
+            return this.mQueues.get(priority.ordinal()).size();
+        }
+        finally {
+            this.mLock.unlock();
+        }
+    }
+
+
+    /**
+     * Add a task at the end of its class. Must be called under the lock.
+     *
+     * @param task     the task to add.
+     * @param priority the task priority.
+     */
+    private void insert(@NonNull Runnable task, @NonNull ScraperPriority priority)
+    {
+        Entry entry = new Entry(task, priority, SystemClock.uptimeMillis());
+
+        this.mQueues.get(priority.ordinal()).addLast(entry);
+        this.mEntries.put(task, entry);
+        this.mNotEmpty.signal();
+    }
+
+
+    /**
+     * Remove a queued entry. Must be called under the lock.
+     *
+     * @param entry the entry to remove.
+     */
+    private void removeEntry(@NonNull Entry entry)
+    {
+        this.mQueues.get(entry.mPriority.ordinal()).remove(entry);
+        this.mEntries.remove(entry.mTask);
+        this.mNotFull.signal();
+    }
+
+
+    /**
+     * Remove and return the next task to run. Must be called under the lock.
+     *
+     * @return the next task, or null if the queue is empty.
+     */
+    private @Nullable Runnable next()
+    {
+        Entry entry = selectNext();
+        if (entry == null)
+            return null;
+
+        removeEntry(entry);
+        return entry.mTask;
+    }
+
+
+    /**
+     * Select the next task to run - the oldest task of the highest class, after aging.
+     * Must be called under the lock.
+     *
+     * @return the next entry, or null if the queue is empty.
+     */
+    private @Nullable Entry selectNext()
+    {
+        long now = SystemClock.uptimeMillis();
+        Entry best = null;
+        long bestRank = Long.MAX_VALUE;
+
+        // Only the head of each class can win, it waited the longest in its class.
+        for (ArrayDeque<Entry> queue : this.mQueues)
+        {
+            Entry head = queue.peekFirst();
+            if (head == null)
+                continue;
+
+            // Aging promotes up to the top class, never above it.
+            long rank = Math.max(0,
+                    head.mPriority.ordinal() - (now - head.mQueuedTime) / this.mAgingMs);
+
+            // On a tie, the higher class wins - the classes are visited from the top.
+            if (rank < bestRank) {
+                best = head;
+                bestRank = rank;
+            }
+        }
+
+        return best;
+    }
+
+
+    /**
+     * Get the priority of a task.
+     *
+     * @param task the task.
+     * @return the task priority, {@code INTERACTIVE} for non dispatcher tasks.
+     */
+    private static @NonNull ScraperPriority priorityOf(@NonNull Runnable task)
+    {
+        return task instanceof ScraperDispatcher.Task
+                ? ((ScraperDispatcher.Task) task).getPriority()
+                : ScraperPriority.INTERACTIVE;
+    }
+}
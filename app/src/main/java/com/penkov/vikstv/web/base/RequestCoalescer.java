@@ -0,0 +1,404 @@
+package com.penkov.vikstv.web.base;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges concurrent requests of the same page by the same type of scraper.
+ * <p>
+ * The first scraper to ask for a page starts the network request,
+ * every other scraper of the same sharing type asking for the same page while it is in flight
+ * attaches to it. When the page arrives it is read once, each scraper processes
+ * its result from it, and the result (or the error) is passed to the scraper.
+ * <p>
+ * A cancelled scraper is detached from its request,
+ * and when no scraper is left the network request itself is cancelled.
+ */
+public final class RequestCoalescer
+{
+    // TAG to use on logcat.
+    public static final String TAG = RequestCoalescer.class.getSimpleName();
+
+    // The single instance of the coalescer.
+    private static volatile RequestCoalescer sInstance = null;
+
+    // The requests in flight, by their key.
+    private final Map<String, InFlightRequest> mInFlight = new HashMap<>();
+
+    // Metrics.
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mCoalescedRequests = new AtomicLong();
+    private final AtomicLong mCancelledLoads = new AtomicLong();
+    private final AtomicLong mDroppedRequests = new AtomicLong();
+    private final AtomicLong mAbortedRequests = new AtomicLong();
+
+
+    /**
+     * Get the shared coalescer, creating it on first use.
+     *
+     * @return the coalescer instance.
+     */
+    public static @NonNull RequestCoalescer getInstance()
+    {
+        if (sInstance == null)
+        {
+            synchronized (RequestCoalescer.class)
+            {
+                if (sInstance == null)
+                    sInstance = new RequestCoalescer();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    private RequestCoalescer() { }
+
+
+    /**
+     * Load the page of the scraper, either by a new network request,
+     * or by attaching to an identical request already in flight.
+     *
+     * @param scraper the scraper that asks for its page.
+     */
+    void load(@NonNull GeneralScraper<?, ?> scraper)
+    {
+        final String key = getKey(scraper);
+        InFlightRequest request;
+        boolean started = false;
+
+        this.mRequests.incrementAndGet();
+
+        synchronized (this.mInFlight)
+        {
+            request = this.mInFlight.get(key);
+
+            // Same page is already on its way, wait for it.
+            if (request != null)
+            {
+                request.mScrapers.add(scraper);
+                scraper.attachRequest(request);
+                this.mCoalescedRequests.incrementAndGet();
+
+                Log.v(TAG, "Request coalesced: " + key);
+            }
+            else
+            {
+                request = new InFlightRequest(key, scraper);
+                this.mInFlight.put(key, request);
+                scraper.attachRequest(request);
+                started = true;
+            }
+        }
+
+        // Run the network request on the shared workers, out of the lock -
+        // a full queue informs the dropped request (and its listeners) on this thread.
+        if (started) {
+            ScraperDispatcher.getInstance().submit(request.mBackgroundScraper);
+            return;
+        }
+
+        // The request is as urgent as its most urgent scraper.
+        updatePriority(request);
+    }
+
+
+    /**
+     * Update the priority of the scraper request, after the scraper priority changed.
+     *
+     * @param scraper the scraper that changed its priority.
+     */
+    void updatePriority(@NonNull GeneralScraper<?, ?> scraper)
+    {
+        InFlightRequest request;
+
+        synchronized (this.mInFlight)
+        {
+            request = this.mInFlight.get(getKey(scraper));
+            if (request == null || !request.mScrapers.contains(scraper))
+                return;
+        }
+
+        updatePriority(request);
+    }
+
+
+    /**
+     * Detach the scraper from its request, so it will not get the result.
+     * If no other scraper waits for the request, the network request is cancelled.
+     *
+     * @param scraper the scraper that cancels its load.
+     * @return true if the scraper was detached, false if it has no request in flight.
+     */
+    boolean cancel(@NonNull GeneralScraper<?, ?> scraper)
+    {
+        InFlightRequest request;
+        boolean abandoned;
+
+        synchronized (this.mInFlight)
+        {
+            request = this.mInFlight.get(getKey(scraper));
+
+            if (request == null || !request.mScrapers.remove(scraper))
+                return false;
+
+            this.mCancelledLoads.incrementAndGet();
+
+            // Nobody waits, no one else can attach to it.
+            abandoned = request.mScrapers.isEmpty();
+            if (abandoned)
+                this.mInFlight.remove(request.mKey);
+        }
+
+        // Other scrapers still wait for the page, maybe less urgently.
+        if (!abandoned) {
+            updatePriority(request);
+            return true;
+        }
+
+        // Count the work that was not done.
+        if (request.mBackgroundScraper.cancel())
+            this.mDroppedRequests.incrementAndGet();
+        else if (!request.mBackgroundScraper.isFinished())
+            this.mAbortedRequests.incrementAndGet();
+
+        Log.v(TAG, "Request cancelled: " + request.mKey);
+        return true;
+    }
+
+
+    /**
+     * Get the total number of loads asked from the coalescer.
+     *
+     * @return the requests count.
+     */
+    public long getRequestCount() {
+        return this.mRequests.get();
+    }
+
+
+    /**
+     * Get the number of loads that were attached to a request already in flight.
+     *
+     * @return the coalesced requests count.
+     */
+    public long getCoalescedCount() {
+        return this.mCoalescedRequests.get();
+    }
+
+
+    /**
+     * Get the number of loads that were cancelled before their result.
+     *
+     * @return the cancelled loads count.
+     */
+    public long getCancelledCount() {
+        return this.mCancelledLoads.get();
+    }
+
+
+    /**
+     * Get the number of network requests that were cancelled while still queued,
+     * no connection was made for them.
+     *
+     * @return the dropped requests count.
+     */
+    public long getDroppedCount() {
+        return this.mDroppedRequests.get();
+    }
+
+
+    /**
+     * Get the number of network requests that were cancelled while in progress,
+     * their connection was closed and their page was not processed.
+     *
+     * @return the aborted requests count.
+     */
+    public long getAbortedCount() {
+        return this.mAbortedRequests.get();
+    }
+
+
+    /**
+     * Get the number of network requests currently in flight.
+     *
+     * @return the in flight requests count.
+     */
+    public int getInFlightCount()
+    {
+        synchronized (this.mInFlight) {
+            return this.mInFlight.size();
+        }
+    }
+
+
+    /**
+     * Get the key identifying identical requests - same sharing type and same request key.
+     *
+     * @param scraper the scraper making the request.
+     * @return the request key.
+     */
+    private static @NonNull String getKey(@NonNull GeneralScraper<?, ?> scraper) {
+        return scraper.getSharingType() + " " + scraper.getRequestKey();
+    }
+
+
+    /**
+     * Set the request priority to the priority of its most urgent scraper.
+     *
+     * @param request the request to update.
+     */
+    private void updatePriority(@NonNull InFlightRequest request)
+    {
+        ScraperPriority priority = null;
+
+        synchronized (this.mInFlight)
+        {
+            for (GeneralScraper<?, ?> scraper : request.mScrapers)
+            {
+                if (priority == null || scraper.getPriority().isHigherThan(priority))
+                    priority = scraper.getPriority();
+            }
+        }
+
+        if (priority != null)
+            request.mBackgroundScraper.setPriority(priority);
+    }
+
+
+    /**
+     * Check if the request was cancelled, as no scraper waits for it.
+     *
+     * @param request the request to check.
+     * @return true if the request was cancelled, false otherwise.
+     */
+    private boolean isCancelled(@NonNull InFlightRequest request)
+    {
+        synchronized (this.mInFlight) {
+            return request.mScrapers.isEmpty();
+        }
+    }
+
+
+    /**
+     * Remove the request from the in flight requests,
+     * no other scraper can attach to it after this call.
+     *
+     * @param request the request that is done.
+     * @return the scrapers attached to the request.
+     */
+    private @NonNull List<GeneralScraper<?, ?>> complete(@NonNull InFlightRequest request)
+    {
+        synchronized (this.mInFlight)
+        {
+            // Only if it is still the request in flight (not cancelled).
+            if (this.mInFlight.get(request.mKey) == request)
+                this.mInFlight.remove(request.mKey);
+
+            return new ArrayList<>(request.mScrapers);
+        }
+    }
+
+
+    /**
+     * Read the page once, and pass it to all the scrapers to process their results.
+     *
+     * @param response the loaded webpage.
+     * @param leader   the scraper that started the request, reads the page.
+     * @param request  the request the scrapers are attached to.
+     */
+    private void processPage(@NonNull ScraperResponse response,
+                             @NonNull GeneralScraper<?, ?> leader,
+                             @NonNull InFlightRequest request)
+    {
+        Object page;
+
+        // All the scrapers were cancelled while the page arrived.
+        if (isCancelled(request)) {
+            Log.v(TAG, "Skip parsing the page of cancelled request.");
+            return;
+        }
+
+        try {
+            // Parse the response.
+            Log.v(TAG, "Start parsing the page.");
+            page = leader.readSharedPage(response);
+        }
+        catch (Exception e) {
+            // To not duplicate code, call the onError() method.
+            Log.v(TAG, "Error while parsing the page.");
+            request.onError(e);
+            return;
+        }
+
+        // Each scraper processes its own result from the shared page.
+        for (GeneralScraper<?, ?> scraper : complete(request))
+            scraper.onRequestPage(request, page);
+    }
+
+
+    /**
+     * Single network request, shared by all the scrapers attached to it.
+     */
+    private final class InFlightRequest
+            implements BackgroundScraperListener
+    {
+        // The request key.
+        private final String mKey;
+
+        // The scraper that started the request.
+        private final GeneralScraper<?, ?> mLeader;
+
+        // The scrapers waiting for the page, including the leader.
+        private final List<GeneralScraper<?, ?>> mScrapers = new ArrayList<>();
+
+        // The network request.
+        private final BackgroundScraper mBackgroundScraper;
+
+
+        /**
+         * Create new request.
+         *
+         * @param key    the request key.
+         * @param leader the scraper that starts the request.
+         */
+        private InFlightRequest(@NonNull String key, @NonNull GeneralScraper<?, ?> leader)
+        {
+            this.mKey = key;
+            this.mLeader = leader;
+            this.mScrapers.add(leader);
+            this.mBackgroundScraper = new BackgroundScraper(
+                    leader.getURL(), leader.getPriority(), this);
+        }
+
+        /**
+         * Called when the document is loaded successfully.
+         *
+         * @param response the web page asked from the scrapper.
+         */
+        @Override
+        public void onDocument(@NonNull ScraperResponse response) {
+            processPage(response, this.mLeader, this);
+        }
+
+        /**
+         * Called on general error from the network communication.
+         *
+         * @param exception describes the problem.
+         */
+        @Override
+        public void onError(@NonNull Exception exception)
+        {
+            for (GeneralScraper<?, ?> scraper : complete(this))
+                scraper.onRequestError(this, exception);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.penkov.vikstv.web.base;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Single web page request of a {@code ScraperTransport}, which can be cancelled.
+ */
+public interface ScraperCall
+{
+    /**
+     * Retrieve the web page with a GET request, blocking until the response headers arrive.
+     * The caller is responsible to close the returned response.
+     *
+     * @return the server response, with successful status.
+     *
+     * @throws IOException on network error, unsuccessful status, or if cancelled.
+     */
+    @NonNull ScraperResponse execute() throws IOException;
+
+
+    /**
+     * Cancel the request, from any thread.
+     * A request waiting for a connection stops waiting, an open connection is closed,
+     * and reading the body of an already returned response fails.
+     */
+    void cancel();
+
+
+    /**
+     * Check if the request was cancelled.
+     *
+     * @return true if {@code cancel()} was called, false otherwise.
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,291 @@
+package com.penkov.vikstv.web.base;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool of background workers that runs all the scraping requests.
+ * <p>
+ * Instead of starting a thread per request, every request is queued here
+ * and handled by a small number of named, low priority threads.
+ * <p>
+ * The requests are run by their {@code ScraperPriority}, the waiting requests are promoted
+ * over time so they are not starved. A {@code PLAYBACK} request which finds all the workers
+ * busy is run on an extra express worker, so it never waits behind other requests.
+ * When the queue is full, the oldest request of the lowest priority is dropped (and informed)
+ * to make room for the new one - the newest requests are usually the ones the user sees.
+ */
+public final class ScraperDispatcher
+{
+    // TAG to use on logcat.
+    public static final String TAG = ScraperDispatcher.class.getSimpleName();
+
+    // Number of worker threads, small enough to not compete with the UI and the video decoder.
+    private static final int WORKERS_COUNT =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // Extra workers for playback requests, when all the workers are busy.
+    private static final int EXPRESS_WORKERS_COUNT = 1;
+
+    // Maximum number of requests waiting for a worker.
+    private static final int QUEUE_CAPACITY = 64;
+
+    // Waiting time that promotes a request by one priority class.
+    private static final long AGING_MS = 2_000;
+
+    // Time an idle worker is kept alive before it is stopped.
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    // Prefix of the workers thread name, as seen in the debugger.
+    private static final String WORKER_NAME = "ScraperWorker-";
+
+    // The single instance of the dispatcher.
+    private static volatile ScraperDispatcher sInstance = null;
+
+    // The actual workers pool, and its queue.
+    private final ThreadPoolExecutor mExecutor;
+    private final PriorityTaskQueue mQueue;
+
+    // Metrics.
+    private final AtomicLong mSubmittedTasks = new AtomicLong();
+    private final AtomicLong mRejectedTasks = new AtomicLong();
+
+
+    /**
+     * Request that can be run by the dispatcher.
+     */
+    public interface Task extends Runnable
+    {
+        /**
+         * Called when the task was dropped without being executed.
+         * When this method is called, {@code run()} will not be called.
+         *
+         * @param exception describes why the task was dropped.
+         */
+        void onRejected(@NonNull RejectedExecutionException exception);
+
+        /**
+         * Get the priority of the task, read when the task is queued.
+         * To change it while queued, call {@code ScraperDispatcher.setPriority()}.
+         *
+         * @return the task priority.
+         */
+        default @NonNull ScraperPriority getPriority() {
+            return ScraperPriority.INTERACTIVE;
+        }
+    }
+
+
+    /**
+     * Get the shared dispatcher, creating it on first use.
+     *
+     * @return the dispatcher instance.
+     */
+    public static @NonNull ScraperDispatcher getInstance()
+    {
+        if (sInstance == null)
+        {
+            synchronized (ScraperDispatcher.class)
+            {
+                if (sInstance == null)
+                    sInstance = new ScraperDispatcher();
+            }
+        }
+
+        return sInstance;
+    }
+
+
+    /**
+     * Create the workers pool.
+     */
+    private ScraperDispatcher()
+    {
+        this.mQueue = new PriorityTaskQueue(QUEUE_CAPACITY, AGING_MS);
+
+        this.mExecutor = new ThreadPoolExecutor(
+                WORKERS_COUNT,
+                WORKERS_COUNT + EXPRESS_WORKERS_COUNT,
+                WORKER_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                this.mQueue,
+                new WorkerFactory(),
+                new DropLowestPolicy());
+
+        // Don't hold idle threads forever.
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+
+    /**
+     * Queue a task to be run on one of the workers, by its priority.
+     * If the queue is full, the oldest queued task of the lowest priority is dropped
+     * (which may be this one, if it is of lower priority than all the queued tasks).
+     *
+     * @param task the task to run.
+     */
+    public void submit(@NonNull Task task)
+    {
+        this.mSubmittedTasks.incrementAndGet();
+        this.mExecutor.execute(task);
+    }
+
+
+    /**
+     * Change the priority of a task that is still waiting for a worker.
+     * The task keeps its waiting time, unless raised to {@code PLAYBACK} while all the workers
+     * are busy - then it is run on the express worker, as a new playback task.
+     * The task must already report the new priority.
+     *
+     * @param task     the queued task.
+     * @param priority the new priority.
+     * @return true if the task is queued (or moved to the express worker),
+     *         false if it already started (or never queued).
+     */
+    public boolean setPriority(@NonNull Task task, @NonNull ScraperPriority priority)
+    {
+        // The user waits, don't wait behind the other tasks for a regular worker.
+        if (priority == ScraperPriority.PLAYBACK && this.mQueue.removeForExpress(task)) {
+            this.mExecutor.execute(task);
+            return true;
+        }
+
+        return this.mQueue.reprioritize(task, priority);
+    }
+
+
+    /**
+     * Remove a task that is still waiting for a worker.
+     * A removed task is not run, and not informed.
+     *
+     * @param task the task to remove.
+     * @return true if the task was removed, false if it already started (or never queued).
+     */
+    public boolean remove(@NonNull Task task) {
+        return this.mExecutor.remove(task);
+    }
+
+
+    /**
+     * Get the number of tasks waiting for a free worker.
+     *
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        return this.mExecutor.getQueue().size();
+    }
+
+
+    /**
+     * Get the number of tasks of a priority class waiting for a free worker.
+     *
+     * @param priority the priority class.
+     * @return the queue depth of the class.
+     */
+    public int getQueueDepth(@NonNull ScraperPriority priority) {
+        return this.mQueue.size(priority);
+    }
+
+
+    /**
+     * Get the number of workers currently running a task.
+     *
+     * @return the active workers count.
+     */
+    public int getActiveWorkers() {
+        return this.mExecutor.getActiveCount();
+    }
+
+
+    /**
+     * Get the number of tasks submitted since the dispatcher was created.
+     *
+     * @return the submitted tasks count.
+     */
+    public long getSubmittedCount() {
+        return this.mSubmittedTasks.get();
+    }
+
+
+    /**
+     * Get the number of tasks dropped without being executed.
+     *
+     * @return the rejected tasks count.
+     */
+    public long getRejectedCount() {
+        return this.mRejectedTasks.get();
+    }
+
+
+    /**
+     * Inform a task that it will never run.
+     *
+     * @param runnable the dropped task.
+     * @param reason   the reason the task was dropped.
+     */
+    private void reject(@NonNull Runnable runnable, @NonNull String reason)
+    {
+        this.mRejectedTasks.incrementAndGet();
+        Log.v(TAG, "Task rejected: " + reason);
+
+        if (runnable instanceof Task)
+            ((Task) runnable).onRejected(new RejectedExecutionException(reason));
+    }
+
+
+    /**
+     * Creates the workers - named and low priority threads.
+     */
+    private static final class WorkerFactory implements ThreadFactory
+    {
+        // Counter for the workers name.
+        private final AtomicInteger mWorkerNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable)
+        {
+            Thread worker = new Thread(() -> {
+                // Background priority, the UI and the video are more important.
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, WORKER_NAME + this.mWorkerNumber.getAndIncrement());
+
+            worker.setDaemon(true);
+            return worker;
+        }
+    }
+
+
+    /**
+     * When the queue is full - drop the oldest task of the lowest priority, and queue the new one.
+     * Also queues a playback task that found no free worker, when there is no room for an express one.
+     */
+    private final class DropLowestPolicy implements RejectedExecutionHandler
+    {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor)
+        {
+            // Nothing to do if the dispatcher is down.
+            if (executor.isShutdown()) {
+                reject(runnable, "Dispatcher is shut down.");
+                return;
+            }
+
+            // Make room for the new task, if it is not the least important.
+            Runnable dropped = mQueue.offerEvicting(runnable);
+
+            if (dropped != null)
+                reject(dropped, "Queue is full, task was dropped for a more important one.");
+        }
+    }
+}
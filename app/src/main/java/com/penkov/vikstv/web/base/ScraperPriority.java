@@ -0,0 +1,33 @@
+package com.penkov.vikstv.web.base;
+
+/**
+ * The priority classes of the scraping requests, from the most urgent to the least.
+ * <p>
+ * A queued request of higher class is always run before requests of lower classes,
+ * unless they waited long enough to be promoted (so they are never starved).
+ */
+public enum ScraperPriority
+{
+    // The user waits for the video to play.
+    PLAYBACK,
+
+    // The user waits for something on screen, other than the video (the channels list, the EPG).
+    INTERACTIVE,
+
+    // Content of items shown on screen (the icons of visible channels).
+    VISIBLE,
+
+    // Content that may be needed soon (off-screen icons, prefetched EPG).
+    PREFETCH;
+
+
+    /**
+     * Check if this priority is more urgent than the other.
+     *
+     * @param other the priority to compare to.
+     * @return true if this priority is higher, false otherwise.
+     */
+    public boolean isHigherThan(ScraperPriority other) {
+        return this.ordinal() < other.ordinal();
+    }
+}
@@ -0,0 +1,225 @@
+package com.penkov.vikstv.web.base;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Web page retrieved by a {@code ScraperTransport}.
+ * <p>
+ * The body can be read only once - either as a stream, or by one of the reading methods.
+ */
+public final class ScraperResponse implements Closeable
+{
+    // The size of the buffer used to read the body.
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // The charset parameter inside the content type header.
+    private static final String CHARSET_PARAM = "charset=";
+
+    // The final address of the page (after redirects).
+    private final String mURL;
+
+    // The response status code.
+    private final int mStatusCode;
+
+    // The response headers, with lower case names.
+    private final Map<String, String> mHeaders;
+
+    // The response body.
+    private final InputStream mBodyStream;
+
+    // Whether the response was served by a cache.
+    private final boolean mFromCache;
+
+
+    /**
+     * Create new response, retrieved from the network.
+     *
+     * @param URL        the final address of the page.
+     * @param statusCode the response status code.
+     * @param headers    the response headers, with lower case names.
+     * @param bodyStream the response body, closed when the response is closed.
+     */
+    public ScraperResponse(@NonNull String URL,
+                           int statusCode,
+                           @NonNull Map<String, String> headers,
+                           @NonNull InputStream bodyStream)
+    {
+        this(URL, statusCode, headers, bodyStream, false);
+    }
+
+
+    /**
+     * Create new response.
+     *
+     * @param URL        the final address of the page.
+     * @param statusCode the response status code.
+     * @param headers    the response headers, with lower case names.
+     * @param bodyStream the response body, closed when the response is closed.
+     * @param fromCache  whether the response was served by a cache (even after revalidation).
+     */
+    public ScraperResponse(@NonNull String URL,
+                           int statusCode,
+                           @NonNull Map<String, String> headers,
+                           @NonNull InputStream bodyStream,
+                           boolean fromCache)
+    {
+        this.mURL = URL;
+        this.mStatusCode = statusCode;
+        this.mHeaders = headers;
+        this.mBodyStream = bodyStream;
+        this.mFromCache = fromCache;
+    }
+
+
+    /**
+     * Get the final address of the page (after redirects).
+     *
+     * @return the page url.
+     */
+    public @NonNull String url() {
+        return this.mURL;
+    }
+
+
+    /**
+     * Get the response status code.
+     *
+     * @return the status code.
+     */
+    public int statusCode() {
+        return this.mStatusCode;
+    }
+
+
+    /**
+     * Check if the response was served by a cache, rather than downloaded.
+     * A page revalidated as not modified is also served by the cache.
+     *
+     * @return true if served by a cache, false otherwise.
+     */
+    public boolean isFromCache() {
+        return this.mFromCache;
+    }
+
+
+    /**
+     * Get a response header value.
+     *
+     * @param name the header name, case insensitive.
+     * @return the header value, or null if not presented.
+     */
+    public @Nullable String header(@NonNull String name) {
+        return this.mHeaders.get(name.toLowerCase(Locale.ROOT));
+    }
+
+
+    /**
+     * Get the charset declared by the content type header.
+     *
+     * @return the charset name, or null if not declared.
+     */
+    public @Nullable String charset()
+    {
+        String contentType = header("Content-Type");
+        if (contentType == null)
+            return null;
+
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf(CHARSET_PARAM);
+        if (index < 0)
+            return null;
+
+        // Take the value up to the next parameter, without quotes.
+        String charset = contentType.substring(index + CHARSET_PARAM.length());
+        int end = charset.indexOf(';');
+        if (end >= 0)
+            charset = charset.substring(0, end);
+
+        charset = charset.replace("\"", "").replace("'", "").trim();
+
+        // Unknown charset is like no charset.
+        try {
+            return Charset.isSupported(charset) ? charset : null;
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Get the response body as stream.
+     *
+     * @return the body stream.
+     */
+    public @NonNull InputStream bodyStream() {
+        return this.mBodyStream;
+    }
+
+
+    /**
+     * Read the whole body as bytes.
+     *
+     * @return the body bytes.
+     * @throws IOException on reading error.
+     */
+    public @NonNull byte[] bodyAsBytes() throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = this.mBodyStream.read(buffer)) != -1)
+            output.write(buffer, 0, read);
+
+        return output.toByteArray();
+    }
+
+
+    /**
+     * Read the whole body as text, with the declared charset (UTF-8 by default).
+     *
+     * @return the body text.
+     * @throws IOException on reading error.
+     */
+    public @NonNull String body() throws IOException
+    {
+        String charset = charset();
+        return new String(bodyAsBytes(),
+                charset != null ? Charset.forName(charset) : StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Read and parse the body as HTML document.
+     *
+     * @return the parsed document.
+     * @throws IOException on reading error.
+     */
+    public @NonNull Document parse() throws IOException {
+        return Jsoup.parse(this.mBodyStream, charset(), this.mURL);
+    }
+
+
+    /**
+     * Close the response, and release the connection.
+     *
+     * @throws IOException on closing error.
+     */
+    @Override
+    public void close() throws IOException {
+        this.mBodyStream.close();
+    }
+}
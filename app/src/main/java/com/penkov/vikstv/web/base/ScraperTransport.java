@@ -0,0 +1,45 @@
+package com.penkov.vikstv.web.base;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * The network layer used by the {@code BackgroundScraper} to retrieve web pages.
+ */
+public interface ScraperTransport
+{
+    /**
+     * Retrieve a web page with a GET request.
+     * The caller is responsible to close the returned response.
+     * <p>
+     * The exception can be:
+     * <ul>
+     *     <li> {@code MalformedURLException} </li>
+     *     <li> {@code HttpStatusException} </li>
+     *     <li> {@code SocketTimeoutException} </li>
+     *     <li> {@code IOException} </li>
+     * </ul>
+     *
+     * @param URL the address of the web page.
+     * @return the server response, with successful status.
+     *
+     * @throws IOException on network error or unsuccessful status.
+     */
+    default @NonNull ScraperResponse execute(@NonNull String URL) throws IOException {
+        return newCall(URL, ScraperPriority.INTERACTIVE).execute();
+    }
+
+
+    /**
+     * Create a request of a web page, which can be cancelled while it is executed.
+     * The request is not started until {@code execute()} is called.
+     * <p>
+     * The transport may use the priority to decide which request waits for a connection.
+     *
+     * @param URL      the address of the web page.
+     * @param priority the priority of the request.
+     * @return the request.
+     */
+    @NonNull ScraperCall newCall(@NonNull String URL, @NonNull ScraperPriority priority);
+}
@@ -0,0 +1,314 @@
+package com.penkov.vikstv.web.base;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader of the {@code <script>} blocks of an HTML page.
+ * <p>
+ * The page is tokenized as it is read, without building a document,
+ * and reading stops as soon as the wanted block is complete -
+ * the rest of the page is never read.
+ * HTML comments are skipped, so commented out scripts are ignored.
+ */
+public final class ScriptBlockReader
+{
+    // The size of the buffer used to read the page.
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // The tokens looked for, in lower case.
+    private static final String SCRIPT_NAME = "script";
+    private static final String SCRIPT_END = "</script";
+    private static final String COMMENT_START = "--";
+    private static final String COMMENT_END = "-->";
+
+    // End of the stream.
+    private static final int EOF = -1;
+
+    // The page text.
+    private final Reader mReader;
+
+    // The read characters.
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPosition = 0;
+    private int mLimit = 0;
+
+    // Character returned to the reader, or EOF if none.
+    private int mUnread = EOF;
+
+
+    /**
+     * Create new reader over a page.
+     *
+     * @param stream  the page body.
+     * @param charset the page charset, or null for UTF-8.
+     */
+    public ScriptBlockReader(@NonNull InputStream stream, @Nullable String charset)
+    {
+        this.mReader = new InputStreamReader(stream,
+                charset != null ? Charset.forName(charset) : StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Find the first script block containing the marker text.
+     * The stream is read up to the end of that block only.
+     *
+     * @param stream  the page body.
+     * @param charset the page charset, or null for UTF-8.
+     * @param marker  text that identifies the wanted script.
+     * @return the script content (without the tags), or null if not found.
+     *
+     * @throws IOException on reading error.
+     */
+    public static @Nullable String findScript(@NonNull InputStream stream,
+                                              @Nullable String charset,
+                                              @NonNull String marker) throws IOException
+    {
+        ScriptBlockReader reader = new ScriptBlockReader(stream, charset);
+        String script;
+
+        while ((script = reader.nextScript()) != null)
+        {
+            if (script.contains(marker))
+                return script;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Read up to the end of the next script block.
+     *
+     * @return the script content (without the tags), or null at the end of the page.
+     *
+     * @throws IOException on reading error.
+     */
+    public @Nullable String nextScript() throws IOException
+    {
+        int c;
+
+        while ((c = read()) != EOF)
+        {
+            if (c != '<')
+                continue;
+
+            c = read();
+
+            // Comment, may hide a tag.
+            if (c == '!') {
+                if (match(COMMENT_START))
+                    skipPast(COMMENT_END);
+                continue;
+            }
+
+            unread(c);
+
+            // Opening script tag.
+            if (match(SCRIPT_NAME))
+            {
+                c = read();
+
+                if (isTagNameEnd(c)) {
+                    if (c != '>')
+                        skipTag();
+
+                    return readScriptContent();
+                }
+
+                unread(c);
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Read the content of a script, up to its closing tag (inclusive).
+     *
+     * @return the script content.
+     * @throws IOException on reading error.
+     */
+    private @NonNull String readScriptContent() throws IOException
+    {
+        StringBuilder content = new StringBuilder();
+        final int endLength = SCRIPT_END.length();
+        int c;
+
+        while ((c = read()) != EOF)
+        {
+            content.append((char) c);
+
+            // The closing tag ends with "t", check only then.
+            if (Character.toLowerCase(c) == 't' && endsWithIgnoreCase(content, SCRIPT_END))
+            {
+                content.setLength(content.length() - endLength);
+                skipTag();
+                break;
+            }
+        }
+
+        return content.toString();
+    }
+
+
+    /**
+     * Skip the rest of a tag, up to its closing bracket (inclusive).
+     * Brackets inside quoted attribute values are ignored.
+     *
+     * @throws IOException on reading error.
+     */
+    private void skipTag() throws IOException
+    {
+        int quote = EOF;
+        int c;
+
+        while ((c = read()) != EOF)
+        {
+            if (quote != EOF) {
+                if (c == quote)
+                    quote = EOF;
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+            else if (c == '>') {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Skip the text up to the token (inclusive).
+     *
+     * @param token the token to skip to.
+     * @throws IOException on reading error.
+     */
+    private void skipPast(@NonNull String token) throws IOException
+    {
+        final int length = token.length();
+        final char last = token.charAt(length - 1);
+
+        // Only the last characters are needed to find the token.
+        StringBuilder tail = new StringBuilder(length);
+        int c;
+
+        while ((c = read()) != EOF)
+        {
+            if (tail.length() == length)
+                tail.deleteCharAt(0);
+            tail.append((char) c);
+
+            if (c == last && endsWithIgnoreCase(tail, token))
+                return;
+        }
+    }
+
+
+    /**
+     * Check if the next characters are the token (case insensitive).
+     * On mismatch, the mismatched character is returned to the reader.
+     *
+     * @param token the expected token, in lower case.
+     * @return true if the token was read, false otherwise.
+     * @throws IOException on reading error.
+     */
+    private boolean match(@NonNull String token) throws IOException
+    {
+        for (int i = 0; i < token.length(); i++)
+        {
+            int c = read();
+
+            if (c == EOF || Character.toLowerCase(c) != token.charAt(i)) {
+                unread(c);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Check if the character ends a tag name.
+     *
+     * @param c the character after the name.
+     * @return true if it ends the name, false if the name goes on.
+     */
+    private static boolean isTagNameEnd(int c) {
+        return c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+
+
+    /**
+     * Check if the text ends with the token (case insensitive).
+     *
+     * @param text  the text.
+     * @param token the token, in lower case.
+     * @return true if the text ends with the token, false otherwise.
+     */
+    private static boolean endsWithIgnoreCase(@NonNull CharSequence text, @NonNull String token)
+    {
+        int offset = text.length() - token.length();
+        if (offset < 0)
+            return false;
+
+        for (int i = 0; i < token.length(); i++)
+        {
+            if (Character.toLowerCase(text.charAt(offset + i)) != token.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Read the next character.
+     *
+     * @return the character, or EOF at the end of the page.
+     * @throws IOException on reading error.
+     */
+    private int read() throws IOException
+    {
+        if (this.mUnread != EOF)
+        {
+            int c = this.mUnread;
+            this.mUnread = EOF;
+            return c;
+        }
+
+        if (this.mPosition == this.mLimit)
+        {
+            this.mLimit = this.mReader.read(this.mBuffer, 0, this.mBuffer.length);
+            this.mPosition = 0;
+
+            if (this.mLimit <= 0) {
+                this.mLimit = 0;
+                return EOF;
+            }
+        }
+
+        return this.mBuffer[this.mPosition++];
+    }
+
+
+    /**
+     * Return a character to the reader, it is the next one to be read.
+     *
+     * @param c the character, EOF is ignored.
+     */
+    private void unread(int c) {
+        this.mUnread = c;
+    }
+}
@@ -0,0 +1,134 @@
+package com.penkov.vikstv.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * The program times accepted by the scrapers, and how they are shown.
+ */
+public class ChannelProgramTest
+{
+    @Test
+    public void parsesShownFormat()
+    {
+        assertEquals(0, ChannelProgram.parseTime("00:00"));
+        assertEquals(6 * 60 + 5, ChannelProgram.parseTime("06:05"));
+        assertEquals(23 * 60 + 59, ChannelProgram.parseTime("23:59"));
+    }
+
+
+    @Test
+    public void parsesSingleDigitHour()
+    {
+        assertEquals(5, ChannelProgram.parseTime("0:05"));
+        assertEquals(9 * 60 + 30, ChannelProgram.parseTime("9:30"));
+    }
+
+
+    @Test
+    public void parsesDotSeparator()
+    {
+        assertEquals(12 * 60 + 30, ChannelProgram.parseTime("12.30"));
+        assertEquals(7 * 60 + 45, ChannelProgram.parseTime("7.45"));
+    }
+
+
+    @Test
+    public void parsesSecondsIgnoringThem()
+    {
+        assertEquals(12 * 60 + 30, ChannelProgram.parseTime("12:30:15"));
+        assertEquals(12 * 60 + 30, ChannelProgram.parseTime("12.30.59"));
+        assertEquals(8 * 60, ChannelProgram.parseTime("8:00:00"));
+    }
+
+
+    @Test
+    public void trimsWhitespaces()
+    {
+        assertEquals(60 + 23, ChannelProgram.parseTime(" 1:23"));
+        assertEquals(10 * 60, ChannelProgram.parseTime("\t10:00 \n"));
+        assertEquals(10 * 60, ChannelProgram.parseTime(" 10:00 "));
+    }
+
+
+    @Test
+    public void rejectsInvalidTimes()
+    {
+        String[] invalid = {
+                "", " ", ":", "12", "12:", ":30", "1:2", "123:45", "12:345",
+                "24:00", "12:60", "12:30:60", "12:30:1", "12:30:150",
+                "12:30.15", "12.30:15", "12-30", "ab:cd", "1a:30", "12:3b", "12 : 30"
+        };
+
+        for (String time : invalid)
+            assertEquals("\"" + time + "\"", ChannelProgram.INVALID_TIME, ChannelProgram.parseTime(time));
+    }
+
+
+    @Test
+    public void keepsShownFormatText()
+    {
+        String time = "06:05";
+        assertSame(time, ChannelProgram.normalizeTime(time, ChannelProgram.parseTime(time)));
+    }
+
+
+    @Test
+    public void normalizesOtherFormats()
+    {
+        String[] times = { " 1:23", "1:23", "01.23", "01:23:45", "01.23.45", " 01:23", "01:23 " };
+
+        for (String time : times)
+            assertEquals("\"" + time + "\"", "01:23",
+                    ChannelProgram.normalizeTime(time, ChannelProgram.parseTime(time)));
+    }
+
+
+    @Test
+    public void createsProgramsOfValidTimes() throws ProgramTimeException
+    {
+        ChannelProgram program = new ChannelProgram("News", "9.05");
+
+        assertEquals("09:05", program.getTime());
+        assertEquals(9, program.getHour());
+        assertEquals(5, program.getMinute());
+        assertEquals(9 * 60 + 5, program.getCompactTime());
+
+        assertNotNull(ChannelProgram.tryCreate("News", "21:00:00"));
+        assertNull(ChannelProgram.tryCreate("News", "25:00"));
+    }
+
+
+    @Test(expected = ProgramTimeException.class)
+    public void throwsOnInvalidTime() throws ProgramTimeException {
+        new ChannelProgram("News", "12:60");
+    }
+
+
+    @Test
+    public void schedulesScrapedTexts()
+    {
+        ProgramSchedule.Builder builder = new ProgramSchedule.Builder();
+
+        assertTrue(builder.add("Morning", "6:00"));
+        assertTrue(builder.add("Noon", "12.00"));
+        assertFalse(builder.add("Broken", "12:6"));
+        assertTrue(builder.add("Night", " 23:30:00 "));
+        assertTrue(builder.add("After midnight", "00:30"));
+
+        ProgramSchedule schedule = builder.build();
+
+        assertEquals(4, schedule.size());
+        assertEquals("06:00", schedule.getTime(0));
+        assertEquals("12:00", schedule.getTime(1));
+        assertEquals("23:30", schedule.getTime(2));
+        assertEquals("00:30", schedule.getTime(3));
+        assertEquals(ProgramSchedule.MINUTES_PER_DAY + 30, schedule.getStartMinute(3));
+    }
+}
@@ -0,0 +1,172 @@
+package com.penkov.vikstv.core;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to turn the programs of a full EPG page into a schedule -
+ * by parsing the characters, and by the exceptions based parsing it replaced.
+ * <p>
+ * Run from the IDE, or with {@code java -cp <test classpath> ...ProgramTimeBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramTimeBenchmark
+{
+    // A saved channel page, with its EPG.
+    static final String PAGE = "/pages/channel_page.html";
+
+    private String mPage;
+    private String[] mNames;
+    private String[] mTimes;
+
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        this.mPage = readResource(PAGE);
+
+        List<String> names = new ArrayList<>();
+        List<String> times = new ArrayList<>();
+
+        for (Element entry : Jsoup.parse(this.mPage).getElementsByClass("epg_prog").first().getElementsByTag("li"))
+        {
+            names.add(entry.getElementsByClass("prname2").first().text());
+            times.add(entry.getElementsByClass("time").first().text());
+        }
+
+        this.mNames = names.toArray(new String[0]);
+        this.mTimes = times.toArray(new String[0]);
+    }
+
+
+    @Benchmark
+    public ProgramSchedule schedule()
+    {
+        ProgramSchedule.Builder builder = new ProgramSchedule.Builder();
+
+        for (int i = 0; i < this.mTimes.length; i++)
+            builder.add(this.mNames[i], this.mTimes[i]);
+
+        return builder.build();
+    }
+
+
+    @Benchmark
+    public int[] parseTimes()
+    {
+        int[] compactTimes = new int[this.mTimes.length];
+
+        for (int i = 0; i < this.mTimes.length; i++)
+            compactTimes[i] = ChannelProgram.parseTime(this.mTimes[i]);
+
+        return compactTimes;
+    }
+
+
+    @Benchmark
+    public int[] parseTimesWithExceptions()
+    {
+        int[] compactTimes = new int[this.mTimes.length];
+
+        for (int i = 0; i < this.mTimes.length; i++)
+        {
+            try {
+                compactTimes[i] = parseTimeWithExceptions(this.mTimes[i]);
+            }
+            catch (ProgramTimeException e) {
+                compactTimes[i] = ChannelProgram.INVALID_TIME;
+            }
+        }
+
+        return compactTimes;
+    }
+
+
+    // The whole page, as the scraper pays it - the parse dominates.
+    @Benchmark
+    public ProgramSchedule page()
+    {
+        Document document = Jsoup.parse(this.mPage);
+        ProgramSchedule.Builder builder = new ProgramSchedule.Builder();
+
+        for (Element entry : document.body().getElementsByClass("epg_prog").first().getElementsByTag("li"))
+        {
+            builder.add(entry.getElementsByClass("prname2").first().text(),
+                    entry.getElementsByClass("time").first().text());
+        }
+
+        return builder.build();
+    }
+
+
+    /**
+     * Parse a time as the program did before - check the format, then parse the substrings,
+     * throwing on invalid text.
+     */
+    private static int parseTimeWithExceptions(String programTime) throws ProgramTimeException
+    {
+        if (programTime.length() != 5 || programTime.charAt(2) != ':')
+            throw new ProgramTimeException("Time is not in right format.");
+
+        try {
+            return Integer.parseInt(programTime.substring(0, 2)) * 60
+                    + Integer.parseInt(programTime.substring(3, 5));
+        }
+        catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new ProgramTimeException("Program time is invalid", e);
+        }
+    }
+
+
+    static String readResource(String name) throws IOException
+    {
+        try (InputStream input = ProgramTimeBenchmark.class.getResourceAsStream(name))
+        {
+            if (input == null)
+                throw new IOException("Missing resource " + name);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+
+            for (int read; (read = input.read(buffer)) > 0; )
+                output.write(buffer, 0, read);
+
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(ProgramTimeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
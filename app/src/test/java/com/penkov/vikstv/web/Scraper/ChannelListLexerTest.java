@@ -0,0 +1,272 @@
+package com.penkov.vikstv.web.Scraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The lexer must read the channels the document parser reads, or report a mismatch -
+ * on the saved channel list page, and on malformed and truncated markup.
+ */
+public class ChannelListLexerTest
+{
+    // A saved channel list page.
+    private static final String PAGE = "/pages/channel_list.html";
+
+    // Channels of the saved page.
+    private static final int PAGE_CHANNELS = 60;
+
+    private static final String CHANNEL_CLASS = "all_tv";
+
+    // The end of a channel of the saved page.
+    private static final String CHANNEL_END = "</a>\n  </div>";
+
+    // Characters that change the markup, for the mutations.
+    private static final String MARKUP = "<>/=\"'&; !-";
+
+    private byte[] mPage;
+
+
+    @Before
+    public void setUp() throws IOException {
+        this.mPage = readResource(PAGE);
+    }
+
+
+    @Test
+    public void lexesSavedPageAsDocument() throws IOException
+    {
+        List<ChannelListLexer.Channel> channels = lex(this.mPage, StandardCharsets.UTF_8);
+
+        assertNotNull(channels);
+        assertEquals(PAGE_CHANNELS, channels.size());
+        assertEquals(parse(this.mPage, StandardCharsets.UTF_8), channels);
+
+        assertEquals(new ChannelListLexer.Channel("Первый канал",
+                "/1-channel-1.html", "/uploads/posts/2020-01/channel-1.png"), channels.get(0));
+        assertEquals("Пятница & Друзья", channels.get(PAGE_CHANNELS - 1).mName);
+    }
+
+
+    @Test
+    public void lexesSingleByteCharset() throws IOException
+    {
+        Charset charset = Charset.forName("windows-1251");
+        byte[] page = new String(this.mPage, StandardCharsets.UTF_8).getBytes(charset);
+
+        List<ChannelListLexer.Channel> channels = lex(page, charset);
+
+        assertNotNull(channels);
+        assertEquals(parse(this.mPage, StandardCharsets.UTF_8), channels);
+    }
+
+
+    @Test
+    public void rejectsCharsetsOtherThanAscii()
+    {
+        byte[] page = new String(this.mPage, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_16);
+        assertNull(lex(page, StandardCharsets.UTF_16));
+    }
+
+
+    @Test
+    public void lexesMarkupAsDocument() throws IOException
+    {
+        String[] channels = {
+                // Entities, in the text and in the values.
+                "<div class=\"all_tv\"><a href=\"/1.html?a=1&amp;b=2\"><img src=\"/1.png\">A &amp; B &lt;1&gt;</a></div>",
+                // Whitespaces collapse, breaks are spaces.
+                "<div class=\"all_tv\">\n  <a href=\"/2.html\">\t<img src=\"/2.png\"/>  Two<br>lines  </a>\n</div>",
+                // Comments and raw text don't count.
+                "<div class=\"all_tv\"><!-- <a href=\"/x\"> --><a href=\"/3.html\"><img src=\"/3.png\">Three</a></div>",
+                // Upper case markup, unquoted and single quoted values.
+                "<DIV CLASS='all_tv big'><A HREF=/4.html><IMG SRC='/4.png'>Four</A></DIV>",
+                // Many classes, the channel one in the middle.
+                "<div class=\"item all_tv  left\"><a href=\"/5.html\"><img src=\"/5.png\"><span><b>Five</b></span></a></div>",
+                // Repeated attribute, the first is taken.
+                "<div class=\"all_tv\"><a href=\"/6.html\" href=\"/x.html\"><img src=\"/6.png\" src=\"/x.png\">Six</a></div>",
+                // Link without reference, and channels without link or icon.
+                "<div class=\"all_tv\"><a name=\"top\"><img src=\"/7.png\">Seven</a></div>",
+                "<div class=\"all_tv\"><img src=\"/8.png\">Eight</div>",
+                "<div class=\"all_tv\"><a href=\"/9.html\">Nine</a></div>",
+                // Icon before the link, and a second link.
+                "<div class=\"all_tv\"><img src=\"/10.png\"><a href=\"/10.html\">Ten</a><a href=\"/y.html\">Y</a></div>",
+                // Empty values.
+                "<div class=\"all_tv\"><a href><img src=\"\"></a></div>",
+        };
+
+        for (String channel : channels)
+        {
+            byte[] page = wrap(channel);
+            List<ChannelListLexer.Channel> lexed = lex(page, StandardCharsets.UTF_8);
+
+            assertNotNull(channel, lexed);
+            assertEquals(channel, parse(page, StandardCharsets.UTF_8), lexed);
+        }
+    }
+
+
+    @Test
+    public void reportsUnfollowedMarkup() throws IOException
+    {
+        String[] channels = {
+                // Block inside a channel.
+                "<div class=\"all_tv\"><a href=\"/1.html\"><img src=\"/1.png\"><p>One</p></a></div>",
+                // Channel inside a channel.
+                "<div class=\"all_tv\"><div class=\"all_tv\"><a href=\"/2.html\"><img src=\"/2.png\">Two</a></div></div>",
+                // Unknown entity.
+                "<div class=\"all_tv\"><a href=\"/3.html\"><img src=\"/3.png\">Three &hearts;</a></div>",
+                // Link inside link.
+                "<div class=\"all_tv\"><a href=\"/5.html\"><img src=\"/5.png\"><a>Five</a></a></div>",
+                // Link left open before the channel, reopened in it.
+                "<a name=\"top\"></div><div class=\"all_tv\"><a href=\"/6.html\"><img src=\"/6.png\">Six</a></div>",
+                // Formatting closed out of order.
+                "<div class=\"all_tv\"><a href=\"/7.html\"><img src=\"/7.png\"><b><i>Seven</b></i></a></div>",
+        };
+
+        for (String channel : channels)
+        {
+            byte[] page = wrap(channel);
+
+            assertNull(channel, lex(page, StandardCharsets.UTF_8));
+            assertFalse(channel, parse(page, StandardCharsets.UTF_8).isEmpty());
+        }
+
+        // No channels at all.
+        assertNull(lex(wrap("<div class=\"channels\"></div>"), StandardCharsets.UTF_8));
+
+        // Page ended inside a channel.
+        assertNull(lex("<div class=\"all_tv\"><a href=\"/4.html\"><img src=\"/4.png\">Four</a>"
+                .getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    public void lexesTruncatedPagesAsDocument() throws IOException
+    {
+        for (int length = 0; length < this.mPage.length; length += 7)
+            assertSameChannels(Arrays.copyOf(this.mPage, length));
+
+        // Cuts after a channel are lexed, up to the channel.
+        String text = new String(this.mPage, StandardCharsets.UTF_8);
+        int channels = 0;
+
+        for (int end = text.indexOf(CHANNEL_END); end >= 0; end = text.indexOf(CHANNEL_END, end + 1))
+        {
+            byte[] page = text.substring(0, end + CHANNEL_END.length()).getBytes(StandardCharsets.UTF_8);
+
+            assertTrue(assertSameChannels(page));
+            assertEquals(++channels, lex(page, StandardCharsets.UTF_8).size());
+        }
+
+        assertEquals(PAGE_CHANNELS, channels);
+    }
+
+
+    @Test
+    public void lexesMutatedPagesAsDocument() throws IOException
+    {
+        Random random = new Random(1);
+        int lexed = 0;
+
+        for (int i = 0; i < 2_000; i++)
+        {
+            StringBuilder text = new StringBuilder(new String(this.mPage, StandardCharsets.UTF_8));
+
+            for (int j = 1 + random.nextInt(3); j > 0; j--)
+            {
+                int position = random.nextInt(text.length());
+
+                if (random.nextBoolean())
+                    text.deleteCharAt(position);
+                else
+                    text.insert(position, MARKUP.charAt(random.nextInt(MARKUP.length())));
+            }
+
+            if (assertSameChannels(text.toString().getBytes(StandardCharsets.UTF_8)))
+                lexed++;
+        }
+
+        // Most mutations hit markup the lexer follows.
+        assertTrue("Only " + lexed + " pages lexed", lexed > 1_000);
+    }
+
+
+    /**
+     * Check that the lexer reads the channels the document parser reads, or reports a mismatch.
+     *
+     * @return true if the lexer read the page.
+     */
+    private static boolean assertSameChannels(byte[] page) throws IOException
+    {
+        List<ChannelListLexer.Channel> lexed = lex(page, StandardCharsets.UTF_8);
+
+        if (lexed == null)
+            return false;
+
+        assertEquals(new String(page, StandardCharsets.UTF_8), parse(page, StandardCharsets.UTF_8), lexed);
+        return true;
+    }
+
+
+    private static List<ChannelListLexer.Channel> lex(byte[] page, Charset charset) {
+        return new ChannelListLexer(page, charset, CHANNEL_CLASS).parse();
+    }
+
+
+    // The channels as the scraper reads them from the document.
+    private static List<ChannelListLexer.Channel> parse(byte[] page, Charset charset) throws IOException
+    {
+        List<ChannelListLexer.Channel> channels = new ArrayList<>();
+
+        for (Element element : Jsoup.parse(new ByteArrayInputStream(page), charset.name(),
+                ScraperChannelList.URL).getElementsByClass(CHANNEL_CLASS))
+            channels.add(ScraperChannelList.readChannel(element));
+
+        return channels;
+    }
+
+
+    private static byte[] wrap(String channels)
+    {
+        return ("<!DOCTYPE html><html><head><title>Channels</title></head><body>"
+                + "<div class=\"channels\">" + channels + "</div></body></html>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static byte[] readResource(String name) throws IOException
+    {
+        try (InputStream input = ChannelListLexerTest.class.getResourceAsStream(name))
+        {
+            if (input == null)
+                throw new IOException("Missing resource " + name);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+
+            for (int read; (read = input.read(buffer)) > 0; )
+                output.write(buffer, 0, read);
+
+            return output.toByteArray();
+        }
+    }
+}
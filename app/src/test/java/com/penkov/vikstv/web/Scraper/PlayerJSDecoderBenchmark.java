@@ -0,0 +1,78 @@
+package com.penkov.vikstv.web.Scraper;
+
+import com.penkov.vikstv.web.WebParsingException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding time of a video link, by the shared decoder and by the replace based decoding.
+ * <p>
+ * Run from the IDE, or with {@code java -cp <test classpath> ...PlayerJSDecoderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerJSDecoderBenchmark
+{
+    private static final String[] KEYS = { "xx???x=xx?xx?=", "xx??x?=xx??x?=", "xx?x?=xx??x?=", "x=xx?x?=xx??", "?x=xx?x?=xx?" };
+
+    private static final String LINK = "https://s1.viks.tv/hls/{v1}/channel_1/index.m3u8?token={v2}";
+
+    private PlayerJSDecoder mDecoder;
+    private ReplacePlayerJSDecoder mReference;
+    private String mEncoded;
+
+
+    @Setup
+    public void setUp()
+    {
+        this.mDecoder = new PlayerJSDecoder(KEYS);
+        this.mReference = new ReplacePlayerJSDecoder(KEYS);
+        this.mEncoded = PlayerJSDecoderTest.obfuscate(LINK, KEYS, new Random(1));
+    }
+
+
+    @Benchmark
+    public String decoder() throws WebParsingException {
+        return this.mDecoder.decode(this.mEncoded);
+    }
+
+
+    @Benchmark
+    public String replaceBased() throws WebParsingException {
+        return this.mReference.decode(this.mEncoded);
+    }
+
+
+    // The reference built its keys on every scraper, include it as the scraper paid it.
+    @Benchmark
+    public String replaceBasedWithKeys() throws WebParsingException {
+        return new ReplacePlayerJSDecoder(KEYS).decode(this.mEncoded);
+    }
+
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(PlayerJSDecoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
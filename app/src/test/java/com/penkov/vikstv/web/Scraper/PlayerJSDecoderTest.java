@@ -0,0 +1,233 @@
+package com.penkov.vikstv.web.Scraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.penkov.vikstv.web.WebParsingException;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * The shared decoder must give the links the replace based decoding gave,
+ * and fail where it failed.
+ */
+public class PlayerJSDecoderTest
+{
+    // Keys in the form the player-js library uses.
+    private static final String[] KEYS = { "xx???x=xx?xx?=", "xx??x?=xx??x?=", "xx?x?=xx??x?=", "x=xx?x?=xx??", "?x=xx?x?=xx?" };
+
+    // Keys that overlap once encoded - "abc" is "FYWJj", a prefix of "FYWJjYWJj".
+    private static final String[] OVERLAPPING_KEYS = { "abc", "abcabc", "bcd", "cab" };
+
+    private static final String[] LINKS = {
+            "https://s1.viks.tv/hls/{v1}/channel_1/index.m3u8?token={v2}",
+            "https://edge-03.example.net/live/{v2}/{v1}/playlist.m3u8",
+            "http://10.0.0.1:8080/ch/5/tracks-v1a1/mono.m3u8?s={v1}&e={v2}",
+            "https://cdn.example.org/пример/канал.m3u8",
+            ""
+    };
+
+    private static final String BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+
+    @Test
+    public void decodesLinks() throws WebParsingException
+    {
+        PlayerJSDecoder decoder = new PlayerJSDecoder(KEYS);
+        ReplacePlayerJSDecoder reference = new ReplacePlayerJSDecoder(KEYS);
+        Random random = new Random(1);
+
+        for (String link : LINKS)
+        {
+            for (int i = 0; i < 50; i++)
+            {
+                String encoded = obfuscate(link, KEYS, random);
+
+                assertEquals(link, reference.decode(encoded));
+                assertEquals(link, decoder.decode(encoded));
+            }
+        }
+    }
+
+
+    @Test
+    public void removesOverlappingKeysAsReplace()
+    {
+        PlayerJSDecoder decoder = new PlayerJSDecoder(OVERLAPPING_KEYS);
+        ReplacePlayerJSDecoder reference = new ReplacePlayerJSDecoder(OVERLAPPING_KEYS);
+        Random random = new Random(2);
+
+        String[] encodedKeys = encodeKeys(OVERLAPPING_KEYS);
+        int decoded = 0;
+
+        for (int i = 0; i < 20_000; i++)
+        {
+            // Pieces of keys around keys, so removing one key may form another.
+            StringBuilder text = new StringBuilder();
+            int pieces = 1 + random.nextInt(12);
+
+            for (int j = 0; j < pieces; j++)
+            {
+                String key = encodedKeys[random.nextInt(encodedKeys.length)];
+
+                switch (random.nextInt(4))
+                {
+                    case 0:  text.append(key); break;
+                    case 1:  text.append(key, 0, 1 + random.nextInt(key.length())); break;
+                    case 2:  text.append(key, random.nextInt(key.length()), key.length()); break;
+                    default: text.append(randomBase64(random, 1 + random.nextInt(4))); break;
+                }
+            }
+
+            // The adversarial text is the second round input.
+            String encoded = "#2" + base64("#2" + text);
+
+            if (assertSameResult(decoder, reference, encoded))
+                decoded++;
+        }
+
+        // Make sure the comparison is not of failures only.
+        assertTrue("Only " + decoded + " texts decoded", decoded > 1_000);
+    }
+
+
+    @Test
+    public void removesKeyFormedByRemovalAsReplace() throws WebParsingException
+    {
+        PlayerJSDecoder decoder = new PlayerJSDecoder(OVERLAPPING_KEYS);
+        ReplacePlayerJSDecoder reference = new ReplacePlayerJSDecoder(OVERLAPPING_KEYS);
+
+        // "FYWJj" forms once "FYmNk" is removed, and "FYWJj" is removed after it.
+        String formed = "FYW" + "FYmNk" + "Jj" + "QUJD";
+        assertSameResult(decoder, reference, "#2" + base64("#2" + formed));
+        assertEquals("ABC", decoder.decode("#2" + base64("#2" + formed)));
+
+        // "FYmNk" forms once "FYWJj" is removed, but it was removed before it.
+        String kept = "FYm" + "FYWJj" + "NkQUJD";
+        assertSameResult(decoder, reference, "#2" + base64("#2" + kept));
+    }
+
+
+    @Test
+    public void failsAsReplace()
+    {
+        PlayerJSDecoder decoder = new PlayerJSDecoder(KEYS);
+        ReplacePlayerJSDecoder reference = new ReplacePlayerJSDecoder(KEYS);
+        Random random = new Random(3);
+
+        String[] malformed = { "", "#", "#2", "#2A", "#2QUJD=", "#2QU=JD", "#2QUJ==", "#2Q===", "#2QUJD!", "#2Ä" };
+        for (String encoded : malformed)
+            assertSameResult(decoder, reference, encoded);
+
+        // Random base64 with stray padding and non base64 characters.
+        String alphabet = BASE64_ALPHABET + "=-_!é";
+        for (int i = 0; i < 20_000; i++)
+        {
+            StringBuilder text = new StringBuilder("#2");
+            int length = random.nextInt(16);
+
+            for (int j = 0; j < length; j++)
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+            assertSameResult(decoder, reference, "#2" + base64(text.toString()));
+            assertSameResult(decoder, reference, text.toString());
+        }
+    }
+
+
+    /**
+     * Check that both decoders give the same link, or both fail.
+     *
+     * @return true if the link was decoded.
+     */
+    private static boolean assertSameResult(PlayerJSDecoder decoder,
+                                            ReplacePlayerJSDecoder reference,
+                                            String encoded)
+    {
+        String expected;
+        try {
+            expected = reference.decode(encoded);
+        }
+        catch (WebParsingException e) {
+            try {
+                String actual = decoder.decode(encoded);
+                fail("Decoded \"" + encoded + "\" to \"" + actual + "\", expected failure");
+            }
+            catch (WebParsingException ignored) {
+                // Both failed.
+            }
+
+            return false;
+        }
+
+        try {
+            assertEquals("Decoding \"" + encoded + "\"", expected, decoder.decode(encoded));
+        }
+        catch (WebParsingException e) {
+            fail("Couldn't decode \"" + encoded + "\", expected \"" + expected + "\"");
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Obfuscate a link as the site does - twice, each round base64 encodes the text,
+     * inserts keys at random places and adds a two characters prefix.
+     */
+    static String obfuscate(String link, String[] keys, Random random)
+    {
+        String[] encodedKeys = encodeKeys(keys);
+        String text = link;
+
+        for (int round = 0; round < 2; round++)
+        {
+            StringBuilder builder = new StringBuilder(base64(text));
+
+            // Between the encoded characters, never inside another key.
+            int position = builder.length();
+            for (int i = random.nextInt(4); i > 0 && position > 0; i--)
+            {
+                position = random.nextInt(position);
+                builder.insert(position, encodedKeys[random.nextInt(encodedKeys.length)]);
+            }
+
+            text = "#2" + builder;
+        }
+
+        return text;
+    }
+
+
+    private static String[] encodeKeys(String[] keys)
+    {
+        String[] encodedKeys = new String[keys.length];
+
+        for (int i = 0; i < keys.length; i++)
+            encodedKeys[i] = "F" + Base64.getEncoder().encodeToString(keys[i].getBytes());
+
+        return encodedKeys;
+    }
+
+
+    private static String base64(String text) {
+        return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private static String randomBase64(Random random, int length)
+    {
+        StringBuilder builder = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++)
+            builder.append(BASE64_ALPHABET.charAt(random.nextInt(BASE64_ALPHABET.length())));
+
+        return builder.toString();
+    }
+}
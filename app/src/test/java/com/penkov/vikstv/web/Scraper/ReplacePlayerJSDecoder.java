@@ -0,0 +1,80 @@
+package com.penkov.vikstv.web.Scraper;
+
+import androidx.annotation.NonNull;
+
+import com.penkov.vikstv.web.WebParsingException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The replace based decoding of PlayerJS links, as the video URL scraper did it
+ * before {@link PlayerJSDecoder} - the reference the decoder is compared to.
+ */
+final class ReplacePlayerJSDecoder
+{
+    private final String[] mKeysBase64;
+
+
+    /**
+     * Create reference decoder.
+     *
+     * @param keys the keys used to obfuscate the links.
+     */
+    ReplacePlayerJSDecoder(@NonNull String[] keys)
+    {
+        this.mKeysBase64 = new String[keys.length];
+
+        for (int i = 0; i < keys.length; i++)
+            this.mKeysBase64[i] = "F" + Base64.getEncoder().encodeToString(keys[i].getBytes());
+    }
+
+
+    /**
+     * Decode an obfuscated link, twice.
+     *
+     * @param encoded the obfuscated link.
+     * @return the decoded link.
+     *
+     * @throws WebParsingException If part of the decoding failed.
+     */
+    @NonNull String decode(@NonNull String encoded) throws WebParsingException {
+        return decodePlayerJS(decodePlayerJS(encoded, this.mKeysBase64), this.mKeysBase64);
+    }
+
+
+    /**
+     * Decode the key string - the core function from the PlayerJS library.
+     *
+     * @param key      the original key to decode.
+     * @param keys_b64 list of keys used to decode.
+     * @return string of decoded key.
+     *
+     * @throws WebParsingException If part of the decoding failed.
+     */
+    private static @NonNull String decodePlayerJS(@NonNull String key, @NonNull String[] keys_b64)
+            throws WebParsingException
+    {
+        // Too short to drop the first two characters.
+        if (key.length() < 2)
+            throw new WebParsingException("Decoding the key didn't yield base64 string");
+
+        // Remove first two characters.
+        key = key.substring(2);
+
+        // Remove the keys.
+        for (int i = keys_b64.length - 1; i >= 0; i--)
+            key = key.replace(keys_b64[i], "");
+
+        // Decode the base64 string.
+        try {
+            key = new String(Base64.getDecoder().decode(key), StandardCharsets.UTF_8);
+        }
+        catch (IllegalArgumentException e) {
+            // If decoding was unsuccessful.
+            throw new WebParsingException("Decoding the key didn't yield base64 string", e);
+        }
+
+        return key;
+    }
+}